@@ -0,0 +1,589 @@
+package models;
+
+import java.util.List;
+
+/**
+ * Compact train class
+ * Alternative for Train that keeps all wagon data in parallel primitive arrays instead of Wagon objects.
+ * Every wagon occupies one slot of the arrays, the next and previous links are slot numbers.
+ * Released slots are recycled through a free-list, so composing and splitting trains
+ * does not allocate once the arrays have grown to their working size.
+ * The train is pulled by a consist of one or more locomotives, the leading engine first.
+ */
+public class CompactTrain {
+    public static final int PASSENGER = 1;     // type of a passenger wagon, its value is the number of seats
+    public static final int FREIGHT = 2;       // type of a freight wagon, its value is the maximum weight
+    private static final int NONE = -1;        // slot number of a missing wagon
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final List<Locomotive> locomotives;
+    private final int maxWagons;               // of all locomotives together
+    private final long maxWeight;              // of all locomotives together, Long.MAX_VALUE if not limited
+    private final String origin;
+    private final String destination;
+
+    // wagon data, indexed by slot
+    private int[] ids;
+    private int[] types;
+    private int[] values;
+    private int[] next;
+    private int[] previous;
+
+    private int[] freeSlots;        // stack of released slots
+    private int freeCount;
+    private int usedSlots;          // slots at or above this number have never been used
+    private int[] slotsById;        // open addressing table of slot + 1, keyed by the id of that slot (0 is empty)
+
+    private int firstSlot = NONE;
+    private int lastSlot = NONE;
+    private int numberOfWagons;
+    private int totalNumberOfSeats;
+    private int totalMaxWeight;
+
+    /* Representation invariants:
+        firstSlot == NONE || previous[firstSlot] == NONE
+        lastSlot == NONE || next[lastSlot] == NONE
+        next[s] == NONE || previous[next[s]] == s for every slot s in the sequence
+        every slot below usedSlots is either in the sequence or on the free-list
+        slotsById holds exactly the slots in the sequence
+        locomotives is not empty
+     */
+
+    public CompactTrain(Locomotive engine, String origin, String destination) {
+        this(List.of(engine), origin, destination);
+    }
+
+    /**
+     * @param locomotives the locomotives of the consist, the leading engine first
+     * @throws IllegalArgumentException if the consist has no locomotives
+     */
+    public CompactTrain(List<Locomotive> locomotives, String origin, String destination) {
+        if (locomotives.isEmpty()) {
+            throw new IllegalArgumentException("a train needs at least one locomotive");
+        }
+        this.locomotives = List.copyOf(locomotives);
+        maxWagons = Locomotive.maxWagonsOf(locomotives);
+        maxWeight = Locomotive.maxWeightOf(locomotives);
+        this.origin = origin;
+        this.destination = destination;
+        allocateArrays(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Copies the wagons of the given train into a new compact train
+     *
+     * @param train the train to copy
+     * @return the compact train with the same locomotives, route and wagons
+     */
+    public static CompactTrain from(Train train) {
+        CompactTrain compactTrain = new CompactTrain(train.getLocomotives(), train.getOrigin(), train.getDestination());
+        for (Wagon wagon : train) {
+            if (wagon instanceof PassengerWagon) {
+                compactTrain.append(PASSENGER, wagon.getId(), ((PassengerWagon) wagon).getNumberOfSeats());
+            } else {
+                compactTrain.append(FREIGHT, wagon.getId(), ((FreightWagon) wagon).getMaxWeight());
+            }
+        }
+        return compactTrain;
+    }
+
+    /**
+     * Builds an object graph train with new wagons for all wagons of this train
+     *
+     * @return the train with the same locomotives, route and wagons
+     * @throws IllegalStateException if the wagons exceed the capacity of the locomotives
+     */
+    public Train toTrain() {
+        Train train = new Train(locomotives.get(0), origin, destination);
+        for (int i = 1; i < locomotives.size(); i++) {
+            train.addLocomotive(locomotives.get(i));
+        }
+        if (numberOfWagons > train.getMaxWagons() || !train.canPull(totalMaxWeight)) {
+            throw new IllegalStateException("the wagons exceed the capacity of the locomotives of " + this);
+        }
+        Wagon first = null;
+        Wagon last = null;
+
+        // linking the new wagons first, so the train registers them in one pass
+        for (int slot = firstSlot; slot != NONE; slot = next[slot]) {
+            Wagon wagon = types[slot] == PASSENGER
+                    ? new PassengerWagon(ids[slot], values[slot])
+                    : new FreightWagon(ids[slot], values[slot]);
+            if (first == null) {
+                first = wagon;
+            } else {
+                wagon.attachTo(last);
+            }
+            last = wagon;
+        }
+        train.setFirstWagon(first);
+        return train;
+    }
+
+    public boolean hasWagons() {
+        return firstSlot != NONE;
+    }
+
+    public boolean isPassengerTrain() {
+        return hasWagons() && types[firstSlot] == PASSENGER;
+    }
+
+    public boolean isFreightTrain() {
+        return hasWagons() && types[firstSlot] == FREIGHT;
+    }
+
+    public Locomotive getEngine() {
+        return locomotives.get(0);
+    }
+
+    /**
+     * @return the locomotives of the consist, the leading engine first
+     */
+    public List<Locomotive> getLocomotives() {
+        return locomotives;
+    }
+
+    /**
+     * @return the number of wagons all locomotives together can pull
+     */
+    public int getMaxWagons() {
+        return maxWagons;
+    }
+
+    /**
+     * @return the total weight of freight wagons all locomotives together can pull
+     * (return Long.MAX_VALUE if a locomotive of the consist has no weight limit)
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public int getNumberOfWagons() {
+        return numberOfWagons;
+    }
+
+    public int getTotalNumberOfSeats() {
+        return totalNumberOfSeats;
+    }
+
+    public int getTotalMaxWeight() {
+        return totalMaxWeight;
+    }
+
+    /**
+     * @param wagonId id of the wagon
+     * @return whether a wagon with the given id is part of this train
+     */
+    public boolean containsWagon(int wagonId) {
+        return slotOf(wagonId) != NONE;
+    }
+
+    /**
+     * Finds the id of the wagon at the given position (starting at 1 for the first wagon of the train)
+     *
+     * @param position given position
+     * @return the id of the wagon found at the given position
+     * (return -1 if the position is not valid for this train)
+     */
+    public int findWagonIdAtPosition(int position) {
+        int slot = slotAtPosition(position);
+        return slot == NONE ? -1 : ids[slot];
+    }
+
+    /**
+     * Finds the position of the wagon with the given wagonId
+     *
+     * @param wagonId id of the wagon
+     * @return the position of the wagon (return 0 if no wagon was found with the given wagonId)
+     */
+    public int findPositionOfWagon(int wagonId) {
+        int slot = slotOf(wagonId);
+        if (slot == NONE) {
+            return 0;
+        }
+
+        int position = 1;
+        while (previous[slot] != NONE) {
+            slot = previous[slot];
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * @return the ids of all wagons in the order of the train
+     */
+    public int[] getWagonIds() {
+        int[] result = new int[numberOfWagons];
+        int i = 0;
+        for (int slot = firstSlot; slot != NONE; slot = next[slot]) {
+            result[i++] = ids[slot];
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a sequence of wagons of the given type and length can be attached to the train
+     *
+     * @param type   type of the wagons (PASSENGER or FREIGHT)
+     * @param length number of wagons in the sequence
+     * @return whether the attachment could be completed successfully
+     */
+    public boolean canAttach(int type, int length) {
+        boolean possibleToAttach = true;
+
+        // verifying if the type of the wagons is known and matches and the locomotives have sufficient capacity
+        if (type != PASSENGER && type != FREIGHT) {
+            possibleToAttach = false;
+        } else if (hasWagons() && types[firstSlot] != type) {
+            possibleToAttach = false;
+        } else if (numberOfWagons + length > maxWagons) {
+            possibleToAttach = false;
+        }
+
+        return possibleToAttach;
+    }
+
+    /**
+     * @return whether the locomotives can pull a wagon of the given type and value on top of the wagons of the train
+     */
+    private boolean canPull(int type, long value) {
+        return type != FREIGHT || totalMaxWeight + value <= maxWeight;
+    }
+
+    /**
+     * Tries to attach a new wagon to the rear of the train
+     * No change is made if the attachment cannot be made
+     * (when the type is unknown or not compatible, the locomotives have insufficient capacity
+     * or the id is already used)
+     *
+     * @param type    type of the wagon (PASSENGER or FREIGHT)
+     * @param wagonId id of the wagon
+     * @param value   number of seats or maximum weight of the wagon
+     * @return whether the attachment could be completed successfully
+     */
+    public boolean attachToRear(int type, int wagonId, int value) {
+        if (!canAttach(type, 1) || !canPull(type, value) || containsWagon(wagonId)) {
+            return false;
+        }
+        append(type, wagonId, value);
+        return true;
+    }
+
+    /**
+     * Tries to insert a new wagon at the front of the train
+     * No change is made if the insertion cannot be made
+     *
+     * @param type    type of the wagon (PASSENGER or FREIGHT)
+     * @param wagonId id of the wagon
+     * @param value   number of seats or maximum weight of the wagon
+     * @return whether the insertion could be completed successfully
+     */
+    public boolean insertAtFront(int type, int wagonId, int value) {
+        return insertAtPosition(1, type, wagonId, value);
+    }
+
+    /**
+     * Tries to insert a new wagon at the given wagon position in the train
+     * No change is made if the insertion cannot be made
+     * (when the type is unknown or not compatible, the locomotives have insufficient capacity
+     * or the given position is not valid in this train)
+     *
+     * @param position place in the train (the position behind the last wagon is valid too)
+     * @param type     type of the wagon (PASSENGER or FREIGHT)
+     * @param wagonId  id of the wagon
+     * @param value    number of seats or maximum weight of the wagon
+     * @return whether the insertion could be completed successfully
+     */
+    public boolean insertAtPosition(int position, int type, int wagonId, int value) {
+        if (position < 1 || position > numberOfWagons + 1 || !canAttach(type, 1) || !canPull(type, value)
+                || containsWagon(wagonId)) {
+            return false;
+        }
+        if (position == numberOfWagons + 1) {
+            append(type, wagonId, value);
+            return true;
+        }
+
+        // link the new slot in front of the wagon at the position
+        int successor = slotAtPosition(position);
+        int slot = allocate(type, wagonId, value);
+        int predecessor = previous[successor];
+        previous[slot] = predecessor;
+        next[slot] = successor;
+        previous[successor] = slot;
+        if (predecessor == NONE) {
+            firstSlot = slot;
+        } else {
+            next[predecessor] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * Tries to remove one wagon with the given wagonId from this train
+     * and attach it at the rear of the given toTrain
+     * No change is made if the removal or attachment cannot be made
+     *
+     * @param wagonId id of the wagon
+     * @param toTrain where the wagon is going to be moved
+     * @return whether the move could be completed successfully
+     */
+    public boolean moveOneWagon(int wagonId, CompactTrain toTrain) {
+        int slot = slotOf(wagonId);
+        if (slot == NONE || toTrain == this || !toTrain.canAttach(types[slot], 1)
+                || !toTrain.canPull(types[slot], values[slot]) || toTrain.containsWagon(wagonId)) {
+            return false;
+        }
+
+        toTrain.append(types[slot], ids[slot], values[slot]);
+
+        // reconnect the predecessor and successor of the wagon
+        if (previous[slot] == NONE) {
+            firstSlot = next[slot];
+        } else {
+            next[previous[slot]] = next[slot];
+        }
+        if (next[slot] == NONE) {
+            lastSlot = previous[slot];
+        } else {
+            previous[next[slot]] = previous[slot];
+        }
+        release(slot);
+        return true;
+    }
+
+    /**
+     * Tries to split this train and move the complete sequence of wagons from the given position
+     * to the rear of toTrain
+     * No change is made if the split or re-attachment cannot be made
+     *
+     * @param position place in the train
+     * @param toTrain  where the wagons are going to be moved
+     * @return whether the move could be completed successfully
+     */
+    public boolean splitAtPosition(int position, CompactTrain toTrain) {
+        int slot = slotAtPosition(position);
+        if (slot == NONE || toTrain == this || !toTrain.canAttach(types[slot], numberOfWagons - position + 1)) {
+            return false;
+        }
+
+        // verifying that none of the wagons is already on toTrain and that toTrain can pull them
+        long weight = 0;
+        for (int s = slot; s != NONE; s = next[s]) {
+            if (toTrain.containsWagon(ids[s])) {
+                return false;
+            }
+            weight += values[s];
+        }
+        if (!toTrain.canPull(types[slot], weight)) {
+            return false;
+        }
+
+        // the predecessor of the position becomes the last wagon
+        lastSlot = previous[slot];
+        if (lastSlot == NONE) {
+            firstSlot = NONE;
+        } else {
+            next[lastSlot] = NONE;
+        }
+
+        // copying the wagons to toTrain and releasing their slots here
+        while (slot != NONE) {
+            int following = next[slot];
+            toTrain.append(types[slot], ids[slot], values[slot]);
+            release(slot);
+            slot = following;
+        }
+        return true;
+    }
+
+    /**
+     * Reverses the sequence of wagons in this train (if any)
+     * Swapping the link arrays reverses all links at once, so this takes constant time.
+     */
+    public void reverse() {
+        int[] links = next;
+        next = previous;
+        previous = links;
+
+        int slot = firstSlot;
+        firstSlot = lastSlot;
+        lastSlot = slot;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(getEngine().toString());
+
+        for (int slot = firstSlot; slot != NONE; slot = next[slot]) {
+            result.append(String.format("[Wagon-%d]", ids[slot]));
+        }
+
+        result.append(String.format(" with %d wagons from %s to %s", numberOfWagons, origin, destination));
+        return result.toString();
+    }
+
+    /**
+     * Adds a new wagon behind the last wagon, without any checks
+     */
+    private void append(int type, int wagonId, int value) {
+        int slot = allocate(type, wagonId, value);
+        previous[slot] = lastSlot;
+        next[slot] = NONE;
+        if (lastSlot == NONE) {
+            firstSlot = slot;
+        } else {
+            next[lastSlot] = slot;
+        }
+        lastSlot = slot;
+    }
+
+    /**
+     * Takes a slot from the free-list (or a never used slot) and registers the wagon data in it
+     *
+     * @return the slot of the new wagon (not linked yet)
+     */
+    private int allocate(int type, int wagonId, int value) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (usedSlots == ids.length) {
+                grow();
+            }
+            slot = usedSlots++;
+        }
+
+        ids[slot] = wagonId;
+        types[slot] = type;
+        values[slot] = value;
+        addToIdTable(slot);
+
+        numberOfWagons++;
+        if (type == PASSENGER) {
+            totalNumberOfSeats += value;
+        } else {
+            totalMaxWeight += value;
+        }
+        return slot;
+    }
+
+    /**
+     * Unregisters the wagon data of the given (already unlinked) slot and puts it on the free-list
+     */
+    private void release(int slot) {
+        removeFromIdTable(ids[slot]);
+        numberOfWagons--;
+        if (types[slot] == PASSENGER) {
+            totalNumberOfSeats -= values[slot];
+        } else {
+            totalMaxWeight -= values[slot];
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private int slotAtPosition(int position) {
+        if (position < 1 || position > numberOfWagons) {
+            return NONE;
+        }
+
+        // walking from the nearest end of the train
+        int slot;
+        if (position <= numberOfWagons / 2) {
+            slot = firstSlot;
+            for (int i = 1; i < position; i++) {
+                slot = next[slot];
+            }
+        } else {
+            slot = lastSlot;
+            for (int i = numberOfWagons; i > position; i--) {
+                slot = previous[slot];
+            }
+        }
+        return slot;
+    }
+
+    private int slotOf(int wagonId) {
+        int mask = slotsById.length - 1;
+        int entry = IntHashMap.hash(wagonId) & mask;
+        while (slotsById[entry] != 0) {
+            if (ids[slotsById[entry] - 1] == wagonId) {
+                return slotsById[entry] - 1;
+            }
+            entry = (entry + 1) & mask;
+        }
+        return NONE;
+    }
+
+    private void addToIdTable(int slot) {
+        int mask = slotsById.length - 1;
+        int entry = IntHashMap.hash(ids[slot]) & mask;
+        while (slotsById[entry] != 0) {
+            entry = (entry + 1) & mask;
+        }
+        slotsById[entry] = slot + 1;
+    }
+
+    private void removeFromIdTable(int wagonId) {
+        int mask = slotsById.length - 1;
+        int hole = IntHashMap.hash(wagonId) & mask;
+        while (ids[slotsById[hole] - 1] != wagonId) {
+            hole = (hole + 1) & mask;
+        }
+
+        // shifting back the entries of the probe chain behind the hole, as in IntHashMap
+        int entry = (hole + 1) & mask;
+        while (slotsById[entry] != 0) {
+            int home = IntHashMap.hash(ids[slotsById[entry] - 1]) & mask;
+            if (((entry - home) & mask) >= ((entry - hole) & mask)) {
+                slotsById[hole] = slotsById[entry];
+                hole = entry;
+            }
+            entry = (entry + 1) & mask;
+        }
+        slotsById[hole] = 0;
+    }
+
+    private void allocateArrays(int capacity) {
+        ids = new int[capacity];
+        types = new int[capacity];
+        values = new int[capacity];
+        next = new int[capacity];
+        previous = new int[capacity];
+        freeSlots = new int[capacity];
+        slotsById = new int[capacity * 2];
+    }
+
+    /**
+     * Doubles the capacity of all arrays, keeping the slot numbers of all wagons
+     */
+    private void grow() {
+        int[] oldIds = ids;
+        int[] oldTypes = types;
+        int[] oldValues = values;
+        int[] oldNext = next;
+        int[] oldPrevious = previous;
+        allocateArrays(oldIds.length * 2);
+
+        System.arraycopy(oldIds, 0, ids, 0, usedSlots);
+        System.arraycopy(oldTypes, 0, types, 0, usedSlots);
+        System.arraycopy(oldValues, 0, values, 0, usedSlots);
+        System.arraycopy(oldNext, 0, next, 0, usedSlots);
+        System.arraycopy(oldPrevious, 0, previous, 0, usedSlots);
+
+        // the free-list is empty when growing, only the id table has to be rebuilt
+        for (int slot = firstSlot; slot != NONE; slot = next[slot]) {
+            addToIdTable(slot);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package models;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Thread-safe access to a set of trains
+ * Every train is guarded by its own lock, so workers composing different trains do not block each other.
+ * Operations on two trains acquire both locks in the order in which the trains were first seen
+ * by the manager, so they cannot deadlock. Cumulative properties and wagon snapshots are read
+ * optimistically and only take the read lock when a writer interfered.
+ * <p>
+ * Trains handed to the manager should not be changed by other means anymore.
+ */
+public class ConcurrentTrainManager {
+    private static class Guard {
+        final long order;       // position in the global lock order
+        final StampedLock lock = new StampedLock();
+
+        Guard(long order) {
+            this.order = order;
+        }
+    }
+
+    private final ConcurrentHashMap<Train, Guard> guards = new ConcurrentHashMap<>();
+    private final AtomicLong nextOrder = new AtomicLong();
+
+    /**
+     * Places the given train under control of this manager (no action if it already is)
+     *
+     * @param train the train
+     */
+    public void register(Train train) {
+        guardOf(train);
+    }
+
+    /**
+     * Releases the given train from the control of this manager, so the train and its lock can be collected
+     * An operation that still holds the lock of the train completes first.
+     * The train should not be passed to this manager by other threads anymore,
+     * or it would be placed under control again with a new lock.
+     *
+     * @param train the train
+     * @return whether the train was under control of this manager
+     */
+    public boolean unregister(Train train) {
+        Guard guard = guards.get(train);
+        if (guard == null) {
+            return false;
+        }
+        long stamp = guard.lock.writeLock();
+        try {
+            return guards.remove(train, guard);
+        } finally {
+            guard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the number of trains under control of this manager
+     */
+    public int getNumberOfTrains() {
+        return guards.size();
+    }
+
+    public boolean attachToRear(Train train, Wagon sequence) {
+        return writeWithOwner(train, sequence, () -> train.attachToRear(sequence));
+    }
+
+    public boolean insertAtFront(Train train, Wagon sequence) {
+        return writeWithOwner(train, sequence, () -> train.insertAtFront(sequence));
+    }
+
+    public boolean insertAtPosition(Train train, int position, Wagon sequence) {
+        return writeWithOwner(train, sequence, () -> train.insertAtPosition(position, sequence));
+    }
+
+    public boolean moveOneWagon(Train fromTrain, int wagonId, Train toTrain) {
+        return write(fromTrain, toTrain, () -> fromTrain.moveOneWagon(wagonId, toTrain));
+    }
+
+    public boolean splitAtPosition(Train fromTrain, int position, Train toTrain) {
+        return write(fromTrain, toTrain, () -> fromTrain.splitAtPosition(position, toTrain));
+    }
+
+    public void reverse(Train train) {
+        write(train, train, () -> {
+            train.reverse();
+            return true;
+        });
+    }
+
+    public int getNumberOfWagons(Train train) {
+        return read(train, train::getNumberOfWagons);
+    }
+
+    public int getTotalNumberOfSeats(Train train) {
+        return read(train, train::getTotalNumberOfSeats);
+    }
+
+    public int getTotalMaxWeight(Train train) {
+        return read(train, train::getTotalMaxWeight);
+    }
+
+    /**
+     * Takes a consistent snapshot of the wagons of the given train,
+     * first without locking and only if a writer interfered under the read lock
+     *
+     * @param train the train
+     * @return the wagons of the train in order
+     */
+    public Wagon[] getWagons(Train train) {
+        StampedLock lock = guardOf(train).lock;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Wagon[] wagons = collectWagons(train);
+                if (lock.validate(stamp)) {
+                    return wagons;
+                }
+            } catch (RuntimeException e) {
+                // a writer changed the links while walking them, try again under the read lock
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return collectWagons(train);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Performs the given action for every wagon of the train while holding its read lock
+     *
+     * @param train  the train
+     * @param action the action (should not change any train)
+     */
+    public void forEachWagon(Train train, Consumer<Wagon> action) {
+        StampedLock lock = guardOf(train).lock;
+        long stamp = lock.readLock();
+        try {
+            for (Wagon wagon : train) {
+                action.accept(wagon);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private Guard guardOf(Train train) {
+        return guards.computeIfAbsent(train, t -> new Guard(nextOrder.getAndIncrement()));
+    }
+
+    /**
+     * Walks the wagons of the train, never further than its number of wagons
+     * so that links changed by a concurrent writer cannot keep the walk going forever
+     */
+    private static Wagon[] collectWagons(Train train) {
+        Wagon[] wagons = new Wagon[train.getNumberOfWagons()];
+        Wagon wagon = train.getFirstWagon();
+        for (int i = 0; i < wagons.length; i++) {
+            wagons[i] = wagon;
+            wagon = wagon.getNextWagon();
+        }
+        return wagons;
+    }
+
+    /**
+     * Reads an int property of the train optimistically, falling back to the read lock
+     */
+    private int read(Train train, IntSupplier property) {
+        StampedLock lock = guardOf(train).lock;
+        long stamp = lock.tryOptimisticRead();
+        int value = property.getAsInt();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = property.getAsInt();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Runs the operation while holding the write locks of both trains (which may be the same train),
+     * acquiring them in the global lock order
+     */
+    private boolean write(Train train, Train otherTrain, BooleanSupplier operation) {
+        Guard guard = guardOf(train);
+        Guard otherGuard = guardOf(otherTrain);
+        if (guard == otherGuard) {
+            long stamp = guard.lock.writeLock();
+            try {
+                return operation.getAsBoolean();
+            } finally {
+                guard.lock.unlockWrite(stamp);
+            }
+        }
+
+        Guard first = guard.order < otherGuard.order ? guard : otherGuard;
+        Guard second = first == guard ? otherGuard : guard;
+        long firstStamp = first.lock.writeLock();
+        try {
+            long secondStamp = second.lock.writeLock();
+            try {
+                return operation.getAsBoolean();
+            } finally {
+                second.lock.unlockWrite(secondStamp);
+            }
+        } finally {
+            first.lock.unlockWrite(firstStamp);
+        }
+    }
+
+    /**
+     * Runs an operation that attaches the given sequence to the train.
+     * When the sequence is still part of another train, that train loses the sequence,
+     * so its lock is taken as well.
+     */
+    private boolean writeWithOwner(Train train, Wagon sequence, BooleanSupplier operation) {
+        if (sequence == null) {
+            return write(train, train, operation);
+        }
+
+        while (true) {
+            Train owner = sequence.train;
+            Train otherTrain = owner == null ? train : owner;
+
+            // the owner may have changed before its lock was taken, then try again
+            boolean[] attempted = new boolean[1];
+            boolean result = write(train, otherTrain, () -> {
+                if (sequence.train != owner) {
+                    return false;
+                }
+                attempted[0] = true;
+                return operation.getAsBoolean();
+            });
+            if (attempted[0]) {
+                return result;
+            }
+        }
+    }
+}
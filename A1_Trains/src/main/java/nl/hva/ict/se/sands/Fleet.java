@@ -0,0 +1,310 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ToIntFunction;
+
+/**
+ * Registry of all trains of a fleet with fleet-wide statistics
+ * The statistics are computed in parallel by a fork/join task that splits the registered trains
+ * into ranges, every range is summarized on its own and the summaries are merged pairwise.
+ * Origins and destinations get a number when their first train is registered,
+ * so the totals per location and per locomotive are kept in primitive maps instead of boxed maps.
+ * <p>
+ * Registering trains is not thread-safe, and trains must not change while statistics are computed.
+ */
+public class Fleet {
+    private static final int TRAINS_PER_TASK = 1024;    // ranges of at most this many trains are not split
+    private static final int UTILIZATION_BUCKETS = 11;  // 0-9%, 10-19%, ..., 90-99%, 100%
+
+    private final List<Train> trains = new ArrayList<>();
+    private final Map<String, Integer> locationNumbers = new HashMap<>();
+    private int[] origins = new int[16];                // location number of the origin of every train
+    private int[] destinations = new int[16];
+
+    /**
+     * Summary of the trains of the fleet
+     */
+    public class Statistics {
+        private final IntLongHashMap seatsByOrigin = new IntLongHashMap();           // by location number
+        private final IntLongHashMap seatsByDestination = new IntLongHashMap();
+        private final IntLongHashMap maxWeightByOrigin = new IntLongHashMap();
+        private final IntLongHashMap maxWeightByDestination = new IntLongHashMap();
+        private final IntLongHashMap wagonsByLocomotive = new IntLongHashMap();      // by locomotive number
+        private final IntLongHashMap capacityByLocomotive = new IntLongHashMap();
+        private final int[] utilizationHistogram = new int[UTILIZATION_BUCKETS];
+        private int numberOfTrains;
+        private int numberOfPassengerTrains;
+        private int numberOfFreightTrains;
+        private long numberOfWagons;
+        private long capacity;                          // sum of the maximum number of wagons of all consists
+
+        private void add(int index) {
+            Train train = trains.get(index);
+            int wagons = train.getNumberOfWagons();
+            int maxWagons = train.getMaxWagons();
+
+            seatsByOrigin.add(origins[index], train.getTotalNumberOfSeats());
+            seatsByDestination.add(destinations[index], train.getTotalNumberOfSeats());
+            maxWeightByOrigin.add(origins[index], train.getTotalMaxWeight());
+            maxWeightByDestination.add(destinations[index], train.getTotalMaxWeight());
+            addByLocomotive(train, wagons, maxWagons);
+            numberOfTrains++;
+            numberOfWagons += wagons;
+            capacity += maxWagons;
+            if (train.isPassengerTrain()) {
+                numberOfPassengerTrains++;
+            } else if (train.isFreightTrain()) {
+                numberOfFreightTrains++;
+            }
+            int percentage = maxWagons <= 0 ? 100 : (int) Math.min(100L * wagons / maxWagons, 100);
+            utilizationHistogram[percentage / 10]++;
+        }
+
+        /**
+         * Divides the wagons of the given train over the locomotives of its consist,
+         * in proportion to the number of wagons every locomotive can pull
+         */
+        private void addByLocomotive(Train train, int wagons, int maxWagons) {
+            if (maxWagons <= 0) {
+                return;                                 // a consist without capacity pulls no wagons
+            }
+
+            // rounding the cumulative shares, so the shares add up to the wagons of the train
+            long cumulativeCapacity = 0;
+            long credited = 0;
+            for (Locomotive locomotive : train.getLocomotives()) {
+                cumulativeCapacity += locomotive.getMaxWagons();
+                long share = (long) wagons * cumulativeCapacity / maxWagons - credited;
+                wagonsByLocomotive.add(locomotive.getLocNumber(), share);
+                capacityByLocomotive.add(locomotive.getLocNumber(), locomotive.getMaxWagons());
+                credited += share;
+            }
+        }
+
+        private Statistics merge(Statistics other) {
+            seatsByOrigin.addAll(other.seatsByOrigin);
+            seatsByDestination.addAll(other.seatsByDestination);
+            maxWeightByOrigin.addAll(other.maxWeightByOrigin);
+            maxWeightByDestination.addAll(other.maxWeightByDestination);
+            wagonsByLocomotive.addAll(other.wagonsByLocomotive);
+            capacityByLocomotive.addAll(other.capacityByLocomotive);
+            for (int i = 0; i < UTILIZATION_BUCKETS; i++) {
+                utilizationHistogram[i] += other.utilizationHistogram[i];
+            }
+            numberOfTrains += other.numberOfTrains;
+            numberOfPassengerTrains += other.numberOfPassengerTrains;
+            numberOfFreightTrains += other.numberOfFreightTrains;
+            numberOfWagons += other.numberOfWagons;
+            capacity += other.capacity;
+            return this;
+        }
+
+        public long getSeatsByOrigin(String origin) {
+            return valueOf(seatsByOrigin, origin);
+        }
+
+        public long getSeatsByDestination(String destination) {
+            return valueOf(seatsByDestination, destination);
+        }
+
+        public long getMaxWeightByOrigin(String origin) {
+            return valueOf(maxWeightByOrigin, origin);
+        }
+
+        public long getMaxWeightByDestination(String destination) {
+            return valueOf(maxWeightByDestination, destination);
+        }
+
+        public int getNumberOfTrains() {
+            return numberOfTrains;
+        }
+
+        public int getNumberOfPassengerTrains() {
+            return numberOfPassengerTrains;
+        }
+
+        public int getNumberOfFreightTrains() {
+            return numberOfFreightTrains;
+        }
+
+        /**
+         * @return the number of trains without wagons
+         */
+        public int getNumberOfEmptyTrains() {
+            return numberOfTrains - numberOfPassengerTrains - numberOfFreightTrains;
+        }
+
+        public long getNumberOfWagons() {
+            return numberOfWagons;
+        }
+
+        /**
+         * @return the number of wagons as a fraction of the number of wagons all engines can pull
+         */
+        public double getUtilization() {
+            return capacity == 0 ? 0.0 : (double) numberOfWagons / capacity;
+        }
+
+        /**
+         * @param locNumber number of the locomotive
+         * @return the wagons pulled by the locomotive as a fraction of its capacity,
+         * where the wagons of a train are divided over all locomotives of its consist in proportion to their capacity
+         * (return 0 if no train of the fleet has the locomotive)
+         */
+        public double getUtilization(int locNumber) {
+            long locomotiveCapacity = capacityByLocomotive.get(locNumber);
+            return locomotiveCapacity == 0 ? 0.0 : (double) wagonsByLocomotive.get(locNumber) / locomotiveCapacity;
+        }
+
+        /**
+         * @return the number of trains per 10% of utilization of their locomotives (the last bucket is 100%)
+         */
+        public int[] getUtilizationHistogram() {
+            return utilizationHistogram.clone();
+        }
+
+        private long valueOf(IntLongHashMap values, String location) {
+            Integer number = locationNumbers.get(location);
+            return number == null ? 0 : values.get(number);
+        }
+    }
+
+    /**
+     * Summarizes a range of trains, splitting it in halves while it is large
+     */
+    private class StatisticsTask extends RecursiveTask<Statistics> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;             // first train of the range
+        private final int to;               // first train behind the range
+
+        StatisticsTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Statistics compute() {
+            if (to - from <= TRAINS_PER_TASK) {
+                Statistics statistics = new Statistics();
+                for (int index = from; index < to; index++) {
+                    statistics.add(index);
+                }
+                return statistics;
+            }
+
+            int middle = (from + to) >>> 1;
+            StatisticsTask left = new StatisticsTask(from, middle);
+            left.fork();
+            Statistics right = new StatisticsTask(middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Aggregates an attribute over all wagons of a range of trains
+     */
+    private class WagonTask extends RecursiveTask<IntSummaryStatistics> {
+        private static final long serialVersionUID = 1L;
+
+        private final ToIntFunction<? super Wagon> attribute;
+        private final int from;
+        private final int to;
+
+        WagonTask(ToIntFunction<? super Wagon> attribute, int from, int to) {
+            this.attribute = attribute;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected IntSummaryStatistics compute() {
+            if (to - from <= TRAINS_PER_TASK) {
+                IntSummaryStatistics statistics = new IntSummaryStatistics();
+                for (int index = from; index < to; index++) {
+                    for (Wagon wagon = trains.get(index).getFirstWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+                        statistics.accept(attribute.applyAsInt(wagon));
+                    }
+                }
+                return statistics;
+            }
+
+            int middle = (from + to) >>> 1;
+            WagonTask left = new WagonTask(attribute, from, middle);
+            left.fork();
+            IntSummaryStatistics right = new WagonTask(attribute, middle, to).compute();
+            IntSummaryStatistics result = left.join();
+            result.combine(right);
+            return result;
+        }
+    }
+
+    /**
+     * Adds the given train to the fleet
+     *
+     * @param train the train
+     */
+    public void register(Train train) {
+        int index = trains.size();
+        if (index == origins.length) {
+            origins = Arrays.copyOf(origins, 2 * index);
+            destinations = Arrays.copyOf(destinations, 2 * index);
+        }
+        trains.add(train);
+        origins[index] = numberOf(train.getOrigin());
+        destinations[index] = numberOf(train.getDestination());
+    }
+
+    public int getNumberOfTrains() {
+        return trains.size();
+    }
+
+    /**
+     * Computes the statistics of all trains in the common fork/join pool
+     *
+     * @return the statistics
+     */
+    public Statistics getStatistics() {
+        return getStatistics(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the statistics of all trains in the given pool
+     *
+     * @param pool the pool that runs the tasks
+     * @return the statistics
+     */
+    public Statistics getStatistics(ForkJoinPool pool) {
+        return pool.invoke(new StatisticsTask(0, trains.size()));
+    }
+
+    /**
+     * Aggregates an attribute over all wagons of all trains in the given pool
+     *
+     * @param attribute the attribute, for example Train.SEATS or Train.MAX_WEIGHT
+     * @param pool      the pool that runs the tasks
+     * @return the count, sum, minimum and maximum of the attribute
+     */
+    public IntSummaryStatistics aggregate(ToIntFunction<? super Wagon> attribute, ForkJoinPool pool) {
+        return pool.invoke(new WagonTask(attribute, 0, trains.size()));
+    }
+
+    /**
+     * @return the number of the given location, numbering new locations in order of appearance
+     */
+    private int numberOf(String location) {
+        Integer number = locationNumbers.get(location);
+        if (number == null) {
+            number = locationNumbers.size();
+            locationNumbers.put(location, number);
+        }
+        return number;
+    }
+}
@@ -0,0 +1,179 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * Hash map with primitive int keys, using open addressing with linear probing
+ * Lookups do not box the key and do not allocate.
+ *
+ * @param <V> type of the values (null values are not supported)
+ */
+public class IntHashMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;    // values[slot] == null marks an empty slot
+    private int size;
+    private int mask;           // capacity - 1, the capacity is always a power of two
+
+    /* Representation invariants:
+        keys.length == values.length == mask + 1
+        size < (mask + 1) / 4 * 3
+        every key is found by probing from its home slot without crossing an empty slot
+     */
+
+    public IntHashMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of entries the map should hold without resizing
+     */
+    public IntHashMap(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity / 4 * 3 <= expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return the number of entries in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the value stored for the key (return null if the key is not in the map)
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = slotOf(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * Stores the value for the given key, replacing the current value (if any)
+     *
+     * @param key   the key
+     * @param value the value (not null)
+     * @return the previous value of the key (return null if the key was not in the map)
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null values are not supported");
+        }
+
+        // probing from the home slot until the key or an empty slot is found
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= (mask + 1) / 4 * 3) {
+            resize(mask + 1 << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the entry of the given key (if any)
+     *
+     * @param key the key
+     * @return the value that was stored for the key (return null if the key was not in the map)
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return null;
+        }
+        V previous = (V) values[slot];
+
+        // shifting back the entries of the probe chain behind the removed slot,
+        // so no lookup has to cross the hole that is left behind
+        int hole = slot;
+        slot = (slot + 1) & mask;
+        while (values[slot] != null) {
+            int home = hash(keys[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        values[hole] = null;
+        size--;
+        return previous;
+    }
+
+    /**
+     * Removes all entries from the map
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * @param key the key
+     * @return the slot holding the key (return -1 if the key is not in the map)
+     */
+    private int slotOf(int key) {
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+
+        // re-inserting all entries at their new home slots
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    static int hash(int key) {
+        // spreading consecutive ids over the table
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,121 @@
+package models;
+
+/**
+ * Hash map from primitive int keys to primitive long values, using open addressing with linear probing
+ * Made for accumulating totals per key: values are added to, entries are never removed.
+ */
+public class IntLongHashMap {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;           // capacity - 1, the capacity is always a power of two
+
+    /* Representation invariants:
+        keys.length == values.length == used.length == mask + 1
+        size < (mask + 1) / 4 * 3
+        every key is found by probing from its home slot without crossing an unused slot
+     */
+
+    public IntLongHashMap() {
+        keys = new int[INITIAL_CAPACITY];
+        values = new long[INITIAL_CAPACITY];
+        used = new boolean[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    /**
+     * @return the number of keys in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the value of the key (return 0 if the key is not in the map)
+     */
+    public long get(int key) {
+        int slot = IntHashMap.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    public boolean containsKey(int key) {
+        int slot = IntHashMap.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the given amount to the value of the key, a new key starts at 0
+     *
+     * @param key    the key
+     * @param amount the amount to add
+     */
+    public void add(int key, long amount) {
+        int slot = IntHashMap.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] += amount;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = amount;
+        if (++size >= (mask + 1) / 4 * 3) {
+            resize(mask + 1 << 1);
+        }
+    }
+
+    /**
+     * Adds the values of all keys of the other map to this map
+     *
+     * @param other the other map
+     */
+    public void addAll(IntLongHashMap other) {
+        for (int slot = 0; slot < other.used.length; slot++) {
+            if (other.used[slot]) {
+                add(other.keys[slot], other.values[slot]);
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new int[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+
+        // re-inserting all entries at their new home slots
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int slot = IntHashMap.hash(oldKeys[i]) & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -1,21 +1,73 @@
 package models;
 
+import java.util.List;
+
 /**
  * Locomotive class
  */
 public class Locomotive {
+    public static final int NO_WEIGHT_LIMIT = Integer.MAX_VALUE;
+
     private int locNumber;
     private int maxWagons;
+    private int maxWeight;      // maximum total weight of the freight wagons it can pull
 
     public Locomotive(int locNumber, int maxWagons) {
+        this(locNumber, maxWagons, NO_WEIGHT_LIMIT);
+    }
+
+    public Locomotive(int locNumber, int maxWagons, int maxWeight) {
         this.locNumber = locNumber;
         this.maxWagons = maxWagons;
+        this.maxWeight = maxWeight;
+    }
+
+    public int getLocNumber() {
+        return locNumber;
     }
 
     public int getMaxWagons() {
         return maxWagons;
     }
 
+    /**
+     * @return the maximum total weight of the freight wagons this locomotive can pull
+     * (return NO_WEIGHT_LIMIT if its pulling power is not limited by weight)
+     */
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    public boolean hasWeightLimit() {
+        return maxWeight != NO_WEIGHT_LIMIT;
+    }
+
+    /**
+     * @return the number of wagons all given locomotives together can pull
+     */
+    static int maxWagonsOf(List<Locomotive> locomotives) {
+        int maxWagons = 0;
+        for (Locomotive locomotive : locomotives) {
+            maxWagons += locomotive.getMaxWagons();
+        }
+        return maxWagons;
+    }
+
+    /**
+     * @return the total weight of freight wagons all given locomotives together can pull
+     * (return Long.MAX_VALUE if one of them has no weight limit)
+     */
+    static long maxWeightOf(List<Locomotive> locomotives) {
+        long maxWeight = 0;
+        for (Locomotive locomotive : locomotives) {
+            if (!locomotive.hasWeightLimit()) {
+                return Long.MAX_VALUE;
+            }
+            maxWeight += locomotive.getMaxWeight();
+        }
+        return maxWeight;
+    }
+
     @Override
     public String toString() {
         return String.format("[Loc-%d]", locNumber);
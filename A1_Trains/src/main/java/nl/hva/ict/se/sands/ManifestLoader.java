@@ -0,0 +1,307 @@
+package models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming loader of yard manifests into trains
+ * A manifest has one wagon per line: wagon id, type (P for passenger, F for freight),
+ * number of seats or maximum weight, and the locomotive number of the target train, separated by commas.
+ * Empty lines, lines starting with # and a header line are skipped.
+ * <p>
+ * The manifest is read through a channel in fixed-size chunks and parsed byte by byte,
+ * so lines may cross chunk boundaries and no strings are created per line.
+ * The new wagons of every target train are linked into a chain with Wagon.attachTo as they are read,
+ * and each chain is attached to the rear of its train in one go at the end.
+ * The trains should not be changed by other means while a manifest is loaded.
+ * Lines that would make a chain invalid (an unknown train, an id that is already used, a type that does
+ * not match the train, or insufficient capacity of the locomotives) are rejected one by one.
+ */
+public class ManifestLoader {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int FIELDS = 4;
+
+    /**
+     * Wagons read for one target train that are not attached yet
+     */
+    private static class Chain {
+        final Train train;
+        Wagon head;
+        Wagon tail;
+        int length;
+        long weight;            // total maximum weight of the freight wagons in the chain
+        boolean passengers;     // whether the chain consists of passenger wagons
+
+        Chain(Train train) {
+            this.train = train;
+        }
+    }
+
+    private final IntHashMap<Chain> chains = new IntHashMap<>();    // by locomotive number
+    private final List<Train> trains = new ArrayList<>();             // all target trains
+    private final List<Chain> pendingChains = new ArrayList<>();      // chains with wagons to attach
+    private final IntLongHashMap usedIds = new IntLongHashMap();      // ids of all wagons read so far
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);    // parsed through its array
+
+    // state of the line being parsed, which may continue in the next chunk
+    private int field;                  // index of the field being read
+    private final long[] values = new long[FIELDS];
+    private final boolean[] hasDigits = new boolean[FIELDS];
+    private byte type;                  // first character of the type field
+    private boolean invalid;            // the line contains an unexpected character
+    private boolean comment;            // the line is a comment or a header
+    private long firstLine;             // number of the first line of the current manifest
+
+    private long numberOfLines;
+    private long numberOfLoadedWagons;
+    private long numberOfRejectedLines;
+    private long numberOfBytes;
+    private long elapsedNanos;
+
+    /**
+     * Makes the given train a target of the manifests, by the number of its engine
+     *
+     * @param train the train
+     * @return whether the train could be added (not if another train has an engine with the same number)
+     */
+    public boolean addTrain(Train train) {
+        int locNumber = train.getEngine().getLocNumber();
+        if (chains.containsKey(locNumber)) {
+            return false;
+        }
+        chains.put(locNumber, new Chain(train));
+        trains.add(train);
+        return true;
+    }
+
+    /**
+     * Loads the manifest in the given file
+     *
+     * @param file the manifest
+     * @return the number of wagons that were attached to their trains
+     * @throws IOException if the file cannot be read
+     */
+    public long load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return load(channel);
+        }
+    }
+
+    /**
+     * Loads the manifest that is read from the given channel, until the end of the channel
+     *
+     * @param channel the channel (not closed by this loader)
+     * @return the number of wagons that were attached to their trains
+     * @throws IOException if the channel cannot be read
+     */
+    public long load(ReadableByteChannel channel) throws IOException {
+        long start = System.nanoTime();
+        long loaded = numberOfLoadedWagons;
+        startLine();
+        firstLine = numberOfLines;
+
+        int read;
+        while ((read = channel.read(buffer)) >= 0) {
+            if (read == 0 && buffer.hasRemaining()) {
+                continue;
+            }
+            numberOfBytes += read;
+            parse(buffer.array(), buffer.position());
+            buffer.clear();
+        }
+
+        // a last line without line break
+        if (field > 0 || hasDigits[0] || invalid || comment) {
+            endLine();
+        }
+        attachChains();
+        elapsedNanos += System.nanoTime() - start;
+        return numberOfLoadedWagons - loaded;
+    }
+
+    /**
+     * Parses the given bytes of a chunk
+     *
+     * @param bytes  the chunk
+     * @param length number of valid bytes in the chunk
+     */
+    private void parse(byte[] bytes, int length) {
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if (b == '\n') {
+                endLine();
+            } else if (comment || invalid || b == '\r' || b == ' ' || b == '\t') {
+                continue;
+            } else if (b == ',') {
+                if (field == FIELDS - 1) {
+                    invalid = true;
+                } else {
+                    field++;
+                }
+            } else if (b >= '0' && b <= '9' && field != 1) {
+                // values beyond the range of an int are rejected with the line
+                values[field] = Math.min(values[field] * 10 + (b - '0'), 1L << 32);
+                hasDigits[field] = true;
+            } else if (field == 1) {
+                // only the first character of the type counts
+                if (type == 0) {
+                    type = b;
+                }
+            } else if (field == 0 && !hasDigits[0] && (b == '#' || numberOfLines == firstLine)) {
+                comment = true;
+            } else {
+                invalid = true;
+            }
+        }
+    }
+
+    /**
+     * Adds the wagon of the completed line to the chain of its train, or rejects the line
+     */
+    private void endLine() {
+        if (!comment && (field > 0 || hasDigits[0] || invalid)) {
+            if (invalid || !addWagon()) {
+                numberOfRejectedLines++;
+            }
+        }
+        numberOfLines++;
+        startLine();
+    }
+
+    private void startLine() {
+        field = 0;
+        for (int i = 0; i < FIELDS; i++) {
+            values[i] = 0;
+            hasDigits[i] = false;
+        }
+        type = 0;
+        invalid = false;
+        comment = false;
+    }
+
+    /**
+     * @return whether the wagon of the completed line could be added to the chain of its train
+     */
+    private boolean addWagon() {
+        if (field != FIELDS - 1 || !hasDigits[0] || !hasDigits[2] || !hasDigits[3]
+                || values[0] > Integer.MAX_VALUE || values[2] > Integer.MAX_VALUE || values[3] > Integer.MAX_VALUE) {
+            return false;
+        }
+        boolean passenger = type == 'P' || type == 'p';
+        if (!passenger && type != 'F' && type != 'f') {
+            return false;
+        }
+
+        int id = (int) values[0];
+        int capacity = (int) values[2];
+        Chain chain = chains.get((int) values[3]);
+        if (chain == null || isUsed(id)) {
+            return false;
+        }
+
+        // the wagon must match the type of the train and its chain, and the locomotives must be able to pull it
+        Train train = chain.train;
+        boolean empty = chain.head == null && !train.hasWagons();
+        if (!empty && passenger != (chain.head == null ? train.isPassengerTrain() : chain.passengers)
+                || train.getNumberOfWagons() + chain.length + 1 > train.getMaxWagons()
+                || !passenger && !train.canPull(chain.weight + capacity)) {
+            return false;
+        }
+
+        Wagon wagon = passenger ? new PassengerWagon(id, capacity) : new FreightWagon(id, capacity);
+        if (chain.head == null) {
+            chain.head = wagon;
+            chain.passengers = passenger;
+            pendingChains.add(chain);
+        } else {
+            wagon.attachTo(chain.tail);
+        }
+        chain.tail = wagon;
+        chain.length++;
+        if (!passenger) {
+            chain.weight += capacity;
+        }
+        usedIds.add(id, 1);
+        return true;
+    }
+
+    /**
+     * @return whether a wagon with the given id was read already or is in one of the target trains
+     */
+    private boolean isUsed(int id) {
+        if (usedIds.containsKey(id)) {
+            return true;
+        }
+        for (Train train : trains) {
+            if (train.wagonWithId(id) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Attaches every chain to the rear of its train
+     * The wagons have been validated line by line, so the chains are inserted without running canAttach again.
+     */
+    private void attachChains() {
+        for (Chain chain : pendingChains) {
+            chain.train.insertAfter(chain.train.getLastWagonAttached(), chain.head);
+            numberOfLoadedWagons += chain.length;
+            chain.head = null;
+            chain.tail = null;
+            chain.length = 0;
+            chain.weight = 0;
+        }
+        pendingChains.clear();
+    }
+
+    /**
+     * @return the number of lines read, including comments and rejected lines
+     */
+    public long getNumberOfLines() {
+        return numberOfLines;
+    }
+
+    public long getNumberOfLoadedWagons() {
+        return numberOfLoadedWagons;
+    }
+
+    public long getNumberOfRejectedLines() {
+        return numberOfRejectedLines;
+    }
+
+    public long getNumberOfBytes() {
+        return numberOfBytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the number of wagons loaded per second of loading (return 0 if nothing was loaded yet)
+     */
+    public double getWagonsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : numberOfLoadedWagons * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return the number of megabytes read per second of loading (return 0 if nothing was loaded yet)
+     */
+    public double getMegabytesPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : numberOfBytes * 1e9 / elapsedNanos / (1 << 20);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("loaded %d wagons from %d lines (%d rejected) at %.0f wagons/s, %.1f MB/s",
+                numberOfLoadedWagons, numberOfLines, numberOfRejectedLines, getWagonsPerSecond(), getMegabytesPerSecond());
+    }
+}
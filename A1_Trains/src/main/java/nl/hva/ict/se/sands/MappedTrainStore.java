@@ -0,0 +1,713 @@
+package models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent store of trains and wagons in a memory-mapped file
+ * All data lives in fixed-width records in the file, links between wagons are record numbers.
+ * Opening an existing store only maps the file, so trains are available instantly
+ * and are composed and split in place without creating Wagon objects.
+ * <p>
+ * File layout: a header, a table of train records and a growing area of wagon records.
+ * A train record holds the consist of the train, at most four locomotives with their capacity.
+ * Wagon types are CompactTrain.PASSENGER and CompactTrain.FREIGHT.
+ * The store does not verify that wagon ids are unique.
+ */
+public class MappedTrainStore implements Closeable {
+    private static final int MAGIC = 0x54524E53;      // "TRNS"
+    private static final int VERSION = 2;             // version 1 kept only the leading engine
+    private static final int NONE = -1;
+
+    // header fields
+    private static final int HEADER_SIZE = 32;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_TRAIN_CAPACITY = 8;
+    private static final int H_NUMBER_OF_TRAINS = 12;
+    private static final int H_WAGON_CAPACITY = 16;
+    private static final int H_USED_SLOTS = 20;
+
+    // train record fields
+    private static final int TRAIN_RECORD = 156;
+    private static final int T_LOC_NUMBER = 0;        // number of the leading engine
+    private static final int T_MAX_WAGONS = 4;        // of all locomotives together
+    private static final int T_FIRST = 8;
+    private static final int T_LAST = 12;
+    private static final int T_NUMBER_OF_WAGONS = 16;
+    private static final int T_SEATS = 20;
+    private static final int T_MAX_WEIGHT = 24;
+    private static final int T_REVERSED = 28;         // 1 if the wagon links are read the other way around
+    private static final int T_ORIGIN = 32;
+    private static final int T_DESTINATION = 64;
+    private static final int NAME_SIZE = 32;          // 2 bytes length + at most 30 bytes UTF-8
+    private static final int T_WEIGHT_LIMIT = 96;     // long, Long.MAX_VALUE if a locomotive has no weight limit
+    private static final int T_NUMBER_OF_LOCOMOTIVES = 104;
+    private static final int T_LOCOMOTIVES = 108;     // MAX_LOCOMOTIVES locomotive entries
+    private static final int MAX_LOCOMOTIVES = 4;
+
+    // locomotive entry fields
+    private static final int LOCOMOTIVE_ENTRY = 12;
+    private static final int L_NUMBER = 0;
+    private static final int L_MAX_WAGONS = 4;
+    private static final int L_MAX_WEIGHT = 8;
+
+    // wagon record fields
+    private static final int WAGON_RECORD = 20;
+    private static final int W_ID = 0;
+    private static final int W_TYPE = 4;
+    private static final int W_VALUE = 8;
+    private static final int W_NEXT = 12;
+    private static final int W_PREVIOUS = 16;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final int wagonsOffset;
+
+    /* Representation invariants:
+        buffer maps the complete file, the file holds HEADER_SIZE + trainCapacity * TRAIN_RECORD
+        + wagonCapacity * WAGON_RECORD bytes
+        every slot below usedSlots is part of exactly one train
+     */
+
+    private MappedTrainStore(FileChannel channel, int trainCapacity) {
+        this.channel = channel;
+        this.wagonsOffset = HEADER_SIZE + trainCapacity * TRAIN_RECORD;
+    }
+
+    /**
+     * Creates a new, empty store in the given file (replacing any existing content)
+     *
+     * @param file          the file of the store
+     * @param trainCapacity maximum number of trains in the store
+     * @param wagonCapacity initial number of wagon records, the store grows when more are needed
+     * @return the opened store
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static MappedTrainStore create(Path file, int trainCapacity, int wagonCapacity) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedTrainStore store = new MappedTrainStore(channel, trainCapacity);
+        store.map(Math.max(wagonCapacity, 1));
+
+        store.buffer.putInt(H_MAGIC, MAGIC);
+        store.buffer.putInt(H_VERSION, VERSION);
+        store.buffer.putInt(H_TRAIN_CAPACITY, trainCapacity);
+        store.buffer.putInt(H_NUMBER_OF_TRAINS, 0);
+        store.buffer.putInt(H_WAGON_CAPACITY, Math.max(wagonCapacity, 1));
+        store.buffer.putInt(H_USED_SLOTS, 0);
+        return store;
+    }
+
+    /**
+     * Opens an existing store, without reading any of its trains or wagons
+     *
+     * @param file the file of the store
+     * @return the opened store
+     * @throws IOException if the file cannot be mapped or is not a train store
+     */
+    public static MappedTrainStore open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION) {
+            channel.close();
+            throw new IOException("not a train store: " + file);
+        }
+
+        MappedTrainStore store = new MappedTrainStore(channel, header.getInt(H_TRAIN_CAPACITY));
+        store.map(header.getInt(H_WAGON_CAPACITY));
+        return store;
+    }
+
+    /**
+     * Adds a new train without wagons to the store
+     *
+     * @return the view on the new train
+     * @throws IllegalArgumentException if the origin or destination takes more than 30 bytes in UTF-8
+     */
+    public TrainView addTrain(Locomotive engine, String origin, String destination) {
+        return addTrain(List.of(engine), origin, destination);
+    }
+
+    /**
+     * Adds a new train without wagons, pulled by the given consist, to the store
+     *
+     * @param locomotives the locomotives of the consist, the leading engine first
+     * @return the view on the new train
+     * @throws IllegalArgumentException if the consist has no or more than four locomotives,
+     *                                  or the origin or destination takes more than 30 bytes in UTF-8
+     */
+    public TrainView addTrain(List<Locomotive> locomotives, String origin, String destination) {
+        if (locomotives.isEmpty() || locomotives.size() > MAX_LOCOMOTIVES) {
+            throw new IllegalArgumentException("a consist has 1 to " + MAX_LOCOMOTIVES + " locomotives, not "
+                    + locomotives.size());
+        }
+        byte[] originBytes = encodeName(origin);
+        byte[] destinationBytes = encodeName(destination);
+        int number = getNumberOfTrains();
+        if (number == buffer.getInt(H_TRAIN_CAPACITY)) {
+            throw new IllegalStateException("the store cannot hold more than " + number + " trains");
+        }
+
+        int base = HEADER_SIZE + number * TRAIN_RECORD;
+        for (int i = 0; i < locomotives.size(); i++) {
+            Locomotive locomotive = locomotives.get(i);
+            int entry = base + T_LOCOMOTIVES + i * LOCOMOTIVE_ENTRY;
+            buffer.putInt(entry + L_NUMBER, locomotive.getLocNumber());
+            buffer.putInt(entry + L_MAX_WAGONS, locomotive.getMaxWagons());
+            buffer.putInt(entry + L_MAX_WEIGHT, locomotive.getMaxWeight());
+        }
+        buffer.putInt(base + T_NUMBER_OF_LOCOMOTIVES, locomotives.size());
+        buffer.putLong(base + T_WEIGHT_LIMIT, Locomotive.maxWeightOf(locomotives));
+        buffer.putInt(base + T_LOC_NUMBER, locomotives.get(0).getLocNumber());
+        buffer.putInt(base + T_MAX_WAGONS, Locomotive.maxWagonsOf(locomotives));
+        buffer.putInt(base + T_FIRST, NONE);
+        buffer.putInt(base + T_LAST, NONE);
+        buffer.putInt(base + T_NUMBER_OF_WAGONS, 0);
+        buffer.putInt(base + T_SEATS, 0);
+        buffer.putInt(base + T_MAX_WEIGHT, 0);
+        buffer.putInt(base + T_REVERSED, 0);
+        putName(base + T_ORIGIN, originBytes);
+        putName(base + T_DESTINATION, destinationBytes);
+        buffer.putInt(H_NUMBER_OF_TRAINS, number + 1);
+        return new TrainView(number);
+    }
+
+    public int getNumberOfTrains() {
+        return buffer.getInt(H_NUMBER_OF_TRAINS);
+    }
+
+    /**
+     * @param number number of the train (in order of addition, starting at 0)
+     * @return the view on the train
+     */
+    public TrainView getTrain(int number) {
+        if (number < 0 || number >= getNumberOfTrains()) {
+            throw new IndexOutOfBoundsException("no train with number " + number);
+        }
+        return new TrainView(number);
+    }
+
+    /**
+     * Writes all changes to the file
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    /**
+     * View on one train in the store
+     * Every call reads or writes the store directly, views hold no state of their own.
+     */
+    public class TrainView {
+        private final int number;
+        private final int base;     // offset of the train record
+
+        private TrainView(int number) {
+            this.number = number;
+            this.base = HEADER_SIZE + number * TRAIN_RECORD;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public Locomotive getEngine() {
+            return locomotive(0);
+        }
+
+        /**
+         * @return new locomotives for the consist of the train, the leading engine first
+         */
+        public List<Locomotive> getLocomotives() {
+            int numberOfLocomotives = buffer.getInt(base + T_NUMBER_OF_LOCOMOTIVES);
+            List<Locomotive> locomotives = new ArrayList<>(numberOfLocomotives);
+            for (int i = 0; i < numberOfLocomotives; i++) {
+                locomotives.add(locomotive(i));
+            }
+            return locomotives;
+        }
+
+        /**
+         * @return the number of wagons all locomotives together can pull
+         */
+        public int getMaxWagons() {
+            return buffer.getInt(base + T_MAX_WAGONS);
+        }
+
+        /**
+         * @return the total weight of freight wagons all locomotives together can pull
+         * (return Long.MAX_VALUE if a locomotive of the consist has no weight limit)
+         */
+        public long getMaxWeight() {
+            return buffer.getLong(base + T_WEIGHT_LIMIT);
+        }
+
+        private Locomotive locomotive(int index) {
+            int entry = base + T_LOCOMOTIVES + index * LOCOMOTIVE_ENTRY;
+            return new Locomotive(buffer.getInt(entry + L_NUMBER), buffer.getInt(entry + L_MAX_WAGONS),
+                    buffer.getInt(entry + L_MAX_WEIGHT));
+        }
+
+        public String getOrigin() {
+            return getName(base + T_ORIGIN);
+        }
+
+        public String getDestination() {
+            return getName(base + T_DESTINATION);
+        }
+
+        public boolean hasWagons() {
+            return first() != NONE;
+        }
+
+        public int getNumberOfWagons() {
+            return buffer.getInt(base + T_NUMBER_OF_WAGONS);
+        }
+
+        public int getTotalNumberOfSeats() {
+            return buffer.getInt(base + T_SEATS);
+        }
+
+        public int getTotalMaxWeight() {
+            return buffer.getInt(base + T_MAX_WEIGHT);
+        }
+
+        /**
+         * Finds the id of the wagon at the given position (starting at 1 for the first wagon of the train)
+         *
+         * @param position given position
+         * @return the id of the wagon (return -1 if the position is not valid for this train)
+         */
+        public int findWagonIdAtPosition(int position) {
+            int slot = slotAtPosition(position);
+            return slot == NONE ? -1 : wagonInt(slot, W_ID);
+        }
+
+        /**
+         * Finds the position of the wagon with the given wagonId by walking the train
+         *
+         * @param wagonId id of the wagon
+         * @return the position of the wagon (return 0 if no wagon was found with the given wagonId)
+         */
+        public int findPositionOfWagon(int wagonId) {
+            int position = 1;
+            for (int slot = first(); slot != NONE; slot = next(slot)) {
+                if (wagonInt(slot, W_ID) == wagonId) {
+                    return position;
+                }
+                position++;
+            }
+            return 0;
+        }
+
+        /**
+         * @return the ids of all wagons in the order of the train
+         */
+        public int[] getWagonIds() {
+            int[] result = new int[getNumberOfWagons()];
+            int i = 0;
+            for (int slot = first(); slot != NONE; slot = next(slot)) {
+                result[i++] = wagonInt(slot, W_ID);
+            }
+            return result;
+        }
+
+        /**
+         * Determines if a sequence of wagons of the given type and length can be attached to the train
+         *
+         * @param type   type of the wagons (CompactTrain.PASSENGER or CompactTrain.FREIGHT)
+         * @param length number of wagons in the sequence
+         * @return whether the attachment could be completed successfully
+         */
+        public boolean canAttach(int type, int length) {
+            boolean possibleToAttach = true;
+
+            // verifying if the type of the wagons is known and matches and the locomotives have sufficient capacity
+            if (type != CompactTrain.PASSENGER && type != CompactTrain.FREIGHT) {
+                possibleToAttach = false;
+            } else if (hasWagons() && wagonInt(first(), W_TYPE) != type) {
+                possibleToAttach = false;
+            } else if (getNumberOfWagons() + length > getMaxWagons()) {
+                possibleToAttach = false;
+            }
+
+            return possibleToAttach;
+        }
+
+        /**
+         * @return whether the locomotives can pull the given weight on top of the freight wagons of the train
+         */
+        private boolean canPull(long weight) {
+            return getTotalMaxWeight() + weight <= getMaxWeight();
+        }
+
+        /**
+         * Tries to attach a new wagon to the rear of the train
+         *
+         * @return whether the attachment could be completed successfully
+         */
+        public boolean attachToRear(int type, int wagonId, int value) {
+            return insertAtPosition(getNumberOfWagons() + 1, type, wagonId, value);
+        }
+
+        /**
+         * Tries to insert a new wagon at the given wagon position in the train
+         * No change is made if the insertion cannot be made
+         * (when the type is unknown or not compatible, the locomotives have insufficient capacity
+         * or the given position is not valid in this train)
+         *
+         * @param position place in the train (the position behind the last wagon is valid too)
+         * @return whether the insertion could be completed successfully
+         */
+        public boolean insertAtPosition(int position, int type, int wagonId, int value) {
+            if (position < 1 || position > getNumberOfWagons() + 1 || !canAttach(type, 1)
+                    || type == CompactTrain.FREIGHT && !canPull(value)) {
+                return false;
+            }
+
+            int successor = slotAtPosition(position);
+            int predecessor = successor == NONE ? last() : previous(successor);
+            int slot = allocate();
+            putWagonInt(slot, W_ID, wagonId);
+            putWagonInt(slot, W_TYPE, type);
+            putWagonInt(slot, W_VALUE, value);
+            link(predecessor, slot, slot, successor);
+            account(type, value, 1);
+            return true;
+        }
+
+        /**
+         * Tries to remove one wagon with the given wagonId from this train
+         * and attach it at the rear of the given toTrain
+         * No change is made if the removal or attachment cannot be made
+         *
+         * @param wagonId id of the wagon
+         * @param toTrain where the wagon is going to be moved
+         * @return whether the move could be completed successfully
+         */
+        public boolean moveOneWagon(int wagonId, TrainView toTrain) {
+            int slot = first();
+            while (slot != NONE && wagonInt(slot, W_ID) != wagonId) {
+                slot = next(slot);
+            }
+            if (slot == NONE || toTrain.number == number || !toTrain.canAttach(wagonInt(slot, W_TYPE), 1)
+                    || wagonInt(slot, W_TYPE) == CompactTrain.FREIGHT && !toTrain.canPull(wagonInt(slot, W_VALUE))) {
+                return false;
+            }
+
+            // reconnect the predecessor and successor of the wagon
+            int predecessor = previous(slot);
+            int successor = next(slot);
+            if (predecessor == NONE) {
+                setFirst(successor);
+            } else {
+                setNext(predecessor, successor);
+            }
+            if (successor == NONE) {
+                setLast(predecessor);
+            } else {
+                setPrevious(successor, predecessor);
+            }
+            account(wagonInt(slot, W_TYPE), -wagonInt(slot, W_VALUE), -1);
+
+            // the record itself moves to toTrain
+            putWagonInt(slot, W_NEXT, NONE);
+            putWagonInt(slot, W_PREVIOUS, NONE);
+            toTrain.link(toTrain.last(), slot, slot, NONE);
+            toTrain.account(wagonInt(slot, W_TYPE), wagonInt(slot, W_VALUE), 1);
+            return true;
+        }
+
+        /**
+         * Tries to split this train and move the complete sequence of wagons from the given position
+         * to the rear of toTrain, relinking the records in place
+         * No change is made if the split or re-attachment cannot be made
+         *
+         * @param position place in the train
+         * @param toTrain  where the wagons are going to be moved
+         * @return whether the move could be completed successfully
+         */
+        public boolean splitAtPosition(int position, TrainView toTrain) {
+            int slot = slotAtPosition(position);
+            int length = getNumberOfWagons() - position + 1;
+            if (slot == NONE || toTrain.number == number || !toTrain.canAttach(wagonInt(slot, W_TYPE), length)) {
+                return false;
+            }
+            if (wagonInt(slot, W_TYPE) == CompactTrain.FREIGHT) {
+                long weight = 0;
+                for (int s = slot; s != NONE; s = next(s)) {
+                    weight += wagonInt(s, W_VALUE);
+                }
+                if (!toTrain.canPull(weight)) {
+                    return false;
+                }
+            }
+
+            // the predecessor of the position becomes the last wagon
+            int predecessor = previous(slot);
+            int tail = last();
+            if (predecessor == NONE) {
+                setFirst(NONE);
+            } else {
+                setNext(predecessor, NONE);
+            }
+            setLast(predecessor);
+            setPrevious(slot, NONE);
+
+            // summing up the moved wagons, turning their links if toTrain has the other orientation
+            int sum = 0;
+            boolean turn = isReversed() != toTrain.isReversed();
+            for (int s = slot; s != NONE; ) {
+                int following = next(s);
+                sum += wagonInt(s, W_VALUE);
+                if (turn) {
+                    int link = wagonInt(s, W_NEXT);
+                    putWagonInt(s, W_NEXT, wagonInt(s, W_PREVIOUS));
+                    putWagonInt(s, W_PREVIOUS, link);
+                }
+                s = following;
+            }
+            int type = wagonInt(slot, W_TYPE);
+            account(type, -sum, -length);
+
+            toTrain.link(toTrain.last(), slot, tail, NONE);
+            toTrain.account(type, sum, length);
+            return true;
+        }
+
+        /**
+         * Reverses the sequence of wagons in this train by flipping its orientation,
+         * so no wagon record has to be touched
+         */
+        public void reverse() {
+            int first = first();
+            buffer.putInt(base + T_FIRST, last());
+            buffer.putInt(base + T_LAST, first);
+            buffer.putInt(base + T_REVERSED, isReversed() ? 0 : 1);
+        }
+
+        /**
+         * Builds an object graph train with new locomotives and new wagons for all wagons of this train
+         *
+         * @return the train with the same consist, route and wagons
+         * @throws IllegalStateException if the wagons exceed the capacity of the consist
+         */
+        public Train toTrain() {
+            List<Locomotive> locomotives = getLocomotives();
+            Train train = new Train(locomotives.get(0), getOrigin(), getDestination());
+            for (int i = 1; i < locomotives.size(); i++) {
+                train.addLocomotive(locomotives.get(i));
+            }
+            if (getNumberOfWagons() > train.getMaxWagons() || !train.canPull(getTotalMaxWeight())) {
+                throw new IllegalStateException("the wagons of train " + number + " exceed the capacity of its locomotives");
+            }
+            Wagon first = null;
+            Wagon last = null;
+
+            for (int slot = first(); slot != NONE; slot = next(slot)) {
+                int id = wagonInt(slot, W_ID);
+                Wagon wagon = wagonInt(slot, W_TYPE) == CompactTrain.PASSENGER
+                        ? new PassengerWagon(id, wagonInt(slot, W_VALUE))
+                        : new FreightWagon(id, wagonInt(slot, W_VALUE));
+                if (first == null) {
+                    first = wagon;
+                } else {
+                    wagon.attachTo(last);
+                }
+                last = wagon;
+            }
+            train.setFirstWagon(first);
+            return train;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            result.append(getEngine().toString());
+
+            for (int slot = first(); slot != NONE; slot = next(slot)) {
+                result.append(String.format("[Wagon-%d]", wagonInt(slot, W_ID)));
+            }
+
+            result.append(String.format(" with %d wagons from %s to %s", getNumberOfWagons(), getOrigin(), getDestination()));
+            return result.toString();
+        }
+
+        /**
+         * Connects the (already linked) records from head to tail in between two neighbours
+         *
+         * @param predecessor slot that gets the records appended (NONE for the front of the train)
+         * @param head        first slot of the records
+         * @param tail        last slot of the records
+         * @param successor   slot that gets the records prepended (NONE for the rear of the train)
+         */
+        private void link(int predecessor, int head, int tail, int successor) {
+            setPrevious(head, predecessor);
+            if (predecessor == NONE) {
+                setFirst(head);
+            } else {
+                setNext(predecessor, head);
+            }
+
+            setNext(tail, successor);
+            if (successor == NONE) {
+                setLast(tail);
+            } else {
+                setPrevious(successor, tail);
+            }
+        }
+
+        private void account(int type, int value, int wagons) {
+            buffer.putInt(base + T_NUMBER_OF_WAGONS, getNumberOfWagons() + wagons);
+            int field = type == CompactTrain.PASSENGER ? T_SEATS : T_MAX_WEIGHT;
+            buffer.putInt(base + field, buffer.getInt(base + field) + value);
+        }
+
+        private int slotAtPosition(int position) {
+            int numberOfWagons = getNumberOfWagons();
+            if (position < 1 || position > numberOfWagons) {
+                return NONE;
+            }
+
+            // walking from the nearest end of the train
+            int slot;
+            if (position <= numberOfWagons / 2) {
+                slot = first();
+                for (int i = 1; i < position; i++) {
+                    slot = next(slot);
+                }
+            } else {
+                slot = last();
+                for (int i = numberOfWagons; i > position; i--) {
+                    slot = previous(slot);
+                }
+            }
+            return slot;
+        }
+
+        private boolean isReversed() {
+            return buffer.getInt(base + T_REVERSED) != 0;
+        }
+
+        private int first() {
+            return buffer.getInt(base + T_FIRST);
+        }
+
+        private int last() {
+            return buffer.getInt(base + T_LAST);
+        }
+
+        private void setFirst(int slot) {
+            buffer.putInt(base + T_FIRST, slot);
+        }
+
+        private void setLast(int slot) {
+            buffer.putInt(base + T_LAST, slot);
+        }
+
+        // links of the wagons as seen in the orientation of this train
+
+        private int next(int slot) {
+            return wagonInt(slot, isReversed() ? W_PREVIOUS : W_NEXT);
+        }
+
+        private int previous(int slot) {
+            return wagonInt(slot, isReversed() ? W_NEXT : W_PREVIOUS);
+        }
+
+        private void setNext(int slot, int next) {
+            putWagonInt(slot, isReversed() ? W_PREVIOUS : W_NEXT, next);
+        }
+
+        private void setPrevious(int slot, int previous) {
+            putWagonInt(slot, isReversed() ? W_NEXT : W_PREVIOUS, previous);
+        }
+    }
+
+    private int wagonInt(int slot, int field) {
+        return buffer.getInt(wagonsOffset + slot * WAGON_RECORD + field);
+    }
+
+    private void putWagonInt(int slot, int field, int value) {
+        buffer.putInt(wagonsOffset + slot * WAGON_RECORD + field, value);
+    }
+
+    /**
+     * Takes a new wagon record, growing the file if needed
+     * (records are never released, wagons only move between trains)
+     *
+     * @return the slot of the record (not linked yet)
+     */
+    private int allocate() {
+        int slot = buffer.getInt(H_USED_SLOTS);
+        int capacity = buffer.getInt(H_WAGON_CAPACITY);
+        if (slot == capacity) {
+            long largest = (Integer.MAX_VALUE - wagonsOffset) / WAGON_RECORD;
+            if (capacity == largest) {
+                throw new IllegalStateException("the store cannot hold more than " + capacity + " wagons");
+            }
+            capacity = (int) Math.min(2L * capacity, largest);
+            try {
+                map(capacity);
+            } catch (IOException e) {
+                throw new IllegalStateException("the store cannot grow", e);
+            }
+            buffer.putInt(H_WAGON_CAPACITY, capacity);
+        }
+        buffer.putInt(H_USED_SLOTS, slot + 1);
+        return slot;
+    }
+
+    /**
+     * Maps the whole file for the given number of wagon records, extending the file if needed
+     */
+    private void map(int wagonCapacity) throws IOException {
+        long size = wagonsOffset + (long) wagonCapacity * WAGON_RECORD;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("a store can hold at most 2GB");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * @return the UTF-8 encoding of the given name
+     * @throws IllegalArgumentException if the encoding does not fit a name field
+     */
+    private static byte[] encodeName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > NAME_SIZE - 2) {
+            throw new IllegalArgumentException("the name " + name + " takes " + bytes.length
+                    + " bytes, at most " + (NAME_SIZE - 2) + " fit");
+        }
+        return bytes;
+    }
+
+    private void putName(int offset, byte[] bytes) {
+        buffer.putShort(offset, (short) bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(offset + 2 + i, bytes[i]);
+        }
+    }
+
+    private String getName(int offset) {
+        byte[] bytes = new byte[buffer.getShort(offset)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,505 @@
+package models;
+
+import java.util.List;
+
+/**
+ * Persistent train class
+ * Immutable composition of a train that every operation returns as a new version,
+ * leaving the original untouched. The wagons are kept in an implicit treap over their positions
+ * and a new version only copies the O(log n) nodes on the paths that changed, all other nodes
+ * are shared with the version it was derived from. Snapshots therefore cost only their differences.
+ * <p>
+ * Attaching, inserting, removing, splitting (take/drop) and concatenating take O(log n) expected steps,
+ * reversing takes constant time. The cumulative number of seats and weight are kept in every node.
+ * Unlike Train, a persistent train does not check for duplicate wagon ids.
+ * All versions of a train share its consist of one or more locomotives, the leading engine first.
+ */
+public class PersistentTrain {
+    private static class Node {
+        final int wagonId;
+        final int type;         // CompactTrain.PASSENGER or CompactTrain.FREIGHT
+        final int value;        // number of seats or maximum weight
+        final int priority;     // heap order of the treap, larger priorities are closer to the root
+        final boolean reversed; // the subtree of this node has to be read mirrored
+        Node left;              // only assigned while the node is being built
+        Node right;
+        int size;               // number of nodes in the subtree of this node
+        int seats;              // number of seats in the subtree of this node
+        int maxWeight;          // maximum weight of the subtree of this node
+
+        Node(int wagonId, int type, int value) {
+            this(wagonId, type, value, priorityOf(wagonId), false);
+        }
+
+        private Node(int wagonId, int type, int value, int priority, boolean reversed) {
+            this.wagonId = wagonId;
+            this.type = type;
+            this.value = value;
+            this.priority = priority;
+            this.reversed = reversed;
+        }
+
+        /**
+         * Creates a node with the wagon of the given node and new children
+         */
+        Node(Node wagon, Node left, Node right) {
+            this(wagon.wagonId, wagon.type, wagon.value, wagon.priority, false);
+            this.left = left;
+            this.right = right;
+            update();
+        }
+
+        void update() {
+            size = 1 + size(left) + size(right);
+            seats = (type == CompactTrain.PASSENGER ? value : 0) + seats(left) + seats(right);
+            maxWeight = (type == CompactTrain.FREIGHT ? value : 0) + maxWeight(left) + maxWeight(right);
+        }
+    }
+
+    private final List<Locomotive> locomotives;
+    private final int maxWagons;        // of all locomotives together
+    private final long maxWeight;       // of all locomotives together, Long.MAX_VALUE if not limited
+    private final String origin;
+    private final String destination;
+    private final Node root;
+
+    /* Representation invariants:
+        node.size == 1 + size(node.left) + size(node.right)
+        node.priority >= child.priority for both children
+        all wagons in the tree have the same type
+        nodes are never changed once a version refers to them
+        locomotives is not empty
+     */
+
+    public PersistentTrain(Locomotive engine, String origin, String destination) {
+        this(List.of(engine), origin, destination);
+    }
+
+    /**
+     * @param locomotives the locomotives of the consist, the leading engine first
+     * @throws IllegalArgumentException if the consist has no locomotives
+     */
+    public PersistentTrain(List<Locomotive> locomotives, String origin, String destination) {
+        this(List.copyOf(locomotives), Locomotive.maxWagonsOf(locomotives), Locomotive.maxWeightOf(locomotives),
+                origin, destination, null);
+        if (locomotives.isEmpty()) {
+            throw new IllegalArgumentException("a train needs at least one locomotive");
+        }
+    }
+
+    private PersistentTrain(List<Locomotive> locomotives, int maxWagons, long maxWeight,
+                            String origin, String destination, Node root) {
+        this.locomotives = locomotives;
+        this.maxWagons = maxWagons;
+        this.maxWeight = maxWeight;
+        this.origin = origin;
+        this.destination = destination;
+        this.root = root;
+    }
+
+    /**
+     * Copies the wagons of the given train into a persistent train
+     *
+     * @param train the train to copy
+     * @return the persistent train with the same locomotives, route and wagons
+     */
+    public static PersistentTrain from(Train train) {
+        // building the treap in one pass with a stack of its right spine
+        Node[] spine = new Node[train.getNumberOfWagons()];
+        int height = 0;
+        for (Wagon wagon : train) {
+            Node node = wagon instanceof PassengerWagon
+                    ? new Node(wagon.getId(), CompactTrain.PASSENGER, ((PassengerWagon) wagon).getNumberOfSeats())
+                    : new Node(wagon.getId(), CompactTrain.FREIGHT, ((FreightWagon) wagon).getMaxWeight());
+            Node lastPopped = null;
+            while (height > 0 && spine[height - 1].priority < node.priority) {
+                lastPopped = spine[--height];
+            }
+            node.left = lastPopped;
+            if (height > 0) {
+                spine[height - 1].right = node;
+            }
+            spine[height++] = node;
+        }
+
+        Node root = height == 0 ? null : spine[0];
+        updateAll(root);
+        return new PersistentTrain(train.getLocomotives(), train.getOrigin(), train.getDestination()).withRoot(root);
+    }
+
+    /**
+     * Builds an object graph train with new wagons for all wagons of this train
+     *
+     * @return the train with the same locomotives, route and wagons
+     * @throws IllegalStateException if the wagons exceed the capacity of the locomotives
+     */
+    public Train toTrain() {
+        Train train = new Train(locomotives.get(0), origin, destination);
+        for (int i = 1; i < locomotives.size(); i++) {
+            train.addLocomotive(locomotives.get(i));
+        }
+        if (getNumberOfWagons() > train.getMaxWagons() || !train.canPull(getTotalMaxWeight())) {
+            throw new IllegalStateException("the wagons exceed the capacity of the locomotives of " + this);
+        }
+        Wagon first = null;
+        Wagon last = null;
+        for (Node node : getNodes()) {
+            Wagon wagon = node.type == CompactTrain.PASSENGER
+                    ? new PassengerWagon(node.wagonId, node.value)
+                    : new FreightWagon(node.wagonId, node.value);
+            if (first == null) {
+                first = wagon;
+            } else {
+                wagon.attachTo(last);
+            }
+            last = wagon;
+        }
+        train.setFirstWagon(first);
+        return train;
+    }
+
+    public Locomotive getEngine() {
+        return locomotives.get(0);
+    }
+
+    /**
+     * @return the locomotives of the consist, the leading engine first
+     */
+    public List<Locomotive> getLocomotives() {
+        return locomotives;
+    }
+
+    /**
+     * @return the number of wagons all locomotives together can pull
+     */
+    public int getMaxWagons() {
+        return maxWagons;
+    }
+
+    /**
+     * @return the total weight of freight wagons all locomotives together can pull
+     * (return Long.MAX_VALUE if a locomotive of the consist has no weight limit)
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public int getNumberOfWagons() {
+        return size(root);
+    }
+
+    public int getTotalNumberOfSeats() {
+        return seats(root);
+    }
+
+    public int getTotalMaxWeight() {
+        return maxWeight(root);
+    }
+
+    public boolean isPassengerTrain() {
+        return typeOf(root) == CompactTrain.PASSENGER;
+    }
+
+    public boolean isFreightTrain() {
+        return typeOf(root) == CompactTrain.FREIGHT;
+    }
+
+    /**
+     * @param position position of the wagon (the first wagon is at position 1)
+     * @return the id of the wagon at the given position (return -1 if the position is not valid)
+     */
+    public int findWagonIdAtPosition(int position) {
+        if (position < 1 || position > getNumberOfWagons()) {
+            return -1;
+        }
+        return nodeAt(position).wagonId;
+    }
+
+    /**
+     * @return the ids of all wagons in order of the train
+     */
+    public int[] getWagonIds() {
+        Node[] nodes = getNodes();
+        int[] wagonIds = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            wagonIds[i] = nodes[i].wagonId;
+        }
+        return wagonIds;
+    }
+
+    /**
+     * Determines if the given number of wagons of the given type can be attached to this train
+     *
+     * @param type   CompactTrain.PASSENGER or CompactTrain.FREIGHT
+     * @param length number of wagons
+     * @return whether the wagons can be attached
+     */
+    public boolean canAttach(int type, int length) {
+        int trainType = typeOf(root);
+        return (trainType == 0 || trainType == type) && getNumberOfWagons() + length <= maxWagons;
+    }
+
+    /**
+     * @return whether the locomotives can pull wagons of the given type and total value on top of the wagons
+     */
+    private boolean canPull(int type, long value) {
+        return type != CompactTrain.FREIGHT || getTotalMaxWeight() + value <= maxWeight;
+    }
+
+    /**
+     * @return the new version with the wagon attached behind the last wagon (return null if it cannot be attached)
+     */
+    public PersistentTrain attachToRear(int type, int wagonId, int value) {
+        return insertAtPosition(getNumberOfWagons() + 1, type, wagonId, value);
+    }
+
+    /**
+     * @return the new version with the wagon in front of the first wagon (return null if it cannot be attached)
+     */
+    public PersistentTrain insertAtFront(int type, int wagonId, int value) {
+        return insertAtPosition(1, type, wagonId, value);
+    }
+
+    /**
+     * Inserts a new wagon at the given position
+     *
+     * @param position position of the new wagon (1 up to the number of wagons + 1)
+     * @param type     CompactTrain.PASSENGER or CompactTrain.FREIGHT
+     * @param wagonId  id of the new wagon
+     * @param value    number of seats or maximum weight of the new wagon
+     * @return the new version (return null if the position is not valid or the wagon cannot be attached,
+     * also when the locomotives cannot pull its weight)
+     */
+    public PersistentTrain insertAtPosition(int position, int type, int wagonId, int value) {
+        if (position < 1 || position > getNumberOfWagons() + 1 || !canAttach(type, 1) || !canPull(type, value)) {
+            return null;
+        }
+        Node wagon = new Node(wagonId, type, value);
+        wagon.update();
+        Node[] parts = split(root, position - 1);
+        return withRoot(merge(merge(parts[0], wagon), parts[1]));
+    }
+
+    /**
+     * @param position position of the wagon to remove
+     * @return the new version without the wagon (return null if the position is not valid)
+     */
+    public PersistentTrain removeWagonAtPosition(int position) {
+        if (position < 1 || position > getNumberOfWagons()) {
+            return null;
+        }
+        Node[] front = split(root, position - 1);
+        Node[] back = split(front[1], 1);
+        return withRoot(merge(front[0], back[1]));
+    }
+
+    /**
+     * @param count number of wagons to keep (all wagons if it exceeds the number of wagons)
+     * @return the new version with only the first count wagons
+     */
+    public PersistentTrain take(int count) {
+        if (count >= getNumberOfWagons()) {
+            return this;
+        }
+        return withRoot(count <= 0 ? null : split(root, count)[0]);
+    }
+
+    /**
+     * @param count number of wagons to remove from the front (all wagons if it exceeds the number of wagons)
+     * @return the new version without the first count wagons
+     */
+    public PersistentTrain drop(int count) {
+        if (count <= 0) {
+            return this;
+        }
+        return withRoot(count >= getNumberOfWagons() ? null : split(root, count)[1]);
+    }
+
+    /**
+     * Attaches all wagons of the other train behind the last wagon of this train
+     * The other train is not changed, both versions share its nodes.
+     *
+     * @param other the train with the wagons to attach
+     * @return the new version (return null if the wagons cannot be attached)
+     */
+    public PersistentTrain concat(PersistentTrain other) {
+        if (other.root == null) {
+            return this;
+        }
+        if (!canAttach(typeOf(other.root), other.getNumberOfWagons())
+                || !canPull(typeOf(other.root), other.getTotalMaxWeight())) {
+            return null;
+        }
+        return withRoot(merge(root, other.root));
+    }
+
+    /**
+     * @return the new version with the wagons in reverse order
+     */
+    public PersistentTrain reverse() {
+        return withRoot(mirror(root));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(getEngine().toString());
+
+        for (int wagonId : getWagonIds()) {
+            result.append(String.format("[Wagon-%d]", wagonId));
+        }
+
+        result.append(String.format(" with %d wagons from %s to %s", getNumberOfWagons(), origin, destination));
+        return result.toString();
+    }
+
+    private PersistentTrain withRoot(Node newRoot) {
+        return new PersistentTrain(locomotives, maxWagons, maxWeight, origin, destination, newRoot);
+    }
+
+    /**
+     * @return the node at the given (valid) position, reading mirrored subtrees the other way around
+     */
+    private Node nodeAt(int position) {
+        Node node = root;
+        boolean mirrored = false;
+        while (true) {
+            mirrored ^= node.reversed;
+            Node left = mirrored ? node.right : node.left;
+            int leftSize = size(left);
+            if (position <= leftSize) {
+                node = left;
+            } else if (position == leftSize + 1) {
+                return node;
+            } else {
+                position -= leftSize + 1;
+                node = mirrored ? node.left : node.right;
+            }
+        }
+    }
+
+    /**
+     * @return the nodes of all wagons in order of the train
+     */
+    private Node[] getNodes() {
+        Node[] nodes = new Node[getNumberOfWagons()];
+        collectNodes(root, false, nodes, 0);
+        return nodes;
+    }
+
+    private static int collectNodes(Node node, boolean mirrored, Node[] nodes, int index) {
+        if (node == null) {
+            return index;
+        }
+        mirrored ^= node.reversed;
+        index = collectNodes(mirrored ? node.right : node.left, mirrored, nodes, index);
+        nodes[index++] = node;
+        return collectNodes(mirrored ? node.left : node.right, mirrored, nodes, index);
+    }
+
+    /**
+     * @return the left child of the node as it has to be read, a mirrored copy if the node is reversed
+     */
+    private static Node leftOf(Node node) {
+        return node.reversed ? mirror(node.right) : node.left;
+    }
+
+    private static Node rightOf(Node node) {
+        return node.reversed ? mirror(node.left) : node.right;
+    }
+
+    /**
+     * @return a copy of the node that reads its subtree the other way around
+     */
+    private static Node mirror(Node node) {
+        if (node == null) {
+            return null;
+        }
+        Node mirrored = new Node(node.wagonId, node.type, node.value, node.priority, !node.reversed);
+        mirrored.left = node.left;
+        mirrored.right = node.right;
+        mirrored.size = node.size;
+        mirrored.seats = node.seats;
+        mirrored.maxWeight = node.maxWeight;
+        return mirrored;
+    }
+
+    /**
+     * Splits the treap into the first count wagons and the rest, copying only the nodes on the split path
+     *
+     * @return the two new roots
+     */
+    private static Node[] split(Node node, int count) {
+        if (node == null) {
+            return new Node[2];
+        }
+        Node left = leftOf(node);
+        Node right = rightOf(node);
+        if (size(left) >= count) {
+            Node[] parts = split(left, count);
+            parts[1] = new Node(node, parts[1], right);
+            return parts;
+        }
+        Node[] parts = split(right, count - size(left) - 1);
+        parts[0] = new Node(node, left, parts[0]);
+        return parts;
+    }
+
+    /**
+     * @return the root of the treap with all wagons of first followed by all wagons of second
+     */
+    private static Node merge(Node first, Node second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        if (first.priority > second.priority) {
+            return new Node(first, leftOf(first), merge(rightOf(first), second));
+        }
+        return new Node(second, merge(first, leftOf(second)), rightOf(second));
+    }
+
+    private static void updateAll(Node node) {
+        if (node != null) {
+            updateAll(node.left);
+            updateAll(node.right);
+            node.update();
+        }
+    }
+
+    private static int priorityOf(int wagonId) {
+        // a fixed priority per id keeps the shape of a composition independent of its history
+        int h = wagonId * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    private static int typeOf(Node node) {
+        return node == null ? 0 : node.type;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int seats(Node node) {
+        return node == null ? 0 : node.seats;
+    }
+
+    private static int maxWeight(Node node) {
+        return node == null ? 0 : node.maxWeight;
+    }
+}
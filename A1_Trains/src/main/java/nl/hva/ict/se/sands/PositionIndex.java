@@ -0,0 +1,419 @@
+package models;
+
+/**
+ * Order statistic index over a sequence of wagons
+ * The wagons are kept in an implicit treap: a randomly balanced binary tree
+ * ordered by position, in which every node knows the size of its subtree.
+ * Finding, inserting and removing at a position take O(log n) expected steps,
+ * reversing the whole sequence is done lazily in constant time.
+ * Every node also keeps the sum and maximum of the seats and of the weights in its subtree,
+ * so these can be aggregated over any range of positions in O(log n) expected steps.
+ * The index only refers to the wagons, it never changes their next/previous links.
+ */
+class PositionIndex {
+    static final int SEATS = 0;             // attribute of the number of seats
+    static final int MAX_WEIGHT = 1;        // attribute of the maximum weight
+
+    private static class Node {
+        final Wagon wagon;
+        final int priority;     // heap order of the treap, larger priorities are closer to the root
+        final int seats;        // attribute values of the wagon itself
+        final int maxWeight;
+        Node left;
+        Node right;
+        Node parent;
+        int size = 1;           // number of nodes in the subtree of this node
+        boolean reversed;       // the subtree of this node still has to be mirrored
+        long sumOfSeats;        // aggregates of the subtree of this node, independent of its orientation
+        int mostSeats;
+        long sumOfMaxWeights;
+        int largestMaxWeight;
+
+        Node(Wagon wagon, int priority) {
+            this.wagon = wagon;
+            this.priority = priority;
+            this.seats = Train.SEATS.applyAsInt(wagon);
+            this.maxWeight = Train.MAX_WEIGHT.applyAsInt(wagon);
+        }
+
+        int valueOf(int attribute) {
+            return attribute == SEATS ? seats : maxWeight;
+        }
+
+        long sumOf(int attribute) {
+            return attribute == SEATS ? sumOfSeats : sumOfMaxWeights;
+        }
+
+        int maxOf(int attribute) {
+            return attribute == SEATS ? mostSeats : largestMaxWeight;
+        }
+    }
+
+    private Node root;
+    private final IntHashMap<Node> nodesById = new IntHashMap<>();    // finds the node of a wagon
+    private int seed = 0x2F6B3A1D;                                    // state of the priority generator
+
+    // results of the last split, fields instead of an array to avoid allocation
+    private Node splitLeft;
+    private Node splitRight;
+
+    /* Representation invariants:
+        root == null || root.parent == null
+        node.size == 1 + size(node.left) + size(node.right)
+        the sums and maxima of node cover node and both its subtrees
+        node.priority >= child.priority for both children
+        nodesById holds exactly the nodes in the tree
+     */
+
+    /**
+     * Builds the index over the given sequence of wagons
+     *
+     * @param sequence first wagon of the sequence (can be null)
+     * @param length   number of wagons in the sequence
+     */
+    PositionIndex(Wagon sequence, int length) {
+        root = build(sequence, length);
+    }
+
+    /**
+     * @return the number of wagons in the index
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Reverses the order of all wagons in the index
+     */
+    void reverse() {
+        if (root != null) {
+            root.reversed = !root.reversed;
+        }
+    }
+
+    /**
+     * Finds the wagon at the given position (starting at 1)
+     *
+     * @param position given position
+     * @return the wagon found (return null if the position is not valid)
+     */
+    Wagon get(int position) {
+        if (position < 1 || position > size(root)) {
+            return null;
+        }
+
+        // descending into the subtree that holds the position
+        Node node = root;
+        while (true) {
+            push(node);
+            int leftSize = size(node.left);
+            if (position <= leftSize) {
+                node = node.left;
+            } else if (position == leftSize + 1) {
+                return node.wagon;
+            } else {
+                position -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Finds the position of the given wagon
+     *
+     * @param wagon the wagon
+     * @return the position of the wagon (return 0 if the wagon is not in the index)
+     */
+    int positionOf(Wagon wagon) {
+        Node node = nodesById.get(wagon.getId());
+        if (node == null || node.wagon != wagon) {
+            return 0;
+        }
+
+        // the pending reversals on the path decide which nodes are left of the path
+        pushFromRoot(node);
+
+        // climbing to the root, counting all nodes that are left of the path
+        int position = size(node.left) + 1;
+        while (node.parent != null) {
+            if (node == node.parent.right) {
+                position += size(node.parent.left) + 1;
+            }
+            node = node.parent;
+        }
+        return position;
+    }
+
+    /**
+     * @param attribute    SEATS or MAX_WEIGHT
+     * @param fromPosition position of the first wagon of the range
+     * @param toPosition   position of the last wagon of the range
+     * @return the sum of the attribute over the range (0 for an empty range)
+     */
+    long sum(int attribute, int fromPosition, int toPosition) {
+        return sum(root, attribute, fromPosition, toPosition);
+    }
+
+    /**
+     * @param attribute    SEATS or MAX_WEIGHT
+     * @param fromPosition position of the first wagon of the range
+     * @param toPosition   position of the last wagon of the range
+     * @return the maximum of the attribute over the range (Integer.MIN_VALUE for an empty range)
+     */
+    int max(int attribute, int fromPosition, int toPosition) {
+        return max(root, attribute, fromPosition, toPosition);
+    }
+
+    /**
+     * Inserts the given sequence of wagons such that its first wagon gets the given position
+     *
+     * @param position position of the first inserted wagon (1 up to size() + 1)
+     * @param sequence first wagon of the sequence
+     * @param length   number of wagons in the sequence
+     */
+    void insert(int position, Wagon sequence, int length) {
+        Node part = build(sequence, length);
+        split(root, position - 1);
+        Node right = splitRight;
+        root = merge(merge(splitLeft, part), right);
+        root.parent = null;
+    }
+
+    /**
+     * Removes a number of consecutive wagons
+     *
+     * @param position position of the first wagon that is removed
+     * @param count    number of wagons that are removed
+     */
+    void remove(int position, int count) {
+        split(root, position - 1);
+        Node left = splitLeft;
+        split(splitRight, count);
+        forget(splitLeft);
+        root = merge(left, splitRight);
+        if (root != null) {
+            root.parent = null;
+        }
+    }
+
+    /**
+     * Builds a treap over the given sequence in linear time
+     * by keeping the right spine of the tree on a stack
+     */
+    private Node build(Wagon sequence, int length) {
+        Node[] spine = new Node[Math.min(length, 64)];
+        int top = 0;
+        Wagon wagon = sequence;
+
+        for (int i = 0; i < length; i++) {
+            Node node = new Node(wagon, nextPriority());
+            nodesById.put(wagon.getId(), node);
+
+            // nodes with a lower priority become the left subtree of the new node
+            Node last = null;
+            while (top > 0 && spine[top - 1].priority < node.priority) {
+                last = spine[--top];
+            }
+            node.left = last;
+            if (last != null) {
+                last.parent = node;
+            }
+            if (top > 0) {
+                spine[top - 1].right = node;
+                node.parent = spine[top - 1];
+            }
+
+            if (top == spine.length) {
+                Node[] larger = new Node[top * 2];
+                System.arraycopy(spine, 0, larger, 0, top);
+                spine = larger;
+            }
+            spine[top++] = node;
+            wagon = wagon.getNextWagon();
+        }
+
+        if (top == 0) {
+            return null;
+        }
+        spine[0].parent = null;
+        updateSubtree(spine[0]);
+        return spine[0];
+    }
+
+    private void updateSubtree(Node node) {
+        if (node != null) {
+            updateSubtree(node.left);
+            updateSubtree(node.right);
+            update(node);
+        }
+    }
+
+    /**
+     * Sums the attribute over the given positions, counted from the start of the subtree
+     * Subtrees that lie completely inside the range contribute their stored sum,
+     * so only the two paths to the ends of the range are visited.
+     */
+    private static long sum(Node node, int attribute, int fromPosition, int toPosition) {
+        if (node == null || toPosition < 1 || fromPosition > node.size || fromPosition > toPosition) {
+            return 0;
+        }
+        if (fromPosition <= 1 && toPosition >= node.size) {
+            return node.sumOf(attribute);
+        }
+
+        push(node);
+        int position = size(node.left) + 1;
+        long result = sum(node.left, attribute, fromPosition, toPosition)
+                + sum(node.right, attribute, fromPosition - position, toPosition - position);
+        if (fromPosition <= position && position <= toPosition) {
+            result += node.valueOf(attribute);
+        }
+        return result;
+    }
+
+    private static int max(Node node, int attribute, int fromPosition, int toPosition) {
+        if (node == null || toPosition < 1 || fromPosition > node.size || fromPosition > toPosition) {
+            return Integer.MIN_VALUE;
+        }
+        if (fromPosition <= 1 && toPosition >= node.size) {
+            return node.maxOf(attribute);
+        }
+
+        push(node);
+        int position = size(node.left) + 1;
+        int result = Math.max(max(node.left, attribute, fromPosition, toPosition),
+                max(node.right, attribute, fromPosition - position, toPosition - position));
+        if (fromPosition <= position && position <= toPosition) {
+            result = Math.max(result, node.valueOf(attribute));
+        }
+        return result;
+    }
+
+    /**
+     * Splits the given subtree into the first count nodes (splitLeft) and the others (splitRight)
+     */
+    private void split(Node node, int count) {
+        if (node == null) {
+            splitLeft = null;
+            splitRight = null;
+            return;
+        }
+
+        push(node);
+        if (size(node.left) < count) {
+            // this node belongs to the left part, split its right subtree
+            split(node.right, count - size(node.left) - 1);
+            node.right = splitLeft;
+            if (splitLeft != null) {
+                splitLeft.parent = node;
+            }
+            update(node);
+            node.parent = null;
+            splitLeft = node;
+        } else {
+            // this node belongs to the right part, split its left subtree
+            split(node.left, count);
+            node.left = splitRight;
+            if (splitRight != null) {
+                splitRight.parent = node;
+            }
+            update(node);
+            node.parent = null;
+            splitRight = node;
+        }
+    }
+
+    /**
+     * Concatenates two subtrees, all nodes of left come before all nodes of right
+     */
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        } else if (left.priority > right.priority) {
+            push(left);
+            left.right = merge(left.right, right);
+            left.right.parent = left;
+            update(left);
+            return left;
+        } else {
+            push(right);
+            right.left = merge(left, right.left);
+            right.left.parent = right;
+            update(right);
+            return right;
+        }
+    }
+
+    /**
+     * Drops all nodes of the given subtree from the lookup by id
+     */
+    private void forget(Node node) {
+        if (node != null) {
+            nodesById.remove(node.wagon.getId());
+            forget(node.left);
+            forget(node.right);
+        }
+    }
+
+    /**
+     * Mirrors the children of the given node if a reversal is pending,
+     * passing the reversal on to its subtrees
+     */
+    private static void push(Node node) {
+        if (node.reversed) {
+            Node left = node.left;
+            node.left = node.right;
+            node.right = left;
+            if (node.left != null) {
+                node.left.reversed = !node.left.reversed;
+            }
+            if (node.right != null) {
+                node.right.reversed = !node.right.reversed;
+            }
+            node.reversed = false;
+        }
+    }
+
+    private static void pushFromRoot(Node node) {
+        if (node.parent != null) {
+            pushFromRoot(node.parent);
+        }
+        push(node);
+    }
+
+    private static void update(Node node) {
+        Node left = node.left;
+        Node right = node.right;
+        node.size = 1 + size(left) + size(right);
+        node.sumOfSeats = node.seats;
+        node.mostSeats = node.seats;
+        node.sumOfMaxWeights = node.maxWeight;
+        node.largestMaxWeight = node.maxWeight;
+        if (left != null) {
+            node.sumOfSeats += left.sumOfSeats;
+            node.mostSeats = Math.max(node.mostSeats, left.mostSeats);
+            node.sumOfMaxWeights += left.sumOfMaxWeights;
+            node.largestMaxWeight = Math.max(node.largestMaxWeight, left.largestMaxWeight);
+        }
+        if (right != null) {
+            node.sumOfSeats += right.sumOfSeats;
+            node.mostSeats = Math.max(node.mostSeats, right.mostSeats);
+            node.sumOfMaxWeights += right.sumOfMaxWeights;
+            node.largestMaxWeight = Math.max(node.largestMaxWeight, right.largestMaxWeight);
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private int nextPriority() {
+        // xorshift pseudo random numbers, priorities only need to be spread evenly
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+}
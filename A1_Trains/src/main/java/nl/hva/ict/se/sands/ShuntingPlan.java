@@ -0,0 +1,286 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch of shunting operations on several trains that is applied as a whole or not at all
+ * The capacity of the engines and the type compatibility of all steps are validated once,
+ * by simulating the number of wagons and the type of every involved train.
+ * The steps are then applied in a single pass without re-running canAttach.
+ * If a step still fails (a wagon id that cannot be found or that is already on the receiving train,
+ * or freight wagons that are too heavy for the locomotives of the receiving train)
+ * all steps applied so far are undone in reverse order.
+ * <p>
+ * Sequences attached by a plan must not be part of a train and must not have a predecessor.
+ */
+public class ShuntingPlan {
+    private enum Kind {ATTACH_TO_REAR, INSERT_AT_FRONT, INSERT_AT_POSITION, MOVE_ONE_WAGON, SPLIT_AT_POSITION, REVERSE}
+
+    private static class Step {
+        final Kind kind;
+        final Train train;
+        final Train toTrain;
+        final int position;     // position or wagon id, depending on the kind
+        final Wagon sequence;
+
+        // filled in while applying, to be able to undo the step
+        Wagon head;             // first wagon that was attached to toTrain (or train)
+        Wagon tail;             // last wagon that was attached
+        Wagon previous;         // wagon that preceded head in the train it came from
+
+        Step(Kind kind, Train train, Train toTrain, int position, Wagon sequence) {
+            this.kind = kind;
+            this.train = train;
+            this.toTrain = toTrain;
+            this.position = position;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Number of wagons and wagon type of a train while simulating the plan
+     */
+    private static class Simulation {
+        int numberOfWagons;
+        int type;
+        final int maxWagons;
+
+        Simulation(Train train) {
+            numberOfWagons = train.getNumberOfWagons();
+            type = typeOf(train.getFirstWagon());
+            maxWagons = train.getMaxWagons();
+        }
+
+        boolean canAttach(int sequenceType, int length) {
+            return (type == 0 || type == sequenceType) && numberOfWagons + length <= maxWagons;
+        }
+
+        void attach(int sequenceType, int length) {
+            numberOfWagons += length;
+            type = sequenceType;
+        }
+
+        void detach(int length) {
+            numberOfWagons -= length;
+            if (numberOfWagons == 0) {
+                type = 0;
+            }
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+
+    public ShuntingPlan attachToRear(Train train, Wagon sequence) {
+        steps.add(new Step(Kind.ATTACH_TO_REAR, train, train, 0, sequence));
+        return this;
+    }
+
+    public ShuntingPlan insertAtFront(Train train, Wagon sequence) {
+        steps.add(new Step(Kind.INSERT_AT_FRONT, train, train, 1, sequence));
+        return this;
+    }
+
+    public ShuntingPlan insertAtPosition(Train train, int position, Wagon sequence) {
+        steps.add(new Step(Kind.INSERT_AT_POSITION, train, train, position, sequence));
+        return this;
+    }
+
+    public ShuntingPlan moveOneWagon(Train fromTrain, int wagonId, Train toTrain) {
+        steps.add(new Step(Kind.MOVE_ONE_WAGON, fromTrain, toTrain, wagonId, null));
+        return this;
+    }
+
+    public ShuntingPlan splitAtPosition(Train fromTrain, int position, Train toTrain) {
+        steps.add(new Step(Kind.SPLIT_AT_POSITION, fromTrain, toTrain, position, null));
+        return this;
+    }
+
+    public ShuntingPlan reverse(Train train) {
+        steps.add(new Step(Kind.REVERSE, train, train, 0, null));
+        return this;
+    }
+
+    /**
+     * @return the number of steps in the plan
+     */
+    public int size() {
+        return steps.size();
+    }
+
+    /**
+     * Determines if all steps of the plan respect the type of the trains, the capacity of their engines
+     * and the valid positions, taking the effect of all earlier steps into account
+     *
+     * @return whether the plan is valid
+     */
+    public boolean validate() {
+        Map<Train, Simulation> trains = new IdentityHashMap<>();
+        Map<Wagon, Boolean> sequences = new IdentityHashMap<>();
+
+        for (Step step : steps) {
+            Simulation train = trains.computeIfAbsent(step.train, Simulation::new);
+            Simulation toTrain = trains.computeIfAbsent(step.toTrain, Simulation::new);
+
+            switch (step.kind) {
+                case ATTACH_TO_REAR:
+                case INSERT_AT_FRONT:
+                case INSERT_AT_POSITION:
+                    // every sequence must be free and can be attached only once
+                    if (step.sequence == null || step.sequence.train != null || step.sequence.hasPreviousWagon()
+                            || sequences.put(step.sequence, Boolean.TRUE) != null) {
+                        return false;
+                    }
+                    int length = step.sequence.getSequenceLength();
+                    int position = step.kind == Kind.ATTACH_TO_REAR ? train.numberOfWagons + 1 : step.position;
+                    if (position < 1 || position > train.numberOfWagons + 1
+                            || !train.canAttach(typeOf(step.sequence), length)) {
+                        return false;
+                    }
+                    train.attach(typeOf(step.sequence), length);
+                    break;
+                case MOVE_ONE_WAGON:
+                case SPLIT_AT_POSITION:
+                    int moved = step.kind == Kind.MOVE_ONE_WAGON ? 1 : train.numberOfWagons - step.position + 1;
+                    if (train == toTrain || moved < 1 || moved > train.numberOfWagons
+                            || !toTrain.canAttach(train.type, moved)) {
+                        return false;
+                    }
+                    toTrain.attach(train.type, moved);
+                    train.detach(moved);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Validates the plan and applies all its steps
+     * No change is made to any train if the plan is invalid or one of its steps fails.
+     *
+     * @return whether the plan could be completed successfully
+     */
+    public boolean execute() {
+        if (!validate()) {
+            return false;
+        }
+
+        for (int i = 0; i < steps.size(); i++) {
+            if (!apply(steps.get(i))) {
+                // undo the applied steps, the most recent one first
+                for (int j = i - 1; j >= 0; j--) {
+                    undo(steps.get(j));
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies one validated step
+     *
+     * @return whether the step could be applied (no change is made if not)
+     */
+    private boolean apply(Step step) {
+        Train train = step.train;
+        Train toTrain = step.toTrain;
+
+        switch (step.kind) {
+            case ATTACH_TO_REAR:
+            case INSERT_AT_FRONT:
+            case INSERT_AT_POSITION:
+                if (containsAnyId(train, step.sequence) || !train.canPull(weightOf(step.sequence))) {
+                    return false;
+                }
+                step.head = step.sequence;
+                step.tail = step.sequence.getLastWagonAttached();
+                if (step.kind == Kind.ATTACH_TO_REAR) {
+                    train.insertAfter(train.getLastWagonAttached(), step.head);
+                } else {
+                    train.insertAfter(train.wagonAt(step.position - 1), step.head);
+                }
+                return true;
+            case MOVE_ONE_WAGON:
+                step.head = train.wagonWithId(step.position);
+                step.tail = step.head;
+                if (step.head == null || toTrain.wagonWithId(step.position) != null
+                        || !toTrain.canPull(Train.MAX_WEIGHT.applyAsInt(step.head))) {
+                    return false;
+                }
+                break;
+            case SPLIT_AT_POSITION:
+                step.head = train.wagonAt(step.position);
+                step.tail = train.getLastWagonAttached();
+                if (containsAnyId(toTrain, step.head) || !toTrain.canPull(weightOf(step.head))) {
+                    return false;
+                }
+                break;
+            default:
+                train.reverse();
+                return true;
+        }
+
+        // moving the wagons from head to tail to the rear of toTrain
+        step.previous = step.head.getPreviousWagon();
+        train.detach(step.head, step.tail);
+        toTrain.insertAfter(toTrain.getLastWagonAttached(), step.head);
+        return true;
+    }
+
+    /**
+     * Restores the state before the given (applied) step
+     */
+    private void undo(Step step) {
+        switch (step.kind) {
+            case ATTACH_TO_REAR:
+            case INSERT_AT_FRONT:
+            case INSERT_AT_POSITION:
+                step.train.detach(step.head, step.tail);
+                break;
+            case MOVE_ONE_WAGON:
+            case SPLIT_AT_POSITION:
+                step.toTrain.detach(step.head, step.tail);
+                step.train.insertAfter(step.previous, step.head);
+                break;
+            default:
+                step.train.reverse();
+        }
+    }
+
+    /**
+     * @return whether any wagon of the given sequence has an id that is already used on the train
+     */
+    private static boolean containsAnyId(Train train, Wagon sequence) {
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            if (train.wagonWithId(wagon.getId()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the total maximum weight of the given wagon and its successors
+     */
+    private static long weightOf(Wagon sequence) {
+        long weight = 0;
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            weight += Train.MAX_WEIGHT.applyAsInt(wagon);
+        }
+        return weight;
+    }
+
+    private static int typeOf(Wagon wagon) {
+        if (wagon instanceof PassengerWagon) {
+            return CompactTrain.PASSENGER;
+        } else if (wagon instanceof FreightWagon) {
+            return CompactTrain.FREIGHT;
+        }
+        return 0;
+    }
+}
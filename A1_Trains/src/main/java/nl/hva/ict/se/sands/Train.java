@@ -1,25 +1,74 @@
 package models;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.IntSummaryStatistics;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Train class
  */
 public class Train implements Iterable<Wagon> {
+    public static final ToIntFunction<Wagon> SEATS = Train::seatsOf;              // seats of a wagon, 0 for freight
+    public static final ToIntFunction<Wagon> MAX_WEIGHT = Train::maxWeightOf;     // weight of a wagon, 0 for passengers
+
     private String origin;
     private String destination;
-    private Locomotive engine;
+    private Locomotive engine;          // the leading locomotive of the consist
+    private final List<Locomotive> locomotives = new ArrayList<>(2);    // the consist, starting with engine
+    private int maxWagons;              // sum of the maximum number of wagons of all locomotives
+    private long maxWeight;             // sum of the maximum weights of the locomotives with a weight limit
+    private int unlimitedLocomotives;   // number of locomotives without a weight limit
     private Wagon firstWagon;
+    private Wagon lastWagon;            // tail pointer, avoids walking the sequence to reach the rear
+    private int numberOfWagons;         // number of wagons in the sequence starting at firstWagon
+    private int totalNumberOfSeats;     // sum of the seats of all passenger wagons
+    private int totalMaxWeight;         // sum of the maximum weights of all freight wagons
+    private final IntHashMap<Wagon> wagonsById = new IntHashMap<>();    // index of all wagons by their id
+    private PositionIndex positionIndex;    // optional index of all wagons by their position, null if not used
+    private boolean reversed;               // orientation of the wagon links, see Wagon.getNextWagon()
+    private int modCount;                   // number of structural changes, for fail-fast iteration
+    TrainJournal journal;                   // journal that records the operations on this train, null if none
+
+    // result of the last aggregation, valid as long as modCount has not changed
+    private ToIntFunction<? super Wagon> cachedAttribute;
+    private int cachedFromPosition;
+    private int cachedToPosition;
+    private int cachedModCount;
+    private IntSummaryStatistics cachedStatistics;
+    int journalNumber;                      // number of this train in its journal
+    private TrainVerifier verifier;         // verifies a sample of the changes of this train, null if none
+    private TrainListener listener;         // is told about every public operation on this train, null if none
 
     /* Representation invariants:
         firstWagon == null || firstWagon.previousWagon == null
-        engine != null
+        lastWagon == null || lastWagon.nextWagon == null
+        (firstWagon == null) == (lastWagon == null)
+        numberOfWagons == firstWagon.getSequenceLength() (or 0 without wagons)
+        wagon.train == this for every wagon in the sequence
+        wagonsById holds exactly the wagons in the sequence
+        positionIndex == null || positionIndex.get(p) == the wagon at position p
+        reversed only affects how the wagons read their links, never the order seen from outside
+        engine != null && engine == locomotives.get(0)
+        maxWagons, maxWeight and unlimitedLocomotives summarize the locomotives
+       The bookkeeping fields are updated incrementally by every mutation of the train,
+       so wagons that are part of a train should only be rearranged through the train.
      */
 
     public Train(Locomotive engine, String origin, String destination) {
         this.engine = engine;
         this.destination = destination;
         this.origin = origin;
+        couple(engine);
     }
 
     /* three helper methods that are useful in other methods */
@@ -37,6 +86,14 @@ public class Train implements Iterable<Wagon> {
         return firstWagon instanceof FreightWagon;
     }
 
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
     public Locomotive getEngine() {
         return engine;
     }
@@ -45,30 +102,212 @@ public class Train implements Iterable<Wagon> {
         return firstWagon;
     }
 
+    /**
+     * @return the locomotives of the consist, the leading engine first
+     */
+    public List<Locomotive> getLocomotives() {
+        return Collections.unmodifiableList(locomotives);
+    }
+
+    public int getNumberOfLocomotives() {
+        return locomotives.size();
+    }
+
+    /**
+     * @return the number of wagons all locomotives together can pull
+     */
+    public int getMaxWagons() {
+        return maxWagons;
+    }
+
+    /**
+     * @return the total weight of freight wagons all locomotives together can pull
+     * (return Long.MAX_VALUE if a locomotive of the consist has no weight limit)
+     */
+    public long getMaxWeight() {
+        return unlimitedLocomotives > 0 ? Long.MAX_VALUE : maxWeight;
+    }
+
+    /**
+     * Adds a locomotive to the rear of the consist, for double heading or push-pull operation
+     *
+     * @param locomotive the locomotive
+     * @return whether the locomotive could be added (not if it is already part of the consist)
+     */
+    public boolean addLocomotive(Locomotive locomotive) {
+        if (locomotive == null || locomotives.contains(locomotive)) {
+            return false;
+        }
+        couple(locomotive);
+        return true;
+    }
+
+    /**
+     * Removes a locomotive from the consist
+     * No change is made if the locomotive is the only one of the consist,
+     * or if the remaining locomotives cannot pull the wagons of the train.
+     * When the leading engine is removed, the next locomotive becomes the engine.
+     *
+     * @param locomotive the locomotive
+     * @return whether the locomotive could be removed
+     */
+    public boolean removeLocomotive(Locomotive locomotive) {
+        if (locomotives.size() == 1 || !locomotives.contains(locomotive)) {
+            return false;
+        }
+
+        // the remaining locomotives must still be able to pull all wagons
+        boolean unlimited = unlimitedLocomotives > (locomotive.hasWeightLimit() ? 0 : 1);
+        long remainingWeight = maxWeight - (locomotive.hasWeightLimit() ? locomotive.getMaxWeight() : 0);
+        if (numberOfWagons > maxWagons - locomotive.getMaxWagons() || !unlimited && totalMaxWeight > remainingWeight) {
+            return false;
+        }
+
+        locomotives.remove(locomotive);
+        engine = locomotives.get(0);
+        maxWagons -= locomotive.getMaxWagons();
+        if (locomotive.hasWeightLimit()) {
+            maxWeight -= locomotive.getMaxWeight();
+        } else {
+            unlimitedLocomotives--;
+        }
+        return true;
+    }
+
+    /**
+     * Adds the given locomotive to the consist and to its capacity
+     */
+    private void couple(Locomotive locomotive) {
+        locomotives.add(locomotive);
+        maxWagons += locomotive.getMaxWagons();
+        if (locomotive.hasWeightLimit()) {
+            maxWeight += locomotive.getMaxWeight();
+        } else {
+            unlimitedLocomotives++;
+        }
+    }
+
+    /**
+     * @return whether the locomotives can pull the given weight on top of the freight wagons of the train
+     */
+    boolean canPull(long additionalWeight) {
+        return unlimitedLocomotives > 0 || totalMaxWeight + additionalWeight <= maxWeight;
+    }
+
+    /**
+     * @return whether the wagons of this train read their links the other way around
+     */
+    boolean isReversed() {
+        return reversed;
+    }
+
+    public boolean isPositionIndexed() {
+        return positionIndex != null;
+    }
+
+    /**
+     * Switches the positional index of this train on or off
+     * With the index, finding a wagon at a position, inserting at a position
+     * and splitting at a position take O(log n) steps instead of walking the sequence,
+     * at the cost of some extra bookkeeping on every mutation
+     *
+     * @param indexed whether the train should maintain the positional index
+     */
+    public void setPositionIndexed(boolean indexed) {
+        if (indexed && positionIndex == null) {
+            positionIndex = new PositionIndex(firstWagon, numberOfWagons);
+        } else if (!indexed) {
+            positionIndex = null;
+        }
+    }
+
+    public TrainListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Lets the given listener know about every public operation on this train and the time it took
+     *
+     * @param listener the listener, for example TrainMetrics (null to stop listening)
+     */
+    public void setListener(TrainListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the start time of an operation, only measured when the train has a listener
+     */
+    private long startOfOperation() {
+        return listener == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Tells the listener (if any) that an operation has completed
+     *
+     * @return the given result of the operation
+     */
+    private boolean endOfOperation(TrainListener.Operation operation, long start, boolean succeeded) {
+        if (listener != null && start != 0) {
+            listener.operationCompleted(this, operation, succeeded, System.nanoTime() - start);
+        }
+        return succeeded;
+    }
+
+    public TrainVerifier getVerifier() {
+        return verifier;
+    }
+
+    /**
+     * Lets the given verifier check the representation invariants after a sample of the changes of this train
+     * With a verifier, sequences of wagons that form a cycle are refused instead of hanging the train.
+     *
+     * @param verifier the verifier (null to stop verifying)
+     */
+    public void setVerifier(TrainVerifier verifier) {
+        this.verifier = verifier;
+    }
+
     /**
      * Replaces the current sequence of wagons (if any) in the train
      * by the given new sequence of wagons (if any)
      * (sustaining all representation invariants)
+     * No change is made if the train has a verifier and the new sequence forms a cycle.
      *
      * @param newSequence the new sequence of wagons (can be null)
      */
     public void setFirstWagon(Wagon newSequence) {
+        if (newSequence != null && verifier != null && !verifier.verifySequence(newSequence)) {
+            return;
+        }
+        if (journal != null) {
+            journal.recordAttach(this, TrainJournal.REPLACE, 1, newSequence);
+        }
+
+        // release the current sequence, its wagons no longer belong to this train
+        modCount++;
+        if (hasWagons()) {
+            disown(firstWagon);
+        }
+        firstWagon = null;
+        lastWagon = null;
+
         // setting the previous wagon as null and first wagon as the new sequence
-        newSequence.setPreviousWagon(null);
-        this.firstWagon = newSequence;
+        if (newSequence != null) {
+            takeOver(newSequence);
+            lastWagon = adopt(newSequence);
+            firstWagon = newSequence;
+        }
+
+        if (positionIndex != null) {
+            positionIndex = new PositionIndex(firstWagon, numberOfWagons);
+        }
+        verifySample();
     }
 
     /**
      * @return the number of Wagons connected to the train
      */
     public int getNumberOfWagons() {
-        // if there are wagons get the sequence length of the wagons
-        int numberOfWagons = 0;
-
-        if (hasWagons()) {
-            numberOfWagons = getFirstWagon().getSequenceLength();
-        }
-
         return numberOfWagons;
     }
 
@@ -76,20 +315,7 @@ public class Train implements Iterable<Wagon> {
      * @return the last wagon attached to the train
      */
     public Wagon getLastWagonAttached() {
-        // if train has wagons
-        if (hasWagons() && getNumberOfWagons() > 1) {
-            // looping through the wagons till there are no more, return the last wagon
-            for (Wagon currentWagon : this) {
-                if (!currentWagon.hasNextWagon()) {
-                    return currentWagon;
-                }
-            }
-            // if there is only 1 wagon get automatically the first wagon
-        } else if (getNumberOfWagons() == 1) {
-            return getFirstWagon();
-        }
-
-        return null;
+        return lastWagon;
     }
 
     /**
@@ -97,16 +323,7 @@ public class Train implements Iterable<Wagon> {
      * (return 0 for a freight train)
      */
     public int getTotalNumberOfSeats() {
-        int counter = 0;
-
-        // only count number of seats if it is a passenger train
-        if (this.isPassengerTrain()) {
-            for (Wagon w : this) {
-                PassengerWagon wagon = (PassengerWagon) w;
-                counter += wagon.getNumberOfSeats();
-            }
-        }
-        return counter;
+        return totalNumberOfSeats;
     }
 
     /**
@@ -116,17 +333,7 @@ public class Train implements Iterable<Wagon> {
      * (return 0 for a passenger train)
      */
     public int getTotalMaxWeight() {
-        int weight = 0;
-
-        // only count weight if it is a freight train
-        if (firstWagon instanceof FreightWagon) {
-            for (Wagon wagon : this) {
-                weight += ((FreightWagon) wagon).getMaxWeight();
-            }
-            return weight;
-        }
-
-        return 0;
+        return totalMaxWeight;
     }
 
     /**
@@ -137,28 +344,40 @@ public class Train implements Iterable<Wagon> {
      * (return null if the position is not valid for this train)
      */
     public Wagon findWagonAtPosition(int position) {
-        Wagon currentWagon = firstWagon;
-        int numberOfWagonsFound = 1;
+        long start = startOfOperation();
+        Wagon wagon = wagonAt(position);
+        endOfOperation(TrainListener.Operation.LOOKUP, start, wagon != null);
+        return wagon;
+    }
 
-        // if there is no first wagon then return null
-        if (firstWagon == null) {
+    /**
+     * @return the wagon at the given position (return null if the position is not valid for this train)
+     */
+    Wagon wagonAt(int position) {
+        // if there is no wagon at that position then return null
+        if (position < 1 || position > numberOfWagons) {
             return null;
         }
 
-        // looping through all wagons and counting the wagons
-        for (int i = 1; i < position; i++) {
-            if (currentWagon.hasNextWagon()) {
-                currentWagon = currentWagon.getNextWagon();
-                numberOfWagonsFound++;
-            }
+        if (positionIndex != null) {
+            return positionIndex.get(position);
         }
 
-        // if the number of wagon match with position return the wagon
-        if (numberOfWagonsFound == position) {
-            return currentWagon;
+        // looping through the wagons from the nearest end until the position has been reached
+        Wagon currentWagon;
+        if (position <= numberOfWagons / 2) {
+            currentWagon = firstWagon;
+            for (int i = 1; i < position; i++) {
+                currentWagon = currentWagon.getNextWagon();
+            }
+        } else {
+            currentWagon = lastWagon;
+            for (int i = numberOfWagons; i > position; i--) {
+                currentWagon = currentWagon.getPreviousWagon();
+            }
         }
 
-        return null;
+        return currentWagon;
     }
 
     /**
@@ -169,28 +388,216 @@ public class Train implements Iterable<Wagon> {
      * (return null if no wagon was found with the given wagonId)
      */
     public Wagon findWagonById(int wagonId) {
-        Wagon wagon = firstWagon;
+        long start = startOfOperation();
+        Wagon wagon = wagonsById.get(wagonId);
+        endOfOperation(TrainListener.Operation.LOOKUP, start, wagon != null);
+        return wagon;
+    }
 
-        // if the id and wagonId match then return the wagon
-        while (wagon != null) {
-            if (wagon.getId() == wagonId) {
-                return wagon;
-            } else {
+    /**
+     * @return the wagon with the given id (return null if no wagon was found with the given wagonId)
+     */
+    Wagon wagonWithId(int wagonId) {
+        return wagonsById.get(wagonId);
+    }
+
+    /**
+     * Aggregates an attribute over all wagons of the train
+     *
+     * @param attribute the attribute, for example Train.SEATS or Train.MAX_WEIGHT
+     * @return the count, sum, minimum and maximum of the attribute
+     */
+    public IntSummaryStatistics aggregate(ToIntFunction<? super Wagon> attribute) {
+        return aggregate(attribute, 1, numberOfWagons);
+    }
+
+    /**
+     * Aggregates an attribute over the wagons from one position up to and including another
+     * The result is cached until the next change of the train, asking again for
+     * the same attribute (instance) and range does not walk the wagons.
+     *
+     * @param attribute    the attribute, for example Train.SEATS or Train.MAX_WEIGHT
+     * @param fromPosition position of the first wagon
+     * @param toPosition   position of the last wagon (fromPosition - 1 for an empty range)
+     * @return the count, sum, minimum and maximum of the attribute
+     * (return null if the range is not valid for this train)
+     */
+    public IntSummaryStatistics aggregate(ToIntFunction<? super Wagon> attribute, int fromPosition, int toPosition) {
+        if (fromPosition < 1 || toPosition > numberOfWagons || fromPosition > toPosition + 1) {
+            return null;
+        }
+
+        if (cachedStatistics == null || cachedModCount != modCount || cachedAttribute != attribute
+                || cachedFromPosition != fromPosition || cachedToPosition != toPosition) {
+            long sum = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            Wagon wagon = wagonAt(fromPosition);
+            for (int position = fromPosition; position <= toPosition; position++) {
+                int value = attribute.applyAsInt(wagon);
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
                 wagon = wagon.getNextWagon();
             }
+
+            int count = toPosition - fromPosition + 1;
+            cachedStatistics = count == 0 ? new IntSummaryStatistics() : new IntSummaryStatistics(count, min, max, sum);
+            cachedAttribute = attribute;
+            cachedFromPosition = fromPosition;
+            cachedToPosition = toPosition;
+            cachedModCount = modCount;
+        }
+
+        // handing out a copy, so the cached result cannot be changed
+        IntSummaryStatistics statistics = cachedStatistics;
+        return statistics.getCount() == 0 ? new IntSummaryStatistics()
+                : new IntSummaryStatistics(statistics.getCount(), statistics.getMin(), statistics.getMax(), statistics.getSum());
+    }
+
+    /**
+     * Sums an attribute over the wagons from one position up to and including another
+     * With the position index switched on, Train.SEATS and Train.MAX_WEIGHT are answered
+     * from the index in O(log n) steps, other attributes walk the range.
+     *
+     * @param attribute    the attribute, for example Train.SEATS or Train.MAX_WEIGHT
+     * @param fromPosition position of the first wagon
+     * @param toPosition   position of the last wagon (fromPosition - 1 for an empty range)
+     * @return the sum of the attribute (0 for an empty range)
+     * @throws IndexOutOfBoundsException if the range is not valid for this train
+     */
+    public long rangeSum(ToIntFunction<? super Wagon> attribute, int fromPosition, int toPosition) {
+        checkRange(fromPosition, toPosition);
+        int indexedAttribute = indexedAttributeOf(attribute);
+        if (indexedAttribute >= 0) {
+            return positionIndex.sum(indexedAttribute, fromPosition, toPosition);
+        }
+        return aggregate(attribute, fromPosition, toPosition).getSum();
+    }
+
+    /**
+     * Finds the largest value of an attribute over the wagons from one position up to and including another
+     * With the position index switched on, Train.SEATS and Train.MAX_WEIGHT are answered
+     * from the index in O(log n) steps, other attributes walk the range.
+     *
+     * @param attribute    the attribute, for example Train.SEATS or Train.MAX_WEIGHT
+     * @param fromPosition position of the first wagon
+     * @param toPosition   position of the last wagon (fromPosition - 1 for an empty range)
+     * @return the largest value of the attribute (Integer.MIN_VALUE for an empty range)
+     * @throws IndexOutOfBoundsException if the range is not valid for this train
+     */
+    public int rangeMax(ToIntFunction<? super Wagon> attribute, int fromPosition, int toPosition) {
+        checkRange(fromPosition, toPosition);
+        int indexedAttribute = indexedAttributeOf(attribute);
+        if (indexedAttribute >= 0) {
+            return positionIndex.max(indexedAttribute, fromPosition, toPosition);
+        }
+        return aggregate(attribute, fromPosition, toPosition).getMax();
+    }
+
+    private void checkRange(int fromPosition, int toPosition) {
+        if (fromPosition < 1 || toPosition > numberOfWagons || fromPosition > toPosition + 1) {
+            throw new IndexOutOfBoundsException("positions " + fromPosition + " to " + toPosition
+                    + " are not valid for a train with " + numberOfWagons + " wagons");
+        }
+    }
+
+    /**
+     * @return the attribute of the position index that matches the given attribute (return -1 if there is none)
+     */
+    private int indexedAttributeOf(ToIntFunction<? super Wagon> attribute) {
+        if (positionIndex == null) {
+            return -1;
+        } else if (attribute == SEATS) {
+            return PositionIndex.SEATS;
+        } else if (attribute == MAX_WEIGHT) {
+            return PositionIndex.MAX_WEIGHT;
+        }
+        return -1;
+    }
+
+    /**
+     * Counts all wagons of the train per range of attribute values
+     *
+     * @see #histogram(ToIntFunction, int, int, int)
+     */
+    public int[] histogram(ToIntFunction<? super Wagon> attribute, int bucketSize) {
+        return histogram(attribute, bucketSize, 1, numberOfWagons);
+    }
+
+    /**
+     * Counts the wagons from one position up to and including another per range of attribute values
+     * Bucket i counts the wagons with a value from i * bucketSize up to (i + 1) * bucketSize,
+     * negative values are counted in bucket 0.
+     *
+     * @param attribute    the attribute, for example Train.SEATS or Train.MAX_WEIGHT
+     * @param bucketSize   the width of every bucket (at least 1)
+     * @param fromPosition position of the first wagon
+     * @param toPosition   position of the last wagon (fromPosition - 1 for an empty range)
+     * @return the number of wagons per bucket, up to the bucket of the largest value
+     * (return null if the range is not valid for this train)
+     */
+    public int[] histogram(ToIntFunction<? super Wagon> attribute, int bucketSize, int fromPosition, int toPosition) {
+        if (bucketSize < 1) {
+            throw new IllegalArgumentException("bucket size " + bucketSize + " is not positive");
+        }
+        IntSummaryStatistics statistics = aggregate(attribute, fromPosition, toPosition);
+        if (statistics == null) {
+            return null;
+        }
+
+        int[] buckets = new int[statistics.getCount() == 0 ? 0 : Math.max(statistics.getMax(), 0) / bucketSize + 1];
+        Wagon wagon = wagonAt(fromPosition);
+        for (int position = fromPosition; position <= toPosition; position++) {
+            buckets[Math.max(attribute.applyAsInt(wagon), 0) / bucketSize]++;
+            wagon = wagon.getNextWagon();
         }
-        return null;
+        return buckets;
     }
 
     /**
      * Determines if the given sequence of wagons can be attached to the train
      * Verfies of the type of wagons match the type of train (Passenger or Freight)
-     * Verfies that the capacity of the engine is sufficient to pull the additional wagons
+     * Verfies that the capacity of the locomotives is sufficient to pull the additional wagons
      *
      * @param sequence wagons that are going to be attached
      * @return whether the attachment could be completed successfully
      */
     public boolean canAttach(Wagon sequence) {
+        if (sequence == null || verifier != null && !verifier.verifySequence(sequence)) {
+            return false;
+        }
+
+        // measuring the sequence, its weight only matters when the consist has a weight limit
+        int length = 0;
+        long weight = 0;
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            length++;
+            weight += maxWeightOf(wagon);
+        }
+        if (!canAttach(sequence, length, weight)) {
+            return false;
+        }
+
+        // verifying that none of the other wagons of the sequence is already on the train
+        for (Wagon wagon = sequence.getNextWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+            if (wagonsById.containsKey(wagon.getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if a sequence of the given length and weight, starting with the given wagon,
+     * can be attached to the train
+     *
+     * @param sequence first wagon of the sequence
+     * @param length   number of wagons in the sequence
+     * @param weight   total maximum weight of the wagons in the sequence
+     * @return whether the attachment could be completed successfully
+     */
+    private boolean canAttach(Wagon sequence, int length, long weight) {
         boolean possibleToAttach = true;
 
         // verifying if the two types of wagons match
@@ -199,14 +606,13 @@ public class Train implements Iterable<Wagon> {
         } else if (isFreightTrain() && sequence instanceof PassengerWagon) {
             possibleToAttach = false;
 
-            // verifying capacity of the engine by counting up the wagons of the sequence and the firstwagon
-        } else if ((getFirstWagon().getSequenceLength() + sequence.getSequenceLength()) > getEngine().getMaxWagons()) {
+            // verifying capacity of the locomotives by counting up the wagons and weights of the sequence and the train
+        } else if (numberOfWagons + length > maxWagons || !canPull(weight)) {
             possibleToAttach = false;
 
-            // verifying if id is not the same
-        } else if (getFirstWagon().getId() == sequence.getId()) {
+            // verifying if the sequence or its id is not already part of this train
+        } else if (sequence.train == this || wagonsById.containsKey(sequence.getId())) {
             possibleToAttach = false;
-
         }
 
         return possibleToAttach;
@@ -215,73 +621,62 @@ public class Train implements Iterable<Wagon> {
     /**
      * Tries to attach the given sequence of wagons to the rear of the train
      * No change is made if the attachment cannot be made.
-     * (when the sequence is not compatible or the engine has insufficient capacity)
+     * (when the sequence is not compatible or the locomotives have insufficient capacity)
      *
      * @param sequence wagons that are going to be attached to the rear
      * @return whether the attachment could be completed successfully
      */
     public boolean attachToRear(Wagon sequence) {
-        // if types of train and wagon do not match return false
-        if (getFirstWagon() instanceof PassengerWagon && sequence instanceof FreightWagon) {
-            return false;
-        }
-
-        // if types of train and wagon do not match return false
-        if (getFirstWagon() instanceof FreightWagon && sequence instanceof PassengerWagon) {
-            return false;
-        }
+        long start = startOfOperation();
+        return endOfOperation(TrainListener.Operation.ATTACH, start, tryAttachToRear(sequence));
+    }
 
-        // if there are already a maximum of wagons return false
-        if (this.engine.getMaxWagons() <= this.getNumberOfWagons()) {
+    private boolean tryAttachToRear(Wagon sequence) {
+        // if types of train and wagon do not match or the locomotives are at capacity return false
+        if (!canAttach(sequence)) {
             return false;
         }
 
-        // if there are no wagons make the sequence the first wagon
-        if (!this.hasWagons()) {
-            this.firstWagon = sequence;
-            this.firstWagon.setPreviousWagon(null);
-            return true;
+        if (journal != null) {
+            journal.recordAttach(this, TrainJournal.ATTACH_TO_REAR, numberOfWagons + 1, sequence);
         }
 
-        // attaching the sequence to another wagon
-        Wagon wagon = this.firstWagon;
-        while (wagon.hasNextWagon()) {
-            wagon = wagon.getNextWagon();
-        }
-        sequence.attachTo(wagon);
+        // attach the sequence behind the last wagon (if any)
+        connect(lastWagon, sequence, null, numberOfWagons + 1);
         return true;
     }
 
     /**
      * Tries to insert the given sequence of wagons at the front of the train
      * No change is made if the insertion cannot be made.
-     * (when the sequence is not compatible or the engine has insufficient capacity)
+     * (when the sequence is not compatible or the locomotives have insufficient capacity)
      *
      * @param sequence wagons that are inserted at the front of the train
      * @return whether the insertion could be completed successfully
      */
     public boolean insertAtFront(Wagon sequence) {
-        // if the trains has no wagons set the first wagon as the sequence
-        if (!hasWagons()) {
-            setFirstWagon(sequence);
-            return true;
-        } else if (canAttach(sequence)) {
-            // get last wagon and set the first wagon to be the last wagon
-            sequence.getLastWagonAttached().setNextWagon(getFirstWagon());
-            // connect the last wagon to the end of the sequence
-            getFirstWagon().setPreviousWagon(sequence.getLastWagonAttached());
-            sequence.setPreviousWagon(null);
-            // set the new first wagon
-            setFirstWagon(sequence);
-            return true;
+        long start = startOfOperation();
+        return endOfOperation(TrainListener.Operation.INSERT, start, tryInsertAtFront(sequence));
+    }
+
+    private boolean tryInsertAtFront(Wagon sequence) {
+        if (!canAttach(sequence)) {
+            return false;
         }
-        return false;
+
+        if (journal != null) {
+            journal.recordAttach(this, TrainJournal.INSERT_AT_FRONT, 1, sequence);
+        }
+
+        // connect the current first wagon (if any) to the end of the sequence
+        connect(null, sequence, firstWagon, 1);
+        return true;
     }
 
     /**
      * Tries to insert the given sequence of wagons at the given wagon position in the train
      * No change is made if the insertion cannot be made.
-     * (when the sequence is not compatible of the engine has insufficient capacity
+     * (when the sequence is not compatible or the locomotives have insufficient capacity
      * or the given position is not valid in this train)
      *
      * @param position place in the train
@@ -289,26 +684,25 @@ public class Train implements Iterable<Wagon> {
      * @return whether the insertion could be completed successfully
      */
     public boolean insertAtPosition(int position, Wagon sequence) {
-        if (!hasWagons()) {
-            // if train is empty and the position is at the front of the train
-            if (position == 1) {
-                setFirstWagon(sequence);
-                return true;
-            } else {
-                return false;
-            }
+        long start = startOfOperation();
+        return endOfOperation(TrainListener.Operation.INSERT, start, tryInsertAtPosition(position, sequence));
+    }
+
+    private boolean tryInsertAtPosition(int position, Wagon sequence) {
+        // valid positions are the existing wagons and the position just behind the last wagon
+        if (position < 1 || position > numberOfWagons + 1) {
+            return false;
         }
 
         if (canAttach(sequence)) {
-            // get wagon on that position
-            Wagon wagon = findWagonAtPosition(position);
-            // attach wagon to the last wagon of sequence
-            sequence.getLastWagonAttached().setNextWagon(wagon);
-
-            // connect the wagon to the last wagon of the sequence
-            if (wagon != null) {
-                wagon.setPreviousWagon(sequence);
+            if (journal != null) {
+                journal.recordAttach(this, TrainJournal.INSERT_AT_POSITION, position, sequence);
             }
+
+            // get wagon on that position and connect the sequence in between its predecessor and the wagon
+            // (inserting behind the last wagon needs no wagon lookup)
+            Wagon wagon = position == numberOfWagons + 1 ? null : wagonAt(position);
+            connect(wagon == null ? lastWagon : wagon.getPreviousWagon(), sequence, wagon, position);
             return true;
         }
 
@@ -320,21 +714,30 @@ public class Train implements Iterable<Wagon> {
      * and attach it at the rear of the given toTrain
      * No change is made if the removal or attachment cannot be made
      * (when the wagon cannot be found, or the trains are not compatible
-     * or the engine of toTrain has insufficient capacity)
+     * or the locomotives of toTrain have insufficient capacity)
      *
      * @param wagonId id of the wagon
      * @param toTrain where the wagons are going to be moved
      * @return whether the move could be completed successfully
      */
     public boolean moveOneWagon(int wagonId, Train toTrain) {
-        Wagon wagon = findWagonById(wagonId);
+        long start = startOfOperation();
+        return endOfOperation(TrainListener.Operation.MOVE, start, tryMoveOneWagon(wagonId, toTrain));
+    }
 
-        // if the wagon can be found and canAttach is true
+    private boolean tryMoveOneWagon(int wagonId, Train toTrain) {
+        Wagon wagon = wagonsById.get(wagonId);
+
+        // if the wagon can be found and toTrain can take one more wagon
         // then remove the wagon from the train and attach it to the rear
-        if (wagon != null) {
-            if (canAttach(wagon)) {
-                wagon.removeFromSequence();
-                toTrain.attachToRear(wagon);
+        if (wagon != null && toTrain != this) {
+            if (toTrain.canAttach(wagon, 1, maxWeightOf(wagon))) {
+                if (journal != null) {
+                    journal.recordMove(this, wagonId, toTrain);
+                }
+                remove(wagon);
+                toTrain.recordArrival(this, wagon);
+                toTrain.connect(toTrain.lastWagon, wagon, null, toTrain.numberOfWagons + 1);
                 return true;
             } else {
                 return false;
@@ -348,21 +751,30 @@ public class Train implements Iterable<Wagon> {
      * to the rear of toTrain
      * No change is made if the split or re-attachment cannot be made
      * (when the position is not valid for this train, or the trains are not compatible
-     * or the engine of toTrain has insufficient capacity)
+     * or the locomotives of toTrain have insufficient capacity)
      *
      * @param position place in the train
      * @param toTrain  where the wagons are going to be moved
      * @return whether the move could be completed successfully
      */
     public boolean splitAtPosition(int position, Train toTrain) {
-        Wagon wagon = findWagonAtPosition(position);
+        long start = startOfOperation();
+        return endOfOperation(TrainListener.Operation.SPLIT, start, trySplitAtPosition(position, toTrain));
+    }
 
-        // if wagon can be found
+    private boolean trySplitAtPosition(int position, Train toTrain) {
+        Wagon wagon = wagonAt(position);
+
+        // if wagon can be found and toTrain can take the sequence
         // split train and move the sequence from position to rear
-        if (wagon != null) {
-            wagon.detachFromPrevious();
-            if (canAttach(wagon)) {
-                toTrain.attachToRear(wagon);
+        if (wagon != null && toTrain != this) {
+            if (toTrain.canAttach(wagon)) {
+                if (journal != null) {
+                    journal.recordSplit(this, position, toTrain);
+                }
+                cut(wagon);
+                toTrain.recordArrival(this, wagon);
+                toTrain.connect(toTrain.lastWagon, wagon, null, toTrain.numberOfWagons + 1);
                 return true;
             } else {
                 return false;
@@ -380,30 +792,546 @@ public class Train implements Iterable<Wagon> {
      * (No change if the train has no wagons or only one wagon)
      */
     public void reverse() {
-        if (!this.hasWagons() || this.firstWagon.getNextWagon() == null) {
-        } else {
+        long start = startOfOperation();
+        flip();
+        endOfOperation(TrainListener.Operation.REVERSE, start, true);
+    }
 
-            // Reverses the wagons of the train, 2 variables to set a temporary wagon and the current wagon
-            Wagon temp;
-            Wagon current = firstWagon;
+    private void flip() {
+        if (numberOfWagons > 1) {
+            // flipping the orientation makes all wagons read their links the other way around,
+            // so no wagon has to be touched
+            reversed = !reversed;
+            modCount++;
+            if (journal != null) {
+                journal.recordReverse(this);
+            }
+
+            // the former last wagon is now in front
+            Wagon temp = firstWagon;
+            firstWagon = lastWagon;
+            lastWagon = temp;
 
-            // While the current wagon is not at the end, go through each wagon and reverse the wagons of the train
-            while (current != null) {
-                temp = current.getPreviousWagon();
-                current.setPreviousWagon(current.getNextWagon());
-                current.setNextWagon(temp);
-                current = current.getPreviousWagon();
+            if (positionIndex != null) {
+                positionIndex.reverse();
+            }
+            verifySample();
+        }
+    }
+
+    /**
+     * Sorts the wagons of this train by the given attribute, the smallest value first
+     * Wagons with the same value keep their order. The wagons are relinked in place by a merge sort
+     * that takes O(n log n) steps. It keeps at most one sorted run per power of two, in a fixed array of 32 runs,
+     * and merges every wagon into the shortest runs first, so most merges work on recently visited wagons.
+     * The new order is recorded by the journal of this train (if any).
+     *
+     * @param attribute the attribute, for example Train.SEATS or Train.MAX_WEIGHT
+     */
+    public void sort(ToIntFunction<? super Wagon> attribute) {
+        long start = startOfOperation();
+        sortRuns(attribute);
+        endOfOperation(TrainListener.Operation.SORT, start, true);
+    }
+
+    private void sortRuns(ToIntFunction<? super Wagon> attribute) {
+        if (numberOfWagons < 2) {
+            return;
+        }
+        modCount++;
+
+        // runs[i] is empty or a run of 2^i wagons that precede the wagons of all shorter runs
+        Wagon[] runs = new Wagon[Integer.SIZE];
+        int numberOfRuns = 0;
+        Wagon wagon = firstWagon;
+        while (wagon != null) {
+            Wagon next = wagon.getNextWagon();
+            wagon.setNextWagon(null);
+
+            // adding the wagon like a binary counter adds one, merging equal runs on the way
+            Wagon carry = wagon;
+            int i = 0;
+            while (i < numberOfRuns && runs[i] != null) {
+                carry = mergeRuns(runs[i], carry, attribute);
+                runs[i++] = null;
+            }
+            runs[i] = carry;
+            numberOfRuns = Math.max(numberOfRuns, i + 1);
+            wagon = next;
+        }
+
+        // merging the remaining runs, the shortest one holds the last wagons
+        Wagon head = null;
+        for (int i = 0; i < numberOfRuns; i++) {
+            if (runs[i] != null) {
+                head = head == null ? runs[i] : mergeRuns(runs[i], head, attribute);
+            }
+        }
+
+        // only the next links have been maintained, the previous links follow them
+        head.setPreviousWagon(null);
+        Wagon tail = head;
+        while (tail.hasNextWagon()) {
+            tail.getNextWagon().setPreviousWagon(tail);
+            tail = tail.getNextWagon();
+        }
+        firstWagon = head;
+        lastWagon = tail;
+        if (positionIndex != null) {
+            positionIndex = new PositionIndex(firstWagon, numberOfWagons);
+        }
+        if (journal != null) {
+            journal.recordOrder(this);
+        }
+        verifySample();
+    }
+
+    /**
+     * Merges two sorted runs of wagons, linked by their next links only
+     *
+     * @param left  the run with the wagons that come first on equal values
+     * @param right the other run
+     * @return the first wagon of the merged run
+     */
+    private static Wagon mergeRuns(Wagon left, Wagon right, ToIntFunction<? super Wagon> attribute) {
+        int leftKey = attribute.applyAsInt(left);
+        int rightKey = attribute.applyAsInt(right);
+        Wagon head = null;
+        Wagon tail = null;
+        while (left != null && right != null) {
+            Wagon wagon;
+            if (rightKey < leftKey) {
+                wagon = right;
+                right = right.getNextWagon();
+                if (right != null) {
+                    rightKey = attribute.applyAsInt(right);
+                }
+            } else {
+                wagon = left;
+                left = left.getNextWagon();
+                if (left != null) {
+                    leftKey = attribute.applyAsInt(left);
+                }
+            }
+            if (tail == null) {
+                head = wagon;
+            } else {
+                tail.setNextWagon(wagon);
+            }
+            tail = wagon;
+        }
+
+        // the rest of the other run follows when one run is exhausted
+        tail.setNextWagon(left != null ? left : right);
+        return head;
+    }
+
+    /**
+     * Merges the wagons of the given trains into this train, keeping the wagons sorted by the given attribute
+     * This train and the given trains must already be sorted by the attribute, for example by sort().
+     * Wagons with the same value keep the order of their trains, the wagons of this train first.
+     * The wagons are relinked in O(n log k) steps for k trains, using O(k) extra memory.
+     * No change is made if the merge cannot be made
+     * (when the types of the trains do not match, the locomotives of this train have insufficient capacity,
+     * a train is given twice or two trains have wagons with the same id).
+     * The wagons taken from the given trains are recorded by the journals of the trains (if any),
+     * and the new order by the journal of this train.
+     *
+     * @param attribute the attribute, for example Train.SEATS or Train.MAX_WEIGHT
+     * @param others    the trains that lose their wagons to this train
+     * @return whether the merge could be completed successfully
+     */
+    public boolean merge(ToIntFunction<? super Wagon> attribute, Train... others) {
+        long start = startOfOperation();
+        return endOfOperation(TrainListener.Operation.MERGE, start, tryMerge(attribute, others));
+    }
+
+    private boolean tryMerge(ToIntFunction<? super Wagon> attribute, Train[] others) {
+        if (!canMerge(others)) {
+            return false;
+        }
+
+        // the wagons of the other trains are recorded as if they were attached to the rear of this train
+        int length = numberOfWagons;
+        for (Train other : others) {
+            if (other.hasWagons()) {
+                if (other.journal != null) {
+                    other.journal.recordSplit(other, 1, this);
+                }
+                if (journal != null && other.journal != journal) {
+                    journal.recordAttach(this, TrainJournal.ATTACH_TO_REAR, length + 1, other.firstWagon);
+                }
+                length += other.numberOfWagons;
+            }
+        }
+
+        // taking the sorted sequences out of all trains
+        Train[] trains = new Train[others.length + 1];
+        trains[0] = this;
+        System.arraycopy(others, 0, trains, 1, others.length);
+        Wagon[] heads = new Wagon[trains.length];
+        int[] keys = new int[trains.length];
+        int[] heap = new int[trains.length];        // indices of the non-empty sequences, smallest head first
+        int size = 0;
+        for (int i = 0; i < trains.length; i++) {
+            if (trains[i].hasWagons()) {
+                heads[i] = trains[i].firstWagon;
+                keys[i] = attribute.applyAsInt(heads[i]);
+                trains[i].cut(heads[i]);
+                heap[size] = i;
+                siftUp(heap, size++, keys);
+            }
+        }
+
+        // repeatedly appending the smallest head of all sequences
+        Wagon head = null;
+        Wagon tail = null;
+        while (size > 0) {
+            int i = heap[0];
+            Wagon wagon = heads[i];
+            heads[i] = wagon.getNextWagon();
+            if (heads[i] != null) {
+                keys[i] = attribute.applyAsInt(heads[i]);
+            } else {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, size, keys);
+
+            if (tail == null) {
+                head = wagon;
+            } else {
+                tail.setNextWagon(wagon);
+            }
+            wagon.setPreviousWagon(tail);
+            tail = wagon;
+        }
+
+        if (head != null) {
+            tail.setNextWagon(null);
+            connect(null, head, null, 1);
+            if (journal != null) {
+                journal.recordOrder(this);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if the wagons of the given trains can be merged into this train
+     */
+    private boolean canMerge(Train[] others) {
+        int length = numberOfWagons;
+        long weight = 0;
+        Wagon type = firstWagon;
+        for (int i = 0; i < others.length; i++) {
+            Train other = others[i];
+            if (other == null || other == this) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (others[j] == other) {
+                    return false;
+                }
+            }
+            if (type == null) {
+                type = other.firstWagon;
+            } else if (other.hasWagons() && (type instanceof PassengerWagon) != other.isPassengerTrain()) {
+                return false;
+            }
+            length += other.numberOfWagons;
+            weight += other.totalMaxWeight;
+        }
+        if (length > maxWagons || !canPull(weight)) {
+            return false;
+        }
 
-                if (temp != null) {
-                    firstWagon = temp.getPreviousWagon();
+        // verifying that no wagon id is used by two of the trains
+        for (int i = 0; i < others.length; i++) {
+            for (Wagon wagon = others[i].firstWagon; wagon != null; wagon = wagon.getNextWagon()) {
+                if (wagonsById.containsKey(wagon.getId())) {
+                    return false;
+                }
+                for (int j = i + 1; j < others.length; j++) {
+                    if (others[j].wagonsById.containsKey(wagon.getId())) {
+                        return false;
+                    }
                 }
             }
         }
+        return true;
+    }
+
+    /**
+     * Moves the sequence at the given place of the heap up to its place, ordered by key and then by index
+     */
+    private static void siftUp(int[] heap, int place, int[] keys) {
+        int index = heap[place];
+        while (place > 0) {
+            int parent = (place - 1) / 2;
+            if (!precedes(index, heap[parent], keys)) {
+                break;
+            }
+            heap[place] = heap[parent];
+            place = parent;
+        }
+        heap[place] = index;
+    }
+
+    /**
+     * Moves the sequence at the top of the heap down to its place, ordered by key and then by index
+     */
+    private static void siftDown(int[] heap, int size, int[] keys) {
+        if (size == 0) {
+            return;
+        }
+        int index = heap[0];
+        int place = 0;
+        while (2 * place + 1 < size) {
+            int child = 2 * place + 1;
+            if (child + 1 < size && precedes(heap[child + 1], heap[child], keys)) {
+                child++;
+            }
+            if (!precedes(heap[child], index, keys)) {
+                break;
+            }
+            heap[place] = heap[child];
+            place = child;
+        }
+        heap[place] = index;
+    }
+
+    private static boolean precedes(int index, int otherIndex, int[] keys) {
+        return keys[index] < keys[otherIndex] || keys[index] == keys[otherIndex] && index < otherIndex;
+    }
+
+    /**
+     * Connects the given sequence in between two neighbouring wagons of this train
+     * and registers its wagons with this train
+     *
+     * @param previous wagon that gets the sequence appended (null for the front of the train)
+     * @param sequence wagons that are going to be attached to this train
+     * @param next     wagon that gets the sequence prepended (null for the rear of the train)
+     * @param position position the first wagon of the sequence gets in this train
+     */
+    private void connect(Wagon previous, Wagon sequence, Wagon next, int position) {
+        takeOver(sequence);
+        modCount++;
+        int length = -numberOfWagons;
+        Wagon tail = adopt(sequence);
+        length += numberOfWagons;
+
+        // linking the front of the sequence
+        if (previous == null) {
+            firstWagon = sequence;
+        } else {
+            previous.setNextWagon(sequence);
+            sequence.setPreviousWagon(previous);
+        }
+
+        // linking the rear of the sequence
+        if (next == null) {
+            lastWagon = tail;
+        } else {
+            tail.setNextWagon(next);
+            next.setPreviousWagon(tail);
+        }
+
+        if (positionIndex != null) {
+            positionIndex.insert(position, sequence, length);
+        }
+        verifySample();
+    }
+
+    /**
+     * Prepares the given sequence for attachment to this train
+     * by detaching it from its current predecessor,
+     * taking it away from the train that currently holds it (if any)
+     * A train with another journal than this train records the loss in its own journal.
+     *
+     * @param sequence wagons that are going to be attached to this train
+     */
+    private void takeOver(Wagon sequence) {
+        Train owner = sequence.train;
+        if (owner != null) {
+            if (owner.journal != null && owner.journal != journal) {
+                owner.journal.recordDetach(owner, sequence, owner.lastWagon);
+            }
+            owner.cut(sequence);
+        } else {
+            sequence.detachFromPrevious();
+        }
+    }
+
+    /**
+     * Records the arrival of the given (detached) sequence from the given train at the rear of this train,
+     * if this train has another journal than that train, which recorded only the departure
+     */
+    private void recordArrival(Train fromTrain, Wagon sequence) {
+        if (journal != null && journal != fromTrain.journal) {
+            journal.recordAttach(this, TrainJournal.ATTACH_TO_REAR, numberOfWagons + 1, sequence);
+        }
+    }
+
+    /**
+     * Registers all wagons of the given (detached) sequence with this train
+     * and adds them to the wagon count and the cumulative properties
+     *
+     * @param sequence wagons that are going to be attached to this train
+     * @return the last wagon of the sequence
+     */
+    private Wagon adopt(Wagon sequence) {
+        Wagon wagon = sequence;
+        while (true) {
+            wagon.setTrain(this);
+            wagonsById.put(wagon.getId(), wagon);
+            numberOfWagons++;
+            totalNumberOfSeats += seatsOf(wagon);
+            totalMaxWeight += maxWeightOf(wagon);
+            if (!wagon.hasNextWagon()) {
+                return wagon;
+            }
+            wagon = wagon.getNextWagon();
+        }
+    }
+
+    /**
+     * Unregisters all wagons from the given wagon until the end of its sequence
+     * and subtracts them from the wagon count and the cumulative properties
+     * (the links between the wagons are left as they are)
+     *
+     * @param sequence first wagon that leaves this train
+     */
+    private void disown(Wagon sequence) {
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            wagon.setTrain(null);
+            wagonsById.remove(wagon.getId());
+            numberOfWagons--;
+            totalNumberOfSeats -= seatsOf(wagon);
+            totalMaxWeight -= maxWeightOf(wagon);
+        }
+    }
+
+    /**
+     * Detaches the given wagon and all its successors from this train
+     *
+     * @param wagon first wagon of the sequence that leaves this train
+     */
+    private void cut(Wagon wagon) {
+        unlink(wagon, lastWagon);
+    }
+
+    /**
+     * Removes one wagon from this train, reconnecting its predecessor and successor
+     *
+     * @param wagon the wagon that leaves this train
+     */
+    private void remove(Wagon wagon) {
+        unlink(wagon, wagon);
+    }
+
+    /**
+     * Inserts the given sequence behind the given wagon of this train, without any checks
+     * The sequence must not be part of any train and must not have a predecessor.
+     * (used by ShuntingPlan and ManifestLoader, which validate the wagons in advance)
+     * The insertion is recorded by the journal of this train (if any).
+     *
+     * @param previous wagon of this train that gets the sequence appended (null for the front of the train)
+     * @param sequence wagons that are going to be attached to this train
+     */
+    void insertAfter(Wagon previous, Wagon sequence) {
+        Wagon next = previous == null ? firstWagon : previous.getNextWagon();
+        if (journal != null) {
+            // the journal refers to the previous wagon by its id, so no position has to be counted
+            if (previous == null) {
+                journal.recordAttach(this, TrainJournal.INSERT_FIRST, 1, sequence);
+            } else {
+                journal.recordAttach(this, TrainJournal.INSERT_AFTER, previous.getId(), sequence);
+            }
+        }
+
+        // only the positional index needs the position of the sequence
+        int position = 1;
+        if (previous != null && positionIndex != null) {
+            position = positionIndex.positionOf(previous) + 1;
+        }
+        connect(previous, sequence, next, position);
+    }
+
+    /**
+     * Removes the wagons from first until last from this train, reconnecting their neighbours
+     * The removed wagons stay linked to each other as a separate sequence.
+     * The removal is recorded by the journal of this train (if any).
+     *
+     * @param first first wagon that leaves this train
+     * @param last  last wagon that leaves this train (first itself or one of its successors)
+     */
+    void detach(Wagon first, Wagon last) {
+        if (journal != null) {
+            journal.recordDetach(this, first, last);
+        }
+        unlink(first, last);
+    }
+
+    /**
+     * Removes the wagons from first until last from this train, without recording the removal
+     *
+     * @see #detach(Wagon, Wagon)
+     */
+    private void unlink(Wagon first, Wagon last) {
+        modCount++;
+        if (positionIndex != null) {
+            int position = positionIndex.positionOf(first);
+            positionIndex.remove(position, positionIndex.positionOf(last) - position + 1);
+        }
+
+        // reconnect the predecessor and successor of the removed wagons
+        Wagon previous = first.getPreviousWagon();
+        Wagon next = last.getNextWagon();
+        if (previous == null) {
+            firstWagon = next;
+        } else {
+            previous.setNextWagon(next);
+        }
+        if (next == null) {
+            lastWagon = previous;
+        } else {
+            next.setPreviousWagon(previous);
+        }
+
+        first.setPreviousWagon(null);
+        last.setNextWagon(null);
+        disown(first);
+        verifySample();
+    }
+
+    /**
+     * Lets the verifier (if any) check this train, if this change is part of its sample
+     */
+    private void verifySample() {
+        if (verifier != null) {
+            verifier.sample(this);
+        }
+    }
+
+    /**
+     * @return the number of wagons that can be found by their id
+     */
+    int getNumberOfIndexedWagons() {
+        return wagonsById.size();
+    }
+
+    private static int seatsOf(Wagon wagon) {
+        return wagon instanceof PassengerWagon ? ((PassengerWagon) wagon).getNumberOfSeats() : 0;
+    }
+
+    private static int maxWeightOf(Wagon wagon) {
+        return wagon instanceof FreightWagon ? ((FreightWagon) wagon).getMaxWeight() : 0;
     }
 
     public Iterator<Wagon> iterator() {
         return new Iterator<>() {
             Wagon current = firstWagon;
+            final int expectedModCount = modCount;
 
             @Override
             public boolean hasNext() {
@@ -412,6 +1340,12 @@ public class Train implements Iterable<Wagon> {
 
             @Override
             public Wagon next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (current == null) {
+                    throw new NoSuchElementException();
+                }
                 Wagon prev = current;
                 current = current.getNextWagon();
 
@@ -420,6 +1354,123 @@ public class Train implements Iterable<Wagon> {
         };
     }
 
+    /**
+     * @return a sized spliterator over the wagons, that can split the train into chunks for parallel streams
+     */
+    @Override
+    public Spliterator<Wagon> spliterator() {
+        return new WagonSpliterator(firstWagon, 1, numberOfWagons, modCount);
+    }
+
+    /**
+     * @return a sequential stream of the wagons of this train
+     */
+    public Stream<Wagon> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return the number of seats of every wagon (0 for freight wagons), in order of the train
+     */
+    public IntStream seats() {
+        return stream().mapToInt(Train::seatsOf);
+    }
+
+    /**
+     * @return the maximum weight of every wagon (0 for passenger wagons), in order of the train
+     */
+    public IntStream maxWeights() {
+        return stream().mapToInt(Train::maxWeightOf);
+    }
+
+    /**
+     * Spliterator over a range of consecutive wagons of this train
+     * Splitting hands out the first half of the range. The start of the second half is found
+     * through the positional index if the train has one, else by walking the links.
+     */
+    private class WagonSpliterator implements Spliterator<Wagon> {
+        private static final int MINIMUM_CHUNK = 64;    // ranges smaller than this are not split
+
+        private Wagon current;          // next wagon to hand out
+        private int position;           // position of current in the train
+        private int remaining;          // number of wagons left in this range
+        private final int expectedModCount;
+
+        WagonSpliterator(Wagon current, int position, int remaining, int expectedModCount) {
+            this.current = current;
+            this.position = position;
+            this.remaining = remaining;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Wagon> action) {
+            checkForModification();
+            if (remaining == 0) {
+                return false;
+            }
+            Wagon wagon = current;
+            current = current.getNextWagon();
+            position++;
+            remaining--;
+            action.accept(wagon);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Wagon> action) {
+            checkForModification();
+            Wagon wagon = current;
+            for (int i = remaining; i > 0; i--) {
+                action.accept(wagon);
+                wagon = wagon.getNextWagon();
+            }
+            position += remaining;
+            remaining = 0;
+            current = wagon;
+            checkForModification();
+        }
+
+        @Override
+        public Spliterator<Wagon> trySplit() {
+            checkForModification();
+            if (remaining < MINIMUM_CHUNK) {
+                return null;
+            }
+
+            int half = remaining / 2;
+            Spliterator<Wagon> prefix = new WagonSpliterator(current, position, half, expectedModCount);
+
+            // move the start of this range behind the prefix
+            position += half;
+            remaining -= half;
+            if (positionIndex != null) {
+                current = positionIndex.get(position);
+            } else {
+                for (int i = 0; i < half; i++) {
+                    current = current.getNextWagon();
+                }
+            }
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | DISTINCT;
+        }
+
+        private void checkForModification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
     public String toString() {
         StringBuilder result = new StringBuilder();
         result.append(engine.toString());
@@ -0,0 +1,246 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Difference between the current composition of a train and a target composition,
+ * expressed as the operations that turn the one into the other
+ * The wagons that keep their relative order form the longest common subsequence of both compositions.
+ * Because wagon ids are unique, that subsequence is the longest increasing subsequence of the target positions
+ * of the current wagons, which is found in O(n log n) steps. Only the other wagons are moved:
+ * - a tail of wagons that are not in the target is split off in one operation
+ * - every other wagon that is not in the target, or that is out of order, is moved to a siding
+ * - the wagons of the target that are not in place yet are inserted at their target position
+ * The wagons that are out of order are moved to the siding in descending target order,
+ * so every insertion takes exactly the last wagon of the siding.
+ * Wagons are matched by id: a wagon of the target with the id of a wagon of the train stands for that wagon,
+ * which is the one that is kept or moved. Wagons that are not in the train yet must not have a successor.
+ */
+public class TrainDiff {
+    private static final int MIN_INSERTIONS_TO_INDEX = 16;      // more insertions use the positional index
+
+    public enum Kind {SPLIT_AT_POSITION, MOVE_ONE_WAGON, INSERT_AT_POSITION}
+
+    /**
+     * One operation on the train, the siding is the other train of splits and moves
+     */
+    public static class Operation {
+        private final Kind kind;
+        private final int wagonId;      // the wagon that is moved or inserted, the first wagon of a split
+        private final int position;     // position of a split or insertion, 0 for moves
+        private final Wagon wagon;      // the wagon that is inserted, null for the other kinds
+
+        Operation(Kind kind, int wagonId, int position, Wagon wagon) {
+            this.kind = kind;
+            this.wagonId = wagonId;
+            this.position = position;
+            this.wagon = wagon;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int getWagonId() {
+            return wagonId;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case SPLIT_AT_POSITION:
+                    return String.format("split at %d", position);
+                case MOVE_ONE_WAGON:
+                    return String.format("move %d", wagonId);
+                default:
+                    return String.format("insert %d at %d", wagonId, position);
+            }
+        }
+    }
+
+    private final Train train;
+    private final List<Operation> operations = new ArrayList<>();
+    private int numberOfKeptWagons;
+    private int numberOfInsertions;
+
+    private TrainDiff(Train train) {
+        this.train = train;
+    }
+
+    /**
+     * Computes the operations that change the composition of the given train into the given target
+     *
+     * @param train  the train
+     * @param target the wagons of the target composition, the first wagon first
+     * @return the difference (return null if the target contains a wagon id more than once)
+     */
+    public static TrainDiff between(Train train, List<? extends Wagon> target) {
+        // target position of every wagon id, counting from 1
+        IntLongHashMap targetPositions = new IntLongHashMap();
+        for (int j = 0; j < target.size(); j++) {
+            int id = target.get(j).getId();
+            if (targetPositions.containsKey(id)) {
+                return null;
+            }
+            targetPositions.add(id, j + 1);
+        }
+
+        // target position of every current wagon, 0 if it is not in the target
+        int n = train.getNumberOfWagons();
+        int[] ids = new int[n];
+        int[] positions = new int[n];
+        int i = 0;
+        for (Wagon wagon : train) {
+            ids[i] = wagon.getId();
+            positions[i] = (int) targetPositions.get(wagon.getId());
+            i++;
+        }
+
+        boolean[] kept = new boolean[target.size() + 1];   // by target position
+        TrainDiff diff = new TrainDiff(train);
+        diff.numberOfKeptWagons = markIncreasingSubsequence(positions, kept);
+
+        // the tail of wagons that are not in the target leaves in one go
+        int end = n;
+        while (end > 0 && positions[end - 1] == 0) {
+            end--;
+        }
+        if (end < n) {
+            diff.add(Kind.SPLIT_AT_POSITION, ids[end], end + 1, null);
+        }
+        for (i = 0; i < end; i++) {
+            if (positions[i] == 0) {
+                diff.add(Kind.MOVE_ONE_WAGON, ids[i], 0, null);
+            }
+        }
+
+        // the wagons out of order go to the siding in descending target order, and come back in ascending order
+        Wagon[] wagons = new Wagon[target.size() + 1];      // the wagon to insert, by target position
+        for (int j = target.size(); j >= 1; j--) {
+            Wagon wagon = train.wagonWithId(target.get(j - 1).getId());
+            if (!kept[j] && wagon != null) {
+                diff.add(Kind.MOVE_ONE_WAGON, wagon.getId(), 0, null);
+            }
+            wagons[j] = wagon != null ? wagon : target.get(j - 1);
+        }
+        for (int j = 1; j <= target.size(); j++) {
+            if (!kept[j]) {
+                diff.add(Kind.INSERT_AT_POSITION, wagons[j].getId(), j, wagons[j]);
+                diff.numberOfInsertions++;
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Marks the target positions of a longest strictly increasing subsequence of the given positions
+     * Patience sorting keeps, for every length, the subsequence of that length that ends with the smallest position,
+     * so every position is placed with a binary search.
+     *
+     * @param positions target positions of the current wagons, 0 for wagons that are skipped
+     * @param kept      receives the marks, by target position
+     * @return the length of the subsequence
+     */
+    private static int markIncreasingSubsequence(int[] positions, boolean[] kept) {
+        int[] ends = new int[positions.length];           // index of the last element of the best subsequence per length
+        int[] predecessors = new int[positions.length];   // index of the element before it in its subsequence
+        int length = 0;
+
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] == 0) {
+                continue;
+            }
+
+            // finding the shortest subsequence that cannot be extended by this position
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (positions[ends[middle]] < positions[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            predecessors[i] = low > 0 ? ends[low - 1] : -1;
+            ends[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        // walking back from the end of the longest subsequence
+        for (int i = length > 0 ? ends[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            kept[positions[i]] = true;
+        }
+        return length;
+    }
+
+    private void add(Kind kind, int wagonId, int position, Wagon wagon) {
+        operations.add(new Operation(kind, wagonId, position, wagon));
+    }
+
+    /**
+     * Applies the operations to the train, in order
+     * Split and moved wagons go to the rear of the siding, which keeps the wagons that are not in the target.
+     * Stops at the first operation that cannot be completed
+     * (when the train has changed since the difference was computed, or the siding has insufficient capacity).
+     *
+     * @param siding the train that holds the wagons that are moved out of the way
+     * @return whether all operations could be completed successfully
+     */
+    public boolean apply(Train siding) {
+        // insertions at arbitrary positions are faster with the positional index
+        boolean indexed = train.isPositionIndexed();
+        if (!indexed && numberOfInsertions >= MIN_INSERTIONS_TO_INDEX) {
+            train.setPositionIndexed(true);
+        }
+
+        try {
+            for (Operation operation : operations) {
+                if (!apply(operation, siding)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            train.setPositionIndexed(indexed);
+        }
+    }
+
+    private boolean apply(Operation operation, Train siding) {
+        switch (operation.kind) {
+            case SPLIT_AT_POSITION:
+                return train.splitAtPosition(operation.position, siding);
+            case MOVE_ONE_WAGON:
+                return train.moveOneWagon(operation.wagonId, siding);
+            default:
+                // only the wagon itself may be inserted, never its successors
+                return !operation.wagon.hasNextWagon() && train.insertAtPosition(operation.position, operation.wagon);
+        }
+    }
+
+    /**
+     * @return the operations, in the order in which they are applied
+     */
+    public List<Operation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    public int getNumberOfOperations() {
+        return operations.size();
+    }
+
+    /**
+     * @return the number of wagons that stay in the train without being moved
+     */
+    public int getNumberOfKeptWagons() {
+        return numberOfKeptWagons;
+    }
+}
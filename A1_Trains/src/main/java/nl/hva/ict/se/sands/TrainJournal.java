@@ -0,0 +1,438 @@
+package models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only journal of the operations on a yard of trains, in a memory-mapped file
+ * Starting a journal writes a snapshot of the yard (in the format of TrainWriter) and from then on
+ * every successful attachToRear, insertAtFront, insertAtPosition, moveOneWagon, splitAtPosition,
+ * reverse, sort, merge and setFirstWagon on one of its trains appends a fixed-width record to the journal.
+ * So do the unchecked insertions and removals made by ShuntingPlan and ManifestLoader,
+ * which are replayed without checks as well. Records are written straight into the mapped file,
+ * so recording an operation does not allocate.
+ * <p>
+ * Records are committed in batches: the header keeps the end of the last complete batch,
+ * and replay ignores everything behind it. flush() commits and forces the records to disk.
+ * Wagons attached from outside the yard are recorded with their type, id and value,
+ * wagons taken from another train of the yard only by the id of the first wagon.
+ * Wagons that leave the yard for a train without this journal are recorded as a split to the outside.
+ * Sorting and merging record the new order of all wagons of the train by their ids,
+ * after the wagons a merge takes from other trains have been recorded as splits and attachments.
+ * <p>
+ * Records are appended under the lock of the journal, so the trains of a yard may be changed by
+ * different threads, as long as every train is changed by one thread at a time
+ * (for example under the locks of a ConcurrentTrainManager).
+ */
+public class TrainJournal implements Closeable {
+    // operation codes
+    static final int ATTACH_TO_REAR = 1;
+    static final int INSERT_AT_FRONT = 2;
+    static final int INSERT_AT_POSITION = 3;
+    static final int MOVE_ONE_WAGON = 4;
+    static final int SPLIT_AT_POSITION = 5;
+    static final int REVERSE = 6;
+    static final int INSERT_AFTER = 7;          // insertion without checks behind the wagon with the id R_POSITION
+    static final int DETACH = 8;                // removal without checks from the wagon with the id R_POSITION
+    static final int REPLACE = 9;               // new sequence of setFirstWagon
+    static final int REORDER = 10;              // new order of all wagons after a sort or merge
+    static final int INSERT_FIRST = 11;         // insertion without checks at the front
+
+    private static final int MAGIC = 0x4A524E4C;      // "JRNL"
+    private static final int VERSION = 2;             // version 1 recorded unchecked changes by position
+    private static final int OUTSIDE = -1;             // number of a train that is not part of the yard
+    private static final int BATCH_SIZE = 4096;        // number of records per committed batch
+    private static final int INITIAL_SIZE = 1 << 20;
+
+    // header fields
+    private static final int HEADER_SIZE = 32;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_COMMITTED = 8;          // end of the committed records
+    private static final int H_NUMBER_OF_RECORDS = 16; // number of committed records
+
+    // record fields, followed by R_COUNT wagon entries
+    private static final int RECORD = 24;
+    private static final int R_OPERATION = 0;
+    private static final int R_TRAIN = 4;
+    private static final int R_POSITION = 8;           // position in the train, or the wagon id of a move,
+                                                       // an unchecked insertion or the first detached wagon
+    private static final int R_WAGON_ID = 12;          // first wagon of a sequence taken from another train,
+                                                       // or the last wagon that is detached
+    private static final int R_OTHER_TRAIN = 16;       // receiving train, or the train a sequence is taken from
+    private static final int R_COUNT = 20;             // number of wagon entries that follow
+
+    // wagon entry fields
+    private static final int WAGON_ENTRY = 12;
+    private static final int W_TYPE = 0;
+    private static final int W_ID = 4;
+    private static final int W_VALUE = 8;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final List<Train> trains;
+    private int end = HEADER_SIZE;          // end of the written records
+    private long numberOfRecords;
+    private int uncommitted;                // number of records behind the committed end
+
+    /* Representation invariants:
+        buffer maps the complete file, HEADER_SIZE <= committed end <= end <= buffer.capacity()
+        trains.get(n).journal == this && trains.get(n).journalNumber == n for every train
+     */
+
+    private TrainJournal(FileChannel channel, List<Train> trains) throws IOException {
+        this.channel = channel;
+        this.trains = trains;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_SIZE);
+        buffer.putInt(H_MAGIC, MAGIC);
+        buffer.putInt(H_VERSION, VERSION);
+        commit();
+    }
+
+    /**
+     * Writes a snapshot of the yard and starts recording the operations on its trains
+     * in a new journal (replacing any existing content of both files)
+     *
+     * @param snapshot file for the snapshot
+     * @param journal  file for the journal
+     * @param yard     the trains of the yard
+     * @return the journal
+     * @throws IOException if the files cannot be written
+     */
+    public static TrainJournal start(Path snapshot, Path journal, List<Train> yard) throws IOException {
+        try (TrainWriter writer = new TrainWriter(Files.newOutputStream(snapshot))) {
+            for (Train train : yard) {
+                writer.writeTrain(train);
+            }
+        }
+
+        FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TrainJournal trainJournal = new TrainJournal(channel, new ArrayList<>(yard));
+        for (int number = 0; number < yard.size(); number++) {
+            yard.get(number).journal = trainJournal;
+            yard.get(number).journalNumber = number;
+        }
+        return trainJournal;
+    }
+
+    /**
+     * Rebuilds the yard from a snapshot and the committed records of its journal
+     *
+     * @param snapshot file of the snapshot
+     * @param journal  file of the journal
+     * @return the trains of the yard in the order of the snapshot
+     * @throws IOException if the files cannot be read or the journal does not match the snapshot
+     */
+    public static List<Train> replay(Path snapshot, Path journal) throws IOException {
+        List<Train> yard;
+        try (InputStream in = Files.newInputStream(snapshot)) {
+            yard = TrainReader.readAll(in);
+        }
+
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (records.getInt(H_MAGIC) != MAGIC || records.getInt(H_VERSION) != VERSION) {
+                throw new IOException("not a train journal: " + journal);
+            }
+
+            // trains outside the yard receive the wagons that leave it
+            Train outside = new Train(new Locomotive(0, Integer.MAX_VALUE / 2), null, null);
+            int committed = (int) records.getLong(H_COMMITTED);
+            int offset = HEADER_SIZE;
+            while (offset < committed) {
+                if (!apply(records, offset, yard, outside)) {
+                    throw new IOException("the journal does not match the snapshot at offset " + offset);
+                }
+                offset += RECORD + records.getInt(offset + R_COUNT) * WAGON_ENTRY;
+            }
+        }
+        return yard;
+    }
+
+    /**
+     * @return the number of operations recorded so far
+     */
+    public synchronized long getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    /**
+     * Commits all records and writes them to disk
+     */
+    public synchronized void flush() {
+        commit();
+        buffer.force();
+    }
+
+    /**
+     * Flushes the journal and stops recording the operations on the trains of the yard
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (Train train : trains) {
+            if (train.journal == this) {
+                train.journal = null;
+            }
+        }
+        channel.close();
+    }
+
+    /**
+     * Records that the given sequence is attached at the given position of the train
+     * (called before the sequence is attached, the sequence of a REPLACE can be null)
+     */
+    synchronized void recordAttach(Train train, int operation, int position, Wagon sequence) {
+        Train owner = sequence == null ? null : sequence.train;
+        if (owner != null && owner.journal == this) {
+            int record = append(operation, train.journalNumber, position, owner.journalNumber, 0);
+            buffer.putInt(record + R_WAGON_ID, sequence.getId());
+            return;
+        }
+
+        // the wagons come from outside the yard, so all their data is recorded
+        int record = append(operation, train.journalNumber, position, OUTSIDE, 0);
+        buffer.putInt(record + R_COUNT, appendWagons(sequence));
+    }
+
+    /**
+     * Records the order of all wagons of the given train (called after the wagons have been relinked)
+     */
+    synchronized void recordOrder(Train train) {
+        int record = append(REORDER, train.journalNumber, 0, OUTSIDE, 0);
+        buffer.putInt(record + R_COUNT, appendWagons(train.getFirstWagon()));
+    }
+
+    synchronized void recordMove(Train train, int wagonId, Train toTrain) {
+        append(MOVE_ONE_WAGON, train.journalNumber, wagonId, numberOf(toTrain), 0);
+    }
+
+    synchronized void recordSplit(Train train, int position, Train toTrain) {
+        append(SPLIT_AT_POSITION, train.journalNumber, position, numberOf(toTrain), 0);
+    }
+
+    synchronized void recordReverse(Train train) {
+        append(REVERSE, train.journalNumber, 0, OUTSIDE, 0);
+    }
+
+    /**
+     * Records that the wagons from first until last leave the train
+     * (called before the wagons are detached)
+     */
+    synchronized void recordDetach(Train train, Wagon first, Wagon last) {
+        int record = append(DETACH, train.journalNumber, first.getId(), OUTSIDE, 0);
+        buffer.putInt(record + R_WAGON_ID, last.getId());
+    }
+
+    /**
+     * Appends a record and commits the batch if it is complete
+     * The batch is committed before the record is written, so wagon entries can still follow it.
+     *
+     * @return the offset of the record
+     */
+    private int append(int operation, int train, int position, int otherTrain, int count) {
+        if (uncommitted == BATCH_SIZE) {
+            commit();
+        }
+        ensureSpace(RECORD);
+        int record = end;
+        buffer.putInt(record + R_OPERATION, operation);
+        buffer.putInt(record + R_TRAIN, train);
+        buffer.putInt(record + R_POSITION, position);
+        buffer.putInt(record + R_WAGON_ID, 0);
+        buffer.putInt(record + R_OTHER_TRAIN, otherTrain);
+        buffer.putInt(record + R_COUNT, count);
+        end += RECORD;
+        numberOfRecords++;
+        uncommitted++;
+        return record;
+    }
+
+    /**
+     * Appends a wagon entry for every wagon of the given sequence behind the last record
+     *
+     * @return the number of entries
+     */
+    private int appendWagons(Wagon sequence) {
+        int count = 0;
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            ensureSpace(WAGON_ENTRY);
+            if (wagon instanceof PassengerWagon) {
+                buffer.putInt(end + W_TYPE, CompactTrain.PASSENGER);
+                buffer.putInt(end + W_VALUE, ((PassengerWagon) wagon).getNumberOfSeats());
+            } else {
+                buffer.putInt(end + W_TYPE, CompactTrain.FREIGHT);
+                buffer.putInt(end + W_VALUE, ((FreightWagon) wagon).getMaxWeight());
+            }
+            buffer.putInt(end + W_ID, wagon.getId());
+            end += WAGON_ENTRY;
+            count++;
+        }
+        return count;
+    }
+
+    private void commit() {
+        buffer.putLong(H_NUMBER_OF_RECORDS, numberOfRecords);
+        buffer.putLong(H_COMMITTED, end);
+        uncommitted = 0;
+    }
+
+    /**
+     * Makes sure the mapped file has room for the given number of bytes behind the end, growing it if needed
+     */
+    private void ensureSpace(int size) {
+        if (end + size > buffer.capacity()) {
+            long capacity = Math.min(2L * buffer.capacity(), Integer.MAX_VALUE);
+            if (end + size > capacity) {
+                throw new IllegalStateException("a journal can hold at most 2GB");
+            }
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } catch (IOException e) {
+                throw new IllegalStateException("the journal cannot grow", e);
+            }
+        }
+    }
+
+    private int numberOf(Train train) {
+        return train.journal == this ? train.journalNumber : OUTSIDE;
+    }
+
+    /**
+     * Applies the record at the given offset to the yard
+     *
+     * @return whether the operation succeeded, as it did when it was recorded
+     */
+    private static boolean apply(MappedByteBuffer records, int offset, List<Train> yard, Train outside) {
+        int trainNumber = records.getInt(offset + R_TRAIN);
+        int otherNumber = records.getInt(offset + R_OTHER_TRAIN);
+        if (trainNumber < 0 || trainNumber >= yard.size() || otherNumber >= yard.size()) {
+            return false;
+        }
+        Train train = yard.get(trainNumber);
+        int position = records.getInt(offset + R_POSITION);
+        int operation = records.getInt(offset + R_OPERATION);
+
+        if (operation == MOVE_ONE_WAGON || operation == SPLIT_AT_POSITION) {
+            Train toTrain = otherNumber == OUTSIDE ? outside : yard.get(otherNumber);
+            // the outside train only has to take these wagons, so it forgets the earlier ones
+            outside.setFirstWagon(null);
+            return operation == MOVE_ONE_WAGON
+                    ? train.moveOneWagon(position, toTrain)
+                    : train.splitAtPosition(position, toTrain);
+        } else if (operation == REVERSE) {
+            train.reverse();
+            return true;
+        } else if (operation == DETACH) {
+            Wagon first = train.wagonWithId(position);
+            Wagon last = train.wagonWithId(records.getInt(offset + R_WAGON_ID));
+            if (first == null || last == null) {
+                return false;
+            }
+            train.detach(first, last);
+            return true;
+        } else if (operation == REORDER) {
+            return reorder(records, offset, train);
+        }
+
+        Wagon sequence = otherNumber == OUTSIDE
+                ? newSequence(records, offset)
+                : yard.get(otherNumber).wagonWithId(records.getInt(offset + R_WAGON_ID));
+        if (operation == REPLACE && otherNumber == OUTSIDE) {
+            // the sequence is null if the train lost all its wagons
+            train.setFirstWagon(sequence);
+            return true;
+        }
+        if (sequence == null) {
+            return false;
+        }
+        switch (operation) {
+            case ATTACH_TO_REAR:
+                return train.attachToRear(sequence);
+            case INSERT_AT_FRONT:
+                return train.insertAtFront(sequence);
+            case INSERT_AT_POSITION:
+                return train.insertAtPosition(position, sequence);
+            case INSERT_AFTER:
+                Wagon previous = train.wagonWithId(position);
+                if (previous == null) {
+                    return false;
+                }
+                train.insertAfter(previous, sequence);
+                return true;
+            case INSERT_FIRST:
+                train.insertAfter(null, sequence);
+                return true;
+            case REPLACE:
+                train.setFirstWagon(sequence);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Relinks the wagons of the train in the order of the wagon entries of the record
+     *
+     * @return whether the entries name every wagon of the train exactly once
+     */
+    private static boolean reorder(MappedByteBuffer records, int offset, Train train) {
+        int count = records.getInt(offset + R_COUNT);
+        if (count != train.getNumberOfWagons()) {
+            return false;
+        }
+        Wagon[] wagons = new Wagon[count];
+        Set<Wagon> named = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < count; i++) {
+            wagons[i] = train.wagonWithId(records.getInt(offset + RECORD + i * WAGON_ENTRY + W_ID));
+            if (wagons[i] == null || !named.add(wagons[i])) {
+                return false;
+            }
+        }
+        if (count == 0) {
+            return true;
+        }
+
+        // the wagons leave the train, are linked in the new order and come back as one sequence
+        train.setFirstWagon(null);
+        for (int i = 0; i < count; i++) {
+            wagons[i].setPreviousWagon(i > 0 ? wagons[i - 1] : null);
+            wagons[i].setNextWagon(i + 1 < count ? wagons[i + 1] : null);
+        }
+        train.setFirstWagon(wagons[0]);
+        return true;
+    }
+
+    /**
+     * @return the linked sequence of new wagons for the wagon entries of the record
+     */
+    private static Wagon newSequence(MappedByteBuffer records, int offset) {
+        Wagon first = null;
+        Wagon last = null;
+        int count = records.getInt(offset + R_COUNT);
+        for (int entry = offset + RECORD; entry < offset + RECORD + count * WAGON_ENTRY; entry += WAGON_ENTRY) {
+            Wagon wagon = records.getInt(entry + W_TYPE) == CompactTrain.PASSENGER
+                    ? new PassengerWagon(records.getInt(entry + W_ID), records.getInt(entry + W_VALUE))
+                    : new FreightWagon(records.getInt(entry + W_ID), records.getInt(entry + W_VALUE));
+            if (first == null) {
+                first = wagon;
+            } else {
+                wagon.attachTo(last);
+            }
+            last = wagon;
+        }
+        return first;
+    }
+}
@@ -0,0 +1,20 @@
+package models;
+
+/**
+ * Listener to the operations on a train
+ * A train calls its listener after every public operation, with the time the operation took.
+ * Without a listener a train only pays for a null check per operation.
+ */
+public interface TrainListener {
+    enum Operation {ATTACH, INSERT, SPLIT, MOVE, REVERSE, LOOKUP, SORT, MERGE}
+
+    /**
+     * Called after an operation on the given train has completed
+     *
+     * @param train     the train
+     * @param operation the kind of operation
+     * @param succeeded whether the operation changed the train or found a wagon
+     * @param nanos     the time the operation took, in nanoseconds
+     */
+    void operationCompleted(Train train, Operation operation, boolean succeeded, long nanos);
+}
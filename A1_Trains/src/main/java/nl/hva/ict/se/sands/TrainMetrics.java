@@ -0,0 +1,136 @@
+package models;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the operations on trains, to be polled by monitoring
+ * Latencies are counted in buckets of powers of two nanoseconds, so recording an operation
+ * takes a few uncontended additions and no allocation. One instance can listen to any number of trains
+ * on any number of threads.
+ */
+public class TrainMetrics implements TrainListener {
+    private static final int BUCKETS = 64;      // bucket b holds latencies from 2^(b-1) until 2^b nanoseconds
+
+    /**
+     * Measurements of one kind of operation
+     */
+    private static class Measurements {
+        final LongAdder count = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    }
+
+    private final Measurements[] measurements = new Measurements[Operation.values().length];
+
+    public TrainMetrics() {
+        for (int i = 0; i < measurements.length; i++) {
+            measurements[i] = new Measurements();
+        }
+    }
+
+    @Override
+    public void operationCompleted(Train train, Operation operation, boolean succeeded, long nanos) {
+        Measurements measured = measurements[operation.ordinal()];
+        measured.count.increment();
+        if (!succeeded) {
+            measured.failures.increment();
+        }
+        measured.totalNanos.add(nanos);
+        measured.histogram.incrementAndGet(bucketOf(nanos));
+    }
+
+    private static int bucketOf(long nanos) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)), BUCKETS - 1);
+    }
+
+    public long getNumberOfOperations(Operation operation) {
+        return measurements[operation.ordinal()].count.sum();
+    }
+
+    /**
+     * @return the number of operations that did not change the train or did not find a wagon
+     */
+    public long getNumberOfFailures(Operation operation) {
+        return measurements[operation.ordinal()].failures.sum();
+    }
+
+    public long getTotalNanos(Operation operation) {
+        return measurements[operation.ordinal()].totalNanos.sum();
+    }
+
+    /**
+     * @return the average time of the given operation (return 0 if it has not been measured)
+     */
+    public double getMeanNanos(Operation operation) {
+        long count = getNumberOfOperations(operation);
+        return count == 0 ? 0.0 : (double) getTotalNanos(operation) / count;
+    }
+
+    /**
+     * @param operation the kind of operation
+     * @return the number of operations per latency bucket, bucket b counts latencies below 2^b nanoseconds
+     * that are not in a lower bucket
+     */
+    public long[] getLatencyHistogram(Operation operation) {
+        AtomicLongArray histogram = measurements[operation.ordinal()].histogram;
+        long[] counts = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            counts[b] = histogram.get(b);
+        }
+        return counts;
+    }
+
+    /**
+     * Estimates a percentile of the latency of the given operation, by the upper bound of its bucket
+     *
+     * @param operation  the kind of operation
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in nanoseconds that the given percentage of the operations did not exceed
+     * (return 0 if the operation has not been measured)
+     */
+    public long getPercentileNanos(Operation operation, double percentile) {
+        long[] counts = getLatencyHistogram(operation);
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+
+        // the bucket in which the cumulative count reaches the percentile
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long cumulative = 0;
+        for (int b = 0; b < BUCKETS && total > 0; b++) {
+            cumulative += counts[b];
+            if (cumulative >= rank && cumulative > 0) {
+                return b == BUCKETS - 1 ? Long.MAX_VALUE : (1L << b) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sets all counters and histograms back to zero
+     */
+    public void reset() {
+        for (Measurements measured : measurements) {
+            measured.count.reset();
+            measured.failures.reset();
+            measured.totalNanos.reset();
+            for (int b = 0; b < BUCKETS; b++) {
+                measured.histogram.set(b, 0);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            result.append(String.format("%s: %d operations, %d failed, mean %.0f ns, p99 %d ns%n",
+                    operation, getNumberOfOperations(operation), getNumberOfFailures(operation),
+                    getMeanNanos(operation), getPercentileNanos(operation, 99)));
+        }
+        return result.toString();
+    }
+}
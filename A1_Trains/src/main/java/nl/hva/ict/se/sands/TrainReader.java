@@ -0,0 +1,196 @@
+package models;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader of trains written by TrainWriter
+ * Every train is restored with new locomotives and new wagons, that are linked first
+ * and then handed to the train in one go. Streams of version 1, with a single locomotive
+ * without a weight limit per train, can be read as well.
+ */
+public class TrainReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;                   // next byte to read from the buffer
+    private int limit;                      // number of valid bytes in the buffer
+    private boolean ended;                  // the end tag has been read
+    private final int version;
+
+    /**
+     * Starts reading trains from the given stream
+     *
+     * @param in the stream (closed by this reader)
+     * @throws IOException if the stream does not start with a valid header
+     */
+    public TrainReader(InputStream in) throws IOException {
+        this.in = in;
+        if (readInt() != TrainWriter.MAGIC) {
+            throw new IOException("not a train stream");
+        }
+        version = readInt();
+        if (version < 1 || version > TrainWriter.VERSION) {
+            throw new IOException("unknown version " + version + " of the train stream");
+        }
+    }
+
+    /**
+     * Reads all trains from the given stream and closes it
+     *
+     * @param in the stream
+     * @return the trains in the order they were written
+     * @throws IOException if the trains cannot be read
+     */
+    public static List<Train> readAll(InputStream in) throws IOException {
+        List<Train> trains = new ArrayList<>();
+        try (TrainReader reader = new TrainReader(in)) {
+            for (Train train = reader.readTrain(); train != null; train = reader.readTrain()) {
+                trains.add(train);
+            }
+        }
+        return trains;
+    }
+
+    /**
+     * Reads the next train
+     *
+     * @return the train (return null if all trains have been read)
+     * @throws IOException if the train cannot be read or the data is not valid
+     *                     (including wagons that exceed the capacity of the locomotives,
+     *                     wagons of mixed types and wagon ids that appear twice)
+     */
+    public Train readTrain() throws IOException {
+        if (ended) {
+            return null;
+        }
+        int tag = readInt();
+        if (tag == TrainWriter.END) {
+            ended = true;
+            return null;
+        } else if (tag != TrainWriter.TRAIN) {
+            throw new IOException("unknown tag " + tag);
+        }
+
+        int numberOfLocomotives = version == 1 ? 1 : readInt();
+        if (numberOfLocomotives < 1) {
+            throw new IOException("invalid number of locomotives " + numberOfLocomotives);
+        }
+        List<Locomotive> locomotives = new ArrayList<>();
+        for (int i = 0; i < numberOfLocomotives; i++) {
+            locomotives.add(version == 1 ? new Locomotive(readInt(), readInt())
+                    : new Locomotive(readInt(), readInt(), readInt()));
+        }
+        Train train = new Train(locomotives.get(0), readString(), readString());
+        for (int i = 1; i < numberOfLocomotives; i++) {
+            if (!train.addLocomotive(locomotives.get(i))) {
+                throw new IOException("locomotive " + locomotives.get(i) + " appears twice in the consist");
+            }
+        }
+        int numberOfWagons = readInt();
+        if (numberOfWagons < 0 || numberOfWagons > train.getMaxWagons()) {
+            throw new IOException("invalid number of wagons " + numberOfWagons + " for " + train.getEngine());
+        }
+
+        // linking the new wagons first, so the train registers them in one pass
+        // (the wagons are handed over without the checks of attachToRear, so they are checked here)
+        Wagon first = null;
+        Wagon last = null;
+        IntHashMap<Wagon> wagonsById = new IntHashMap<>();
+        int firstType = 0;
+        int wagonId = 0;
+        long weight = 0;
+        for (int i = 0; i < numberOfWagons; i++) {
+            int type = readInt();
+            wagonId += readInt();
+            int value = readInt();
+            if (firstType == 0) {
+                firstType = type;
+            } else if (type != firstType) {
+                throw new IOException("wagon " + wagonId + " of type " + type + " in a train of type " + firstType);
+            }
+            Wagon wagon;
+            if (type == CompactTrain.PASSENGER) {
+                wagon = new PassengerWagon(wagonId, value);
+            } else if (type == CompactTrain.FREIGHT) {
+                wagon = new FreightWagon(wagonId, value);
+                weight += value;
+            } else {
+                throw new IOException("unknown wagon type " + type);
+            }
+            if (wagonsById.put(wagonId, wagon) != null) {
+                throw new IOException("wagon id " + wagonId + " appears twice in the train");
+            }
+            if (first == null) {
+                first = wagon;
+            } else {
+                wagon.attachTo(last);
+            }
+            last = wagon;
+        }
+
+        if (!train.canPull(weight)) {
+            throw new IOException("the wagons weigh " + weight + ", more than the locomotives of "
+                    + train.getEngine() + " can pull");
+        }
+        train.setFirstWagon(first);
+        return train;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readString() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            if (position == limit) {
+                fill();
+            }
+            int chunk = Math.min(length - copied, limit - position);
+            System.arraycopy(buffer, position, bytes, copied, chunk);
+            position += chunk;
+            copied += chunk;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a zigzag varint
+     */
+    private int readInt() throws IOException {
+        int bits = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position == limit) {
+                fill();
+            }
+            byte b = buffer[position++];
+            bits |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (bits >>> 1) ^ -(bits & 1);
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private void fill() throws IOException {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            throw new EOFException("unexpected end of the train stream");
+        }
+    }
+}
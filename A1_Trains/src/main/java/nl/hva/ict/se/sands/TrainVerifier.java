@@ -0,0 +1,198 @@
+package models;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies the representation invariants of trains and their wagons
+ * A full verification walks the sequence twice: once to detect a cycle in the next links
+ * (Floyd's tortoise and hare), and once to check the links in both directions together with
+ * the bookkeeping of the train. Both walks take O(n) steps and allocate nothing as long as the train is valid.
+ * <p>
+ * A train that has a verifier verifies itself after a sample of its changes,
+ * so the verification can stay enabled in production at a small, tunable cost.
+ * The counters are thread-safe, one verifier can be shared by all trains.
+ */
+public class TrainVerifier {
+    private final int samplingInterval;     // on average one in this many changes is verified, 0 never
+    private final boolean failFast;         // throw at the first violation instead of only counting it
+
+    private final AtomicLong numberOfVerifications = new AtomicLong();
+    private final AtomicLong numberOfVerifiedWagons = new AtomicLong();
+    private final AtomicLong numberOfViolations = new AtomicLong();
+    private final AtomicLong numberOfCycles = new AtomicLong();
+    private volatile String lastViolation;
+
+    /**
+     * @param samplingInterval on average one in this many changes of a train is verified
+     *                         (1 verifies every change, 0 only verifies on request)
+     * @param failFast         whether a violation throws an IllegalStateException
+     */
+    public TrainVerifier(int samplingInterval, boolean failFast) {
+        if (samplingInterval < 0) {
+            throw new IllegalArgumentException("samplingInterval must not be negative");
+        }
+        this.samplingInterval = samplingInterval;
+        this.failFast = failFast;
+    }
+
+    /**
+     * Verifies the given train if this change is part of the sample
+     * (called by the train after every change)
+     *
+     * @param train the train that has changed
+     */
+    void sample(Train train) {
+        if (samplingInterval == 1 || samplingInterval > 1 && ThreadLocalRandom.current().nextInt(samplingInterval) == 0) {
+            verify(train);
+        }
+    }
+
+    /**
+     * Verifies all representation invariants of the given train and counts the outcome
+     *
+     * @param train the train
+     * @return whether the train is valid
+     * @throws IllegalStateException if the train is not valid and this verifier fails fast
+     */
+    public boolean verify(Train train) {
+        numberOfVerifications.incrementAndGet();
+        numberOfVerifiedWagons.addAndGet(train.getNumberOfWagons());
+        Wagon first = train.getFirstWagon();
+        if (first != null && hasCycle(first)) {
+            numberOfCycles.incrementAndGet();
+            return violated("the wagons of " + train.getEngine() + " form a cycle");
+        }
+        String violation = check(train);
+        return violation == null || violated(violation);
+    }
+
+    /**
+     * Verifies that the given sequence of wagons ends, before a train adopts it
+     *
+     * @param sequence the first wagon of the sequence
+     * @return whether the sequence is free of cycles
+     * @throws IllegalStateException if the sequence has a cycle and this verifier fails fast
+     */
+    boolean verifySequence(Wagon sequence) {
+        if (hasCycle(sequence)) {
+            numberOfCycles.incrementAndGet();
+            return violated("the sequence starting at " + sequence + " forms a cycle");
+        }
+        return true;
+    }
+
+    private boolean violated(String violation) {
+        numberOfViolations.incrementAndGet();
+        lastViolation = violation;
+        if (failFast) {
+            throw new IllegalStateException(violation);
+        }
+        return false;
+    }
+
+    /**
+     * Determines if following the next links from the given wagon ever returns to a wagon seen before
+     * The hare moves two wagons for every wagon of the tortoise, so in a cycle it catches up with the tortoise.
+     *
+     * @param start the wagon to start from
+     * @return whether the sequence from the given wagon has a cycle
+     */
+    public static boolean hasCycle(Wagon start) {
+        Wagon tortoise = start;
+        Wagon hare = start;
+        while (hare != null && hare.getNextWagon() != null) {
+            tortoise = tortoise.getNextWagon();
+            hare = hare.getNextWagon().getNextWagon();
+            if (tortoise == hare) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks the representation invariants of the given train, whose wagons must not form a cycle
+     *
+     * @param train the train
+     * @return a description of the first violated invariant (return null if all invariants hold)
+     */
+    public static String check(Train train) {
+        Wagon first = train.getFirstWagon();
+        Wagon last = train.getLastWagonAttached();
+        if ((first == null) != (last == null)) {
+            return "the first wagon is " + first + " but the last wagon is " + last;
+        }
+        if (first != null && first.getPreviousWagon() != null) {
+            return "the first wagon " + first + " has a predecessor";
+        }
+
+        // walking the sequence, every wagon must be the predecessor of its successor
+        int numberOfWagons = 0;
+        long totalNumberOfSeats = 0;
+        long totalMaxWeight = 0;
+        for (Wagon wagon = first; wagon != null; wagon = wagon.getNextWagon()) {
+            if (wagon.train != train) {
+                return wagon + " is not held by the train";
+            }
+            if (train.wagonWithId(wagon.getId()) != wagon) {
+                return wagon + " cannot be found by its id";
+            }
+            Wagon next = wagon.getNextWagon();
+            if (next == null ? wagon != last : next.getPreviousWagon() != wagon) {
+                return "the link from " + wagon + " to " + next + " is broken";
+            }
+            numberOfWagons++;
+            totalNumberOfSeats += Train.SEATS.applyAsInt(wagon);
+            totalMaxWeight += Train.MAX_WEIGHT.applyAsInt(wagon);
+        }
+
+        // the bookkeeping must match the sequence
+        if (numberOfWagons != train.getNumberOfWagons()) {
+            return "the train counts " + train.getNumberOfWagons() + " wagons instead of " + numberOfWagons;
+        }
+        if (numberOfWagons != train.getNumberOfIndexedWagons()) {
+            return "the train indexes " + train.getNumberOfIndexedWagons() + " wagons instead of " + numberOfWagons;
+        }
+        if (totalNumberOfSeats != train.getTotalNumberOfSeats()) {
+            return "the train counts " + train.getTotalNumberOfSeats() + " seats instead of " + totalNumberOfSeats;
+        }
+        if (totalMaxWeight != train.getTotalMaxWeight()) {
+            return "the train counts a weight of " + train.getTotalMaxWeight() + " instead of " + totalMaxWeight;
+        }
+        return null;
+    }
+
+    public int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    public long getNumberOfVerifications() {
+        return numberOfVerifications.get();
+    }
+
+    /**
+     * @return the number of wagons walked by all verifications, a measure of their cost
+     */
+    public long getNumberOfVerifiedWagons() {
+        return numberOfVerifiedWagons.get();
+    }
+
+    public long getNumberOfViolations() {
+        return numberOfViolations.get();
+    }
+
+    /**
+     * @return the number of violations that were cycles
+     */
+    public long getNumberOfCycles() {
+        return numberOfCycles.get();
+    }
+
+    /**
+     * @return the description of the last violation (return null if none was found)
+     */
+    public String getLastViolation() {
+        return lastViolation;
+    }
+}
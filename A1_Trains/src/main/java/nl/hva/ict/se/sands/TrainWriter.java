@@ -0,0 +1,163 @@
+package models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming writer of trains in a compact binary format, to be read back by TrainReader
+ * <p>
+ * Format: the magic number "YARD" and a version, followed by one record per train and an end tag.
+ * A train record is the tag TRAIN, the number of locomotives of the consist and per locomotive
+ * its number, maximum number of wagons and maximum weight (Locomotive.NO_WEIGHT_LIMIT if it has none),
+ * the leading engine first, origin and destination as UTF-8 strings, the number of wagons and per wagon its type tag
+ * (CompactTrain.PASSENGER or CompactTrain.FREIGHT), the difference between its id and the id
+ * of the previous wagon, and its number of seats or maximum weight.
+ * All numbers are zigzag varints, so consecutive wagon ids take a single byte.
+ * The writer buffers its output itself and does not allocate per wagon.
+ */
+public class TrainWriter implements Closeable {
+    static final int MAGIC = 0x59415244;    // "YARD"
+    static final int VERSION = 2;           // version 1 had a single locomotive without a weight limit
+    static final int END = 0;               // tag after the last train
+    static final int TRAIN = 1;             // tag in front of every train
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_VARINT_SIZE = 5;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;                      // number of bytes in the buffer
+    private int numberOfTrains;
+    private boolean closed;
+
+    /**
+     * Starts writing trains to the given stream
+     *
+     * @param out the stream (closed by this writer)
+     * @throws IOException if the header cannot be written
+     */
+    public TrainWriter(OutputStream out) throws IOException {
+        this.out = out;
+        writeInt(MAGIC);
+        writeInt(VERSION);
+    }
+
+    /**
+     * Writes the given train with all its locomotives and all its wagons
+     *
+     * @param train the train
+     * @throws IOException if the train cannot be written
+     */
+    public void writeTrain(Train train) throws IOException {
+        if (closed) {
+            throw new IOException("the writer is closed");
+        }
+        writeInt(TRAIN);
+        writeInt(train.getNumberOfLocomotives());
+        for (Locomotive locomotive : train.getLocomotives()) {
+            writeInt(locomotive.getLocNumber());
+            writeInt(locomotive.getMaxWagons());
+            writeInt(locomotive.getMaxWeight());
+        }
+        writeString(train.getOrigin());
+        writeString(train.getDestination());
+        writeInt(train.getNumberOfWagons());
+
+        int previousId = 0;
+        for (Wagon wagon = train.getFirstWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+            ensureSpace(3 * MAX_VARINT_SIZE);
+            if (wagon instanceof PassengerWagon) {
+                putInt(CompactTrain.PASSENGER);
+                putInt(wagon.getId() - previousId);
+                putInt(((PassengerWagon) wagon).getNumberOfSeats());
+            } else {
+                putInt(CompactTrain.FREIGHT);
+                putInt(wagon.getId() - previousId);
+                putInt(((FreightWagon) wagon).getMaxWeight());
+            }
+            previousId = wagon.getId();
+        }
+        numberOfTrains++;
+    }
+
+    /**
+     * @return the number of trains written so far
+     */
+    public int getNumberOfTrains() {
+        return numberOfTrains;
+    }
+
+    /**
+     * Writes the buffered data to the stream
+     *
+     * @throws IOException if the data cannot be written
+     */
+    public void flush() throws IOException {
+        out.write(buffer, 0, count);
+        count = 0;
+        out.flush();
+    }
+
+    /**
+     * Writes the end tag and closes the stream
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeInt(END);
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        ensureSpace(bytes.length);
+        if (bytes.length > buffer.length) {
+            out.write(bytes);
+        } else {
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        ensureSpace(MAX_VARINT_SIZE);
+        putInt(value);
+    }
+
+    /**
+     * Puts the value as a zigzag varint in the buffer, which must have room for it
+     */
+    private void putInt(int value) {
+        // zigzag encoding maps small negative numbers to small positive numbers
+        int bits = (value << 1) ^ (value >> 31);
+        while ((bits & ~0x7F) != 0) {
+            buffer[count++] = (byte) ((bits & 0x7F) | 0x80);
+            bits >>>= 7;
+        }
+        buffer[count++] = (byte) bits;
+    }
+
+    /**
+     * Makes room for the given number of bytes, flushing the buffer to the stream if needed
+     */
+    private void ensureSpace(int size) throws IOException {
+        if (count + size > buffer.length) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -11,7 +11,10 @@ public abstract class Wagon {
     private Wagon previousWagon;    // another wagon that is prepended at the front of this wagon
     // a.k.a. the predecessor of this wagon in a sequence
     // set to null if no predecessor is connected
-
+    Train train;                    // the train that currently holds this wagon in its sequence
+    // maintained by Train, set to null if the wagon is not part of a train
+    // when that train is reversed, nextWagon and previousWagon are read the other way around
+    boolean pooled;                 // the wagon has been released to a WagonPool and waits to be reused
 
     // representation invariant propositions:
     // tail-connection-invariant:   wagon.nextWagon == null or wagon == wagon.nextWagon.previousWagon
@@ -26,19 +29,53 @@ public abstract class Wagon {
     }
 
     public Wagon getNextWagon() {
-        return nextWagon;
+        return isReversed() ? previousWagon : nextWagon;
     }
 
     public void setNextWagon(Wagon nextWagon) {
-        this.nextWagon = nextWagon;
+        if (isReversed()) {
+            this.previousWagon = nextWagon;
+        } else {
+            this.nextWagon = nextWagon;
+        }
     }
 
     public Wagon getPreviousWagon() {
-        return previousWagon;
+        return isReversed() ? nextWagon : previousWagon;
     }
 
     public void setPreviousWagon(Wagon previousWagon) {
-        this.previousWagon = previousWagon;
+        if (isReversed()) {
+            this.nextWagon = previousWagon;
+        } else {
+            this.previousWagon = previousWagon;
+        }
+    }
+
+    /**
+     * @return whether the train holding this wagon has been reversed
+     * (the links of this wagon then have to be read the other way around)
+     */
+    private boolean isReversed() {
+        return train != null && train.isReversed();
+    }
+
+    /**
+     * Moves this wagon into the given train (or out of any train),
+     * keeping its next and previous wagon as they are seen from outside
+     *
+     * @param newTrain the train that holds this wagon from now on (can be null)
+     */
+    void setTrain(Train newTrain) {
+        boolean wasReversed = isReversed();
+        this.train = newTrain;
+
+        // the new train reads the links the other way around, so swap them
+        if (wasReversed != isReversed()) {
+            Wagon wagon = nextWagon;
+            nextWagon = previousWagon;
+            previousWagon = wagon;
+        }
     }
 
     /**
@@ -46,7 +83,7 @@ public abstract class Wagon {
      */
     public boolean hasNextWagon() {
         // return if next wagon is not null
-        return (nextWagon != null);
+        return (getNextWagon() != null);
     }
 
     /**
@@ -54,7 +91,7 @@ public abstract class Wagon {
      */
     public boolean hasPreviousWagon() {
         // return if previous wagon is not null
-        return (previousWagon != null);
+        return (getPreviousWagon() != null);
     }
 
     /**
@@ -83,7 +120,7 @@ public abstract class Wagon {
         Wagon wagon = this;
 
         // if there is no next wagon return 1
-        if (nextWagon == null) {
+        if (!hasNextWagon()) {
             return length;
         }
 
@@ -0,0 +1,159 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * Factory of wagons that recycles the wagons released to it
+ * Workloads that create and discard many wagons can release the wagons they no longer need
+ * and get them back from the pool with a new id and number of seats or maximum weight,
+ * instead of leaving them to the garbage collector.
+ * <p>
+ * A wagon can only be released once it is not part of a train and not coupled to other wagons
+ * (for example after removeFromSequence()), and must not be used anymore after its release.
+ * The pool is not thread-safe.
+ */
+public class WagonPool {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxPooledWagons;      // released wagons beyond this number are left to the garbage collector
+    private PassengerWagon[] passengerWagons = new PassengerWagon[INITIAL_CAPACITY];
+    private int numberOfPassengerWagons;
+    private FreightWagon[] freightWagons = new FreightWagon[INITIAL_CAPACITY];
+    private int numberOfFreightWagons;
+    private long numberOfCreatedWagons;
+    private long numberOfReusedWagons;
+
+    /* Representation invariants:
+        the first numberOfPassengerWagons entries of passengerWagons are the pooled passenger wagons
+        (and likewise for the freight wagons)
+        wagon.pooled == true exactly for the pooled wagons, which have no train and no neighbours
+     */
+
+    public WagonPool() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxPooledWagons maximum number of released wagons kept per type
+     */
+    public WagonPool(int maxPooledWagons) {
+        this.maxPooledWagons = maxPooledWagons;
+    }
+
+    /**
+     * @return a passenger wagon with the given id and number of seats, reused from the pool if possible
+     */
+    public PassengerWagon newPassengerWagon(int wagonId, int numberOfSeats) {
+        if (numberOfPassengerWagons == 0) {
+            numberOfCreatedWagons++;
+            return new PassengerWagon(wagonId, numberOfSeats);
+        }
+
+        PassengerWagon wagon = passengerWagons[--numberOfPassengerWagons];
+        passengerWagons[numberOfPassengerWagons] = null;
+        wagon.pooled = false;
+        wagon.id = wagonId;
+        wagon.numberOfSeats = numberOfSeats;
+        numberOfReusedWagons++;
+        return wagon;
+    }
+
+    /**
+     * @return a freight wagon with the given id and maximum weight, reused from the pool if possible
+     */
+    public FreightWagon newFreightWagon(int wagonId, int maxWeight) {
+        if (numberOfFreightWagons == 0) {
+            numberOfCreatedWagons++;
+            return new FreightWagon(wagonId, maxWeight);
+        }
+
+        FreightWagon wagon = freightWagons[--numberOfFreightWagons];
+        freightWagons[numberOfFreightWagons] = null;
+        wagon.pooled = false;
+        wagon.id = wagonId;
+        wagon.maxWeight = maxWeight;
+        numberOfReusedWagons++;
+        return wagon;
+    }
+
+    /**
+     * Hands the given wagon back to the pool for reuse
+     *
+     * @param wagon the wagon (not part of a train and not coupled to other wagons)
+     * @return whether the wagon was taken by the pool
+     * (return false if the wagon is still in use, already released or the pool is full)
+     */
+    public boolean release(Wagon wagon) {
+        if (wagon == null || wagon.pooled || wagon.train != null || wagon.hasNextWagon() || wagon.hasPreviousWagon()) {
+            return false;
+        }
+
+        if (wagon instanceof PassengerWagon) {
+            if (numberOfPassengerWagons == maxPooledWagons) {
+                return false;
+            }
+            if (numberOfPassengerWagons == passengerWagons.length) {
+                passengerWagons = Arrays.copyOf(passengerWagons, 2 * numberOfPassengerWagons);
+            }
+            passengerWagons[numberOfPassengerWagons++] = (PassengerWagon) wagon;
+        } else if (wagon instanceof FreightWagon) {
+            if (numberOfFreightWagons == maxPooledWagons) {
+                return false;
+            }
+            if (numberOfFreightWagons == freightWagons.length) {
+                freightWagons = Arrays.copyOf(freightWagons, 2 * numberOfFreightWagons);
+            }
+            freightWagons[numberOfFreightWagons++] = (FreightWagon) wagon;
+        } else {
+            return false;
+        }
+        wagon.pooled = true;
+        return true;
+    }
+
+    /**
+     * Takes all wagons off the given train and hands them back to the pool
+     *
+     * @param train the train (has no wagons afterwards)
+     * @return the number of wagons taken by the pool
+     */
+    public int releaseAll(Train train) {
+        Wagon wagon = train.getFirstWagon();
+        train.setFirstWagon(null);
+
+        // uncoupling the wagons one by one from the front of the sequence
+        int released = 0;
+        while (wagon != null) {
+            Wagon next = wagon.getNextWagon();
+            if (next != null) {
+                next.detachFromPrevious();
+            }
+            if (release(wagon)) {
+                released++;
+            }
+            wagon = next;
+        }
+        return released;
+    }
+
+    /**
+     * @return the number of wagons waiting in the pool to be reused
+     */
+    public int getNumberOfPooledWagons() {
+        return numberOfPassengerWagons + numberOfFreightWagons;
+    }
+
+    /**
+     * @return the number of wagons the pool had to create because none could be reused
+     */
+    public long getNumberOfCreatedWagons() {
+        return numberOfCreatedWagons;
+    }
+
+    /**
+     * @return the number of wagons the pool handed out again after their release
+     */
+    public long getNumberOfReusedWagons() {
+        return numberOfReusedWagons;
+    }
+}
@@ -0,0 +1,314 @@
+package models;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Composes the trains of a yard towards a target number of seats or a target weight per train
+ * Wagons are taken from the pool trains (trains without a target), from loose wagons and from
+ * trains that have more capacity than their target needs. Every wagon that has to move costs
+ * one move, so the composer keeps the wagons that already are on a train where they are and
+ * fills every shortage with as few wagons as possible:
+ * - shortages are handled from the largest to the smallest
+ * - a shortage takes the smallest wagon that covers it completely,
+ *   or else the largest wagon available and tries again
+ * - freight wagons that are heavier than the locomotives can still pull are skipped
+ * - a train that cannot reach its target within the capacity of its locomotives gets no wagons at all
+ * The resulting moves are collected in a ShuntingPlan, so they are applied as a whole or not at all.
+ */
+public class YardComposer {
+    /**
+     * Target of one train and its state while planning
+     */
+    private static class Target {
+        final Train train;
+        final int type;         // CompactTrain.PASSENGER for a seat target, CompactTrain.FREIGHT for a weight target
+        final int demand;
+        int supply;             // seats or weight of the wagons that will be on the train
+        int freeSlots;          // number of wagons the engine can still pull
+        long freeWeight;        // weight of freight wagons the locomotives can still pull
+
+        Target(Train train, int type, int demand) {
+            this.train = train;
+            this.type = type;
+            this.demand = demand;
+        }
+    }
+
+    /**
+     * Wagons that are available for the trains with a shortage, per type and by capacity
+     * Wagons with the same capacity are kept in a queue, so finding the right wagon
+     * for a shortage costs O(log c) for c different capacities.
+     */
+    private static class Pool {
+        final TreeMap<Integer, ArrayDeque<Wagon>> wagonsByCapacity = new TreeMap<>();
+
+        void add(Wagon wagon) {
+            wagonsByCapacity.computeIfAbsent(capacityOf(wagon), c -> new ArrayDeque<>()).addLast(wagon);
+        }
+
+        /**
+         * @return the wagon with the smallest capacity of at least the given capacity and at most the limit
+         * (return null if there is none)
+         */
+        Wagon takeCeiling(int capacity, long limit) {
+            Map.Entry<Integer, ArrayDeque<Wagon>> entry = wagonsByCapacity.ceilingEntry(capacity);
+            return entry == null || entry.getKey() > limit ? null : take(entry);
+        }
+
+        /**
+         * @return the wagon with the largest capacity of at most the limit (return null if there is none)
+         */
+        Wagon takeLargest(long limit) {
+            Map.Entry<Integer, ArrayDeque<Wagon>> entry =
+                    wagonsByCapacity.floorEntry((int) Math.min(limit, Integer.MAX_VALUE));
+            return entry == null ? null : take(entry);
+        }
+
+        private Wagon take(Map.Entry<Integer, ArrayDeque<Wagon>> entry) {
+            Wagon wagon = entry.getValue().pollFirst();
+            if (entry.getValue().isEmpty()) {
+                wagonsByCapacity.remove(entry.getKey());
+            }
+            return wagon;
+        }
+    }
+
+    private final List<Train> poolTrains = new ArrayList<>();
+    private final List<Wagon> looseWagons = new ArrayList<>();
+    private final Map<Train, Target> targets = new IdentityHashMap<>();
+    private final List<Train> unsatisfiedTrains = new ArrayList<>();
+
+    /**
+     * Adds a train whose wagons may all be used to compose the other trains
+     *
+     * @param train the train
+     */
+    public YardComposer addPoolTrain(Train train) {
+        poolTrains.add(train);
+        return this;
+    }
+
+    /**
+     * Adds a wagon that is not part of any train and not coupled to other wagons
+     *
+     * @param wagon the wagon
+     * @return whether the wagon could be added
+     */
+    public boolean addLooseWagon(Wagon wagon) {
+        if (wagon == null || !isLoose(wagon)) {
+            return false;
+        }
+        looseWagons.add(wagon);
+        return true;
+    }
+
+    /**
+     * Sets the number of seats the given train should at least offer
+     *
+     * @param train the train (must not carry freight wagons)
+     * @param seats the number of seats
+     * @return whether the target could be set
+     */
+    public boolean setSeatTarget(Train train, int seats) {
+        return setTarget(train, CompactTrain.PASSENGER, seats);
+    }
+
+    /**
+     * Sets the maximum weight the given train should at least be able to carry
+     *
+     * @param train  the train (must not carry passenger wagons)
+     * @param weight the weight
+     * @return whether the target could be set
+     */
+    public boolean setWeightTarget(Train train, int weight) {
+        return setTarget(train, CompactTrain.FREIGHT, weight);
+    }
+
+    private boolean setTarget(Train train, int type, int demand) {
+        if (train == null || (train.hasWagons() && typeOf(train.getFirstWagon()) != type)) {
+            return false;
+        }
+        targets.put(train, new Target(train, type, demand));
+        return true;
+    }
+
+    /**
+     * @return the trains that could not reach their target in the last plan
+     */
+    public List<Train> getUnsatisfiedTrains() {
+        return unsatisfiedTrains;
+    }
+
+    /**
+     * Computes the moves that bring the trains as close as possible to their targets,
+     * without changing any train
+     *
+     * @return the plan with one step for every wagon that has to move
+     */
+    public ShuntingPlan plan() {
+        unsatisfiedTrains.clear();
+        Pool[] pools = {null, new Pool(), new Pool()};
+        List<Target> shortages = new ArrayList<>();
+
+        // all wagons of the pool trains and the loose wagons are available
+        for (Train train : poolTrains) {
+            if (!targets.containsKey(train)) {
+                for (Wagon wagon : train) {
+                    addToPool(pools, wagon);
+                }
+            }
+        }
+        for (Wagon wagon : looseWagons) {
+            if (isLoose(wagon)) {
+                addToPool(pools, wagon);
+            }
+        }
+
+        // trains above their target offer the wagons they can do without, the largest first
+        for (Target target : targets.values()) {
+            target.supply = target.type == CompactTrain.PASSENGER
+                    ? target.train.getTotalNumberOfSeats() : target.train.getTotalMaxWeight();
+            target.freeSlots = target.train.getMaxWagons() - target.train.getNumberOfWagons();
+            target.freeWeight = freeWeightOf(target.train);
+            if (target.supply < target.demand) {
+                shortages.add(target);
+            } else if (target.supply > target.demand) {
+                offerSurplus(target, pools[target.type]);
+            }
+        }
+
+        ShuntingPlan plan = new ShuntingPlan();
+        shortages.sort(Comparator.comparingInt((Target target) -> target.supply - target.demand));
+        for (Target target : shortages) {
+            fill(target, pools[target.type], plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Plans the moves and applies them
+     * Loose wagons that have been attached to a train are no longer available to later plans.
+     *
+     * @return whether the moves could be applied (no train is changed if not)
+     */
+    public boolean compose() {
+        if (!plan().execute()) {
+            return false;
+        }
+        looseWagons.removeIf(wagon -> !isLoose(wagon));
+        return true;
+    }
+
+    /**
+     * Marks the wagons of the train that are not needed to reach its target as available
+     */
+    private static void offerSurplus(Target target, Pool pool) {
+        List<Wagon> wagons = new ArrayList<>(target.train.getNumberOfWagons());
+        for (Wagon wagon : target.train) {
+            wagons.add(wagon);
+        }
+        wagons.sort(Comparator.comparingInt(YardComposer::capacityOf).reversed());
+
+        for (Wagon wagon : wagons) {
+            int capacity = capacityOf(wagon);
+            if (target.supply - capacity >= target.demand) {
+                target.supply -= capacity;
+                if (target.type == CompactTrain.FREIGHT && target.freeWeight != Long.MAX_VALUE) {
+                    target.freeWeight += capacity;
+                }
+                pool.add(wagon);
+            }
+        }
+    }
+
+    /**
+     * Selects wagons from the pool for the shortage of the target and adds their moves to the plan
+     * Only wagons the locomotives can still pull are selected (passenger wagons have no weight).
+     * The wagons go back to the pool when the target cannot be reached.
+     */
+    private void fill(Target target, Pool pool, ShuntingPlan plan) {
+        List<Wagon> selected = new ArrayList<>();
+        int shortage = target.demand - target.supply;
+        long freeWeight = target.type == CompactTrain.FREIGHT ? target.freeWeight : Long.MAX_VALUE;
+        while (shortage > 0 && selected.size() < target.freeSlots) {
+            Wagon wagon = pool.takeCeiling(shortage, freeWeight);
+            if (wagon == null) {
+                wagon = pool.takeLargest(freeWeight);
+                if (wagon == null) {
+                    break;
+                }
+            }
+            selected.add(wagon);
+            shortage -= capacityOf(wagon);
+            if (freeWeight != Long.MAX_VALUE) {
+                freeWeight -= capacityOf(wagon);
+            }
+        }
+
+        if (shortage > 0) {
+            for (Wagon wagon : selected) {
+                pool.add(wagon);
+            }
+            unsatisfiedTrains.add(target.train);
+            return;
+        }
+
+        target.supply = target.demand - shortage;
+        target.freeSlots -= selected.size();
+        target.freeWeight = freeWeight;
+        for (Wagon wagon : selected) {
+            if (wagon.train == null) {
+                plan.attachToRear(target.train, wagon);
+            } else {
+                plan.moveOneWagon(wagon.train, wagon.getId(), target.train);
+            }
+        }
+    }
+
+    /**
+     * @return the weight of freight wagons the locomotives of the train can pull on top of its wagons
+     * (return Long.MAX_VALUE if a locomotive has no weight limit)
+     */
+    private static long freeWeightOf(Train train) {
+        long maxWeight = train.getMaxWeight();
+        return maxWeight == Long.MAX_VALUE ? maxWeight : maxWeight - train.getTotalMaxWeight();
+    }
+
+    /**
+     * @return whether the wagon is not part of any train and not coupled to other wagons
+     */
+    private static boolean isLoose(Wagon wagon) {
+        return wagon.train == null && !wagon.hasPreviousWagon() && !wagon.hasNextWagon();
+    }
+
+    private static void addToPool(Pool[] pools, Wagon wagon) {
+        int type = typeOf(wagon);
+        if (type != 0) {
+            pools[type].add(wagon);
+        }
+    }
+
+    private static int capacityOf(Wagon wagon) {
+        if (wagon instanceof PassengerWagon) {
+            return ((PassengerWagon) wagon).getNumberOfSeats();
+        } else if (wagon instanceof FreightWagon) {
+            return ((FreightWagon) wagon).getMaxWeight();
+        }
+        return 0;
+    }
+
+    private static int typeOf(Wagon wagon) {
+        if (wagon instanceof PassengerWagon) {
+            return CompactTrain.PASSENGER;
+        } else if (wagon instanceof FreightWagon) {
+            return CompactTrain.FREIGHT;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,141 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactTrainTest {
+    CompactTrain passengerTrain, trainWithoutWagons, freightTrain;
+
+    @BeforeEach
+    private void setup() {
+        passengerTrain = new CompactTrain(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8001, 32);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8002, 32);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8003, 18);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8004, 44);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8005, 44);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8006, 44);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8007, 40);
+
+        trainWithoutWagons = new CompactTrain(new Locomotive(29123, 7), "Amsterdam", "London");
+
+        freightTrain = new CompactTrain(new Locomotive(63427, 50), "Amsterdam", "Berlin");
+        freightTrain.attachToRear(CompactTrain.FREIGHT, 9001, 50000);
+        freightTrain.attachToRear(CompactTrain.FREIGHT, 9002, 40000);
+        freightTrain.attachToRear(CompactTrain.FREIGHT, 9003, 30000);
+    }
+
+    @Test
+    public void T01_shouldReportCumulativeProperties() {
+        assertEquals(7, passengerTrain.getNumberOfWagons());
+        assertEquals(254, passengerTrain.getTotalNumberOfSeats());
+        assertEquals(120000, freightTrain.getTotalMaxWeight());
+        assertTrue(passengerTrain.isPassengerTrain());
+        assertTrue(freightTrain.isFreightTrain());
+        assertFalse(trainWithoutWagons.isPassengerTrain());
+    }
+
+    @Test
+    public void T02_shouldRejectIncompatibleOrDuplicateWagons() {
+        assertFalse(passengerTrain.attachToRear(CompactTrain.PASSENGER, 8008, 40));
+        assertFalse(freightTrain.attachToRear(CompactTrain.PASSENGER, 8008, 40));
+        assertFalse(freightTrain.insertAtFront(CompactTrain.FREIGHT, 9002, 40));
+        assertFalse(freightTrain.insertAtPosition(5, CompactTrain.FREIGHT, 9004, 40));
+        assertTrue(freightTrain.insertAtPosition(2, CompactTrain.FREIGHT, 9004, 40));
+        assertArrayEquals(new int[]{9001, 9004, 9002, 9003}, freightTrain.getWagonIds());
+    }
+
+    @Test
+    public void T03_shouldSplitMoveAndReverse() {
+        assertTrue(passengerTrain.splitAtPosition(5, trainWithoutWagons));
+        assertArrayEquals(new int[]{8005, 8006, 8007}, trainWithoutWagons.getWagonIds());
+        assertEquals(126, passengerTrain.getTotalNumberOfSeats());
+
+        assertTrue(trainWithoutWagons.moveOneWagon(8006, passengerTrain));
+        assertFalse(trainWithoutWagons.moveOneWagon(8001, passengerTrain));
+        assertEquals(5, passengerTrain.findPositionOfWagon(8006));
+
+        passengerTrain.reverse();
+        assertArrayEquals(new int[]{8006, 8004, 8003, 8002, 8001}, passengerTrain.getWagonIds());
+        assertEquals(8004, passengerTrain.findWagonIdAtPosition(2));
+        assertTrue(passengerTrain.attachToRear(CompactTrain.PASSENGER, 8009, 10));
+        assertArrayEquals(new int[]{8006, 8004, 8003, 8002, 8001, 8009}, passengerTrain.getWagonIds());
+    }
+
+    @Test
+    public void T04_shouldConvertToAndFromTrain() {
+        Train train = passengerTrain.toTrain();
+        assertEquals(passengerTrain.toString(), train.toString());
+        assertEquals(254, train.getTotalNumberOfSeats());
+
+        train.reverse();
+        CompactTrain copy = CompactTrain.from(train);
+        assertEquals(train.toString(), copy.toString());
+        assertEquals(254, copy.getTotalNumberOfSeats());
+    }
+
+    @Test
+    public void T05_shouldRecycleSlotsOverManyMoves() {
+        CompactTrain from = new CompactTrain(new Locomotive(1, 10000), "Amsterdam", "Paris");
+        CompactTrain to = new CompactTrain(new Locomotive(2, 10000), "Amsterdam", "Paris");
+        for (int id = 0; id < 5000; id++) {
+            from.attachToRear(CompactTrain.FREIGHT, id, id);
+        }
+        for (int round = 0; round < 3; round++) {
+            assertTrue(from.splitAtPosition(1, to));
+            CompactTrain swap = from;
+            from = to;
+            to = swap;
+        }
+        for (int id = 0; id < 5000; id += 2) {
+            assertTrue(from.moveOneWagon(id, to));
+        }
+        assertEquals(2500, to.getNumberOfWagons());
+        assertEquals(2500, from.getNumberOfWagons());
+        assertEquals(2 + 1, from.findPositionOfWagon(5));
+        assertEquals(5000L * 4999 / 2, (long) from.getTotalMaxWeight() + to.getTotalMaxWeight());
+    }
+
+    @Test
+    public void T06_shouldRejectUnknownTypes() {
+        assertFalse(trainWithoutWagons.attachToRear(0, 7001, 40));
+        assertFalse(trainWithoutWagons.insertAtFront(3, 7002, 40));
+        assertFalse(freightTrain.insertAtPosition(2, -1, 9005, 40));
+        assertFalse(trainWithoutWagons.canAttach(42, 1));
+        assertFalse(trainWithoutWagons.hasWagons());
+        assertArrayEquals(new int[]{9001, 9002, 9003}, freightTrain.getWagonIds());
+    }
+
+    @Test
+    public void T07_theConsistShouldMakeTheRoundTrip() {
+        Train doubleHeaded = new Train(new Locomotive(1, 2, 60000), "Amsterdam", "Duisburg");
+        doubleHeaded.addLocomotive(new Locomotive(2, 2, 50000));
+        for (int id = 9101; id <= 9104; id++) {
+            assertTrue(doubleHeaded.attachToRear(new FreightWagon(id, 25000)));
+        }
+
+        CompactTrain compactTrain = CompactTrain.from(doubleHeaded);
+        assertEquals(2, compactTrain.getLocomotives().size());
+        assertEquals(4, compactTrain.getMaxWagons());
+        assertEquals(110000, compactTrain.getMaxWeight());
+        assertFalse(compactTrain.attachToRear(CompactTrain.FREIGHT, 9105, 1000));
+        Train restored = compactTrain.toTrain();
+        assertEquals(doubleHeaded.toString(), restored.toString());
+        assertEquals(2, restored.getNumberOfLocomotives());
+        assertEquals(4, restored.getMaxWagons());
+
+        // the weight of the consist is enforced on every operation
+        CompactTrain heavy = new CompactTrain(doubleHeaded.getLocomotives(), "Amsterdam", "Duisburg");
+        assertTrue(heavy.attachToRear(CompactTrain.FREIGHT, 9201, 90000));
+        assertFalse(heavy.insertAtFront(CompactTrain.FREIGHT, 9202, 30000));
+        assertFalse(compactTrain.moveOneWagon(9101, heavy));
+        assertFalse(compactTrain.splitAtPosition(4, heavy));
+        assertTrue(heavy.attachToRear(CompactTrain.FREIGHT, 9202, 20000));
+
+        // a train that is overloaded outside the checks cannot be converted back
+        Train overloaded = new Train(new Locomotive(3, 2), "Amsterdam", "Duisburg");
+        overloaded.setFirstWagon(restored.getFirstWagon());
+        assertThrows(IllegalStateException.class, () -> CompactTrain.from(overloaded).toTrain());
+    }
+}
@@ -0,0 +1,111 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentTrainManagerTest {
+    static final int TRAINS = 8;
+    static final int WAGONS_PER_TRAIN = 100;
+
+    ConcurrentTrainManager manager;
+    Train[] trains;
+
+    @BeforeEach
+    private void setup() {
+        manager = new ConcurrentTrainManager();
+        trains = new Train[TRAINS];
+        for (int t = 0; t < TRAINS; t++) {
+            trains[t] = new Train(new Locomotive(t, TRAINS * WAGONS_PER_TRAIN), "Amsterdam", "Paris");
+            for (int w = 0; w < WAGONS_PER_TRAIN; w++) {
+                trains[t].attachToRear(new PassengerWagon(t * WAGONS_PER_TRAIN + w, 1));
+            }
+            manager.register(trains[t]);
+        }
+    }
+
+    @Test
+    public void T01_concurrentMovesShouldNeitherDeadlockNorLoseWagons() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        AtomicInteger failures = new AtomicInteger();
+        for (int worker = 0; worker < 4; worker++) {
+            long seed = worker;
+            workers.execute(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20000; i++) {
+                    try {
+                        randomOperation(random, failures);
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(60, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+
+        int totalWagons = 0;
+        int totalSeats = 0;
+        for (Train train : trains) {
+            assertEquals(manager.getWagons(train).length, train.getNumberOfWagons());
+            totalWagons += manager.getNumberOfWagons(train);
+            totalSeats += manager.getTotalNumberOfSeats(train);
+        }
+        assertEquals(TRAINS * WAGONS_PER_TRAIN, totalWagons);
+        assertEquals(TRAINS * WAGONS_PER_TRAIN, totalSeats);
+    }
+
+    @Test
+    public void T02_attachingAWagonOfAnotherTrainShouldLockThatTrainToo() {
+        Wagon wagon = trains[0].findWagonAtPosition(WAGONS_PER_TRAIN);
+        assertTrue(manager.attachToRear(trains[1], wagon));
+        assertEquals(WAGONS_PER_TRAIN - 1, manager.getNumberOfWagons(trains[0]));
+        assertEquals(WAGONS_PER_TRAIN + 1, manager.getNumberOfWagons(trains[1]));
+        assertSame(wagon, manager.getWagons(trains[1])[WAGONS_PER_TRAIN]);
+    }
+
+    @Test
+    public void T03_unregisteredTrainsShouldReleaseTheirLocks() {
+        assertEquals(TRAINS, manager.getNumberOfTrains());
+        assertTrue(manager.unregister(trains[0]));
+        assertFalse(manager.unregister(trains[0]));
+        assertFalse(manager.unregister(new Train(new Locomotive(99, 1), "Amsterdam", "Paris")));
+        assertEquals(TRAINS - 1, manager.getNumberOfTrains());
+
+        // the other trains keep working, a train that is used again is registered again
+        assertTrue(manager.splitAtPosition(trains[1], WAGONS_PER_TRAIN, trains[2]));
+        assertEquals(WAGONS_PER_TRAIN + 1, manager.getNumberOfWagons(trains[2]));
+        assertEquals(WAGONS_PER_TRAIN, manager.getNumberOfWagons(trains[0]));
+        assertEquals(TRAINS, manager.getNumberOfTrains());
+    }
+
+    private void randomOperation(Random random, AtomicInteger failures) {
+        Train from = trains[random.nextInt(TRAINS)];
+        Train to = trains[random.nextInt(TRAINS)];
+        switch (random.nextInt(4)) {
+            case 0:
+                manager.splitAtPosition(from, 1 + random.nextInt(WAGONS_PER_TRAIN), to);
+                break;
+            case 1:
+                manager.reverse(from);
+                break;
+            case 2:
+                // a snapshot should never contain holes
+                for (Wagon wagon : manager.getWagons(from)) {
+                    if (wagon == null) {
+                        failures.incrementAndGet();
+                    }
+                }
+                break;
+            default:
+                manager.moveOneWagon(from, random.nextInt(TRAINS * WAGONS_PER_TRAIN), to);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.IntSummaryStatistics;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FleetTest {
+    Fleet fleet;
+
+    @BeforeEach
+    private void setup() {
+        fleet = new Fleet();
+        Train passengerTrain = new Train(new Locomotive(24531, 4), "Amsterdam", "Paris");
+        passengerTrain.attachToRear(new PassengerWagon(8001, 32));
+        passengerTrain.attachToRear(new PassengerWagon(8002, 18));
+        Train otherPassengerTrain = new Train(new Locomotive(24532, 2), "Utrecht", "Paris");
+        otherPassengerTrain.attachToRear(new PassengerWagon(8003, 44));
+        otherPassengerTrain.attachToRear(new PassengerWagon(8004, 40));
+        Train freightTrain = new Train(new Locomotive(63427, 10), "Amsterdam", "Berlin");
+        freightTrain.attachToRear(new FreightWagon(9001, 50000));
+        Train trainWithoutWagons = new Train(new Locomotive(29123, 3), "Amsterdam", "London");
+
+        fleet.register(passengerTrain);
+        fleet.register(otherPassengerTrain);
+        fleet.register(freightTrain);
+        fleet.register(trainWithoutWagons);
+    }
+
+    @Test
+    public void T01_statisticsShouldSummarizeAllTrains() {
+        Fleet.Statistics statistics = fleet.getStatistics();
+
+        assertEquals(4, statistics.getNumberOfTrains());
+        assertEquals(2, statistics.getNumberOfPassengerTrains());
+        assertEquals(1, statistics.getNumberOfFreightTrains());
+        assertEquals(1, statistics.getNumberOfEmptyTrains());
+        assertEquals(5, statistics.getNumberOfWagons());
+        assertEquals(134, statistics.getSeatsByDestination("Paris"));
+        assertEquals(50, statistics.getSeatsByOrigin("Amsterdam"));
+        assertEquals(50000, statistics.getMaxWeightByOrigin("Amsterdam"));
+        assertEquals(0, statistics.getSeatsByDestination("Rome"));
+        assertEquals(5.0 / 19, statistics.getUtilization(), 1e-9);
+        assertEquals(0.5, statistics.getUtilization(24531), 1e-9);
+        assertEquals(1.0, statistics.getUtilization(24532), 1e-9);
+        assertArrayEquals(new int[]{1, 1, 0, 0, 0, 1, 0, 0, 0, 0, 1}, statistics.getUtilizationHistogram());
+    }
+
+    @Test
+    public void T02_parallelResultsShouldMatchASingleThread() {
+        Random random = new Random(2020);
+        int id = 1;
+        for (int t = 0; t < 20000; t++) {
+            Train train = new Train(new Locomotive(t % 500, 20), "Origin-" + t % 7, "Destination-" + t % 13);
+            int wagons = random.nextInt(21);
+            for (int w = 0; w < wagons; w++) {
+                train.attachToRear(t % 3 == 0 ? new FreightWagon(id++, random.nextInt(1000)) : new PassengerWagon(id++, random.nextInt(100)));
+            }
+            fleet.register(train);
+        }
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(4);
+        Fleet.Statistics expected = fleet.getStatistics(single);
+        Fleet.Statistics actual = fleet.getStatistics(parallel);
+        assertEquals(expected.getNumberOfWagons(), actual.getNumberOfWagons());
+        assertEquals(expected.getNumberOfFreightTrains(), actual.getNumberOfFreightTrains());
+        assertArrayEquals(expected.getUtilizationHistogram(), actual.getUtilizationHistogram());
+        for (int d = 0; d < 13; d++) {
+            assertEquals(expected.getSeatsByDestination("Destination-" + d), actual.getSeatsByDestination("Destination-" + d));
+            assertEquals(expected.getMaxWeightByDestination("Destination-" + d), actual.getMaxWeightByDestination("Destination-" + d));
+        }
+        assertEquals(expected.getUtilization(123), actual.getUtilization(123), 1e-12);
+
+        IntSummaryStatistics seats = fleet.aggregate(Train.SEATS, parallel);
+        assertEquals(expected.getNumberOfWagons(), seats.getCount());
+        long totalSeats = actual.getSeatsByOrigin("Amsterdam") + actual.getSeatsByOrigin("Utrecht");
+        for (int o = 0; o < 7; o++) {
+            totalSeats += actual.getSeatsByOrigin("Origin-" + o);
+        }
+        assertEquals(totalSeats, seats.getSum());
+        single.shutdown();
+        parallel.shutdown();
+    }
+
+    @Test
+    public void T03_wagonsShouldBeDividedOverTheConsist() {
+        Train doubleHeaded = new Train(new Locomotive(63428, 4), "Rotterdam", "Duisburg");
+        doubleHeaded.addLocomotive(new Locomotive(63429, 2));
+        for (int id = 9101; id <= 9103; id++) {
+            doubleHeaded.attachToRear(new FreightWagon(id, 20000));
+        }
+        fleet.register(doubleHeaded);
+
+        // 2 of the 3 wagons are pulled by the engine that can pull 4 of the 6 wagons
+        Fleet.Statistics statistics = fleet.getStatistics();
+        assertEquals(0.5, statistics.getUtilization(63428), 1e-9);
+        assertEquals(0.5, statistics.getUtilization(63429), 1e-9);
+        assertEquals(8.0 / 25, statistics.getUtilization(), 1e-9);
+        assertArrayEquals(new int[]{1, 1, 0, 0, 0, 2, 0, 0, 0, 0, 1}, statistics.getUtilizationHistogram());
+    }
+}
@@ -0,0 +1,65 @@
+import models.IntHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntHashMapTest {
+    IntHashMap<String> map;
+
+    @BeforeEach
+    private void setup() {
+        map = new IntHashMap<>();
+        map.put(8001, "A");
+        map.put(8002, "B");
+        map.put(9001, "C");
+    }
+
+    @Test
+    public void T01_storedKeysShouldBeFound() {
+        assertEquals(3, map.size());
+        assertEquals("A", map.get(8001));
+        assertEquals("C", map.get(9001));
+        assertNull(map.get(8003));
+        assertTrue(map.containsKey(8002));
+        assertFalse(map.containsKey(0));
+    }
+
+    @Test
+    public void T02_putShouldReplaceAndRemoveShouldForget() {
+        assertEquals("A", map.put(8001, "D"));
+        assertEquals("D", map.get(8001));
+        assertEquals(3, map.size());
+
+        assertEquals("B", map.remove(8002));
+        assertNull(map.remove(8002));
+        assertFalse(map.containsKey(8002));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void T03_shouldBehaveLikeAHashMapUnderManyUpdates() {
+        Map<Integer, String> reference = new HashMap<>();
+        Random random = new Random(2020);
+        map.clear();
+
+        // a small key range forces long probe chains, removals and re-insertions
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(5000) * 64;
+            if (random.nextBoolean()) {
+                assertEquals(reference.put(key, "v" + i), map.put(key, "v" + i));
+            } else {
+                assertEquals(reference.remove(key), map.remove(key));
+            }
+        }
+
+        assertEquals(reference.size(), map.size());
+        for (int key = 0; key < 5000 * 64; key += 64) {
+            assertEquals(reference.get(key), map.get(key));
+        }
+    }
+}
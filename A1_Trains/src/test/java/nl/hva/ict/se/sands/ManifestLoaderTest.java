@@ -0,0 +1,105 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManifestLoaderTest {
+    ManifestLoader loader;
+    Train passengerTrain, freightTrain;
+
+    @BeforeEach
+    private void setup() {
+        loader = new ManifestLoader();
+        passengerTrain = new Train(new Locomotive(24531, 4), "Amsterdam", "Paris");
+        passengerTrain.attachToRear(new PassengerWagon(8001, 32));
+        freightTrain = new Train(new Locomotive(63427, 50, 100000), "Amsterdam", "Berlin");
+        assertTrue(loader.addTrain(passengerTrain));
+        assertTrue(loader.addTrain(freightTrain));
+        assertFalse(loader.addTrain(new Train(new Locomotive(24531, 4), "Amsterdam", "London")));
+    }
+
+    @Test
+    public void T01_aManifestShouldFillItsTrains() throws Exception {
+        Path file = Files.createTempFile("manifest", ".csv");
+        try {
+            Files.write(file, ("id,type,capacity,train\r\n"
+                    + "8002,P,18,24531\r\n"
+                    + "# freight for Berlin\n"
+                    + "9001, F, 50000, 63427\n"
+                    + "9002,freight,40000,63427\n"
+                    + "\n"
+                    + "9003,F,20000,63427\n"            // too heavy for the locomotive
+                    + "8003,F,100,24531\n"              // freight for a passenger train
+                    + "8001,P,40,24531\n"               // id already on the train
+                    + "8004,P,40,12345\n"               // unknown train
+                    + "8005,P,-40,24531\n"
+                    + "8006,X,40,24531\n"
+                    + "8007,P,44,24531,1\n"
+                    + "8008,P,44,24531\n"
+                    + "8009,P,44,24531\n"
+                    + "8010,P,44,24531").getBytes(StandardCharsets.US_ASCII));
+
+            assertEquals(5, loader.load(file));
+        } finally {
+            Files.delete(file);
+        }
+
+        assertEquals("[Loc-24531][Wagon-8001][Wagon-8002][Wagon-8008][Wagon-8009] with 4 wagons from Amsterdam to Paris",
+                passengerTrain.toString());
+        assertEquals(90000, freightTrain.getTotalMaxWeight());
+        assertEquals(16, loader.getNumberOfLines());
+        assertEquals(5, loader.getNumberOfLoadedWagons());
+        assertEquals(8, loader.getNumberOfRejectedLines());
+        assertTrue(loader.getNumberOfBytes() > 200);
+    }
+
+    @Test
+    public void T02_largeManifestsShouldStreamThroughSmallBuffers() throws Exception {
+        loader = new ManifestLoader();
+        Train[] trains = new Train[100];
+        for (int t = 0; t < trains.length; t++) {
+            trains[t] = new Train(new Locomotive(t + 1, 20000), "Amsterdam", "Paris");
+            loader.addTrain(trains[t]);
+        }
+        StringBuilder manifest = new StringBuilder();
+        for (int id = 1; id <= 1000000; id++) {
+            manifest.append(id).append(id % 2 == 0 ? ",P," : ",F,").append(id % 2 == 0 ? 40 : 5000)
+                    .append(',').append(1 + (id / 2) % 50 * 2 + id % 2).append('\n');
+        }
+
+        assertEquals(1000000, loader.load(Channels.newChannel(
+                new ByteArrayInputStream(manifest.toString().getBytes(StandardCharsets.US_ASCII)))));
+        System.out.println(loader);
+        assertTrue(trains[0].isPassengerTrain());
+        assertTrue(trains[1].isFreightTrain());
+        assertEquals(10000, trains[0].getNumberOfWagons());
+        assertEquals(400000, trains[0].getTotalNumberOfSeats());
+        assertEquals(0, loader.getNumberOfRejectedLines());
+        assertTrue(loader.getWagonsPerSecond() > 0);
+    }
+
+    @Test
+    public void T03_idsOfWagonsInOtherTrainsShouldBeRejected() throws Exception {
+        freightTrain.attachToRear(new FreightWagon(9001, 5000));
+        Train otherTrain = new Train(new Locomotive(12345, 4), "Amsterdam", "London");
+        otherTrain.attachToRear(new PassengerWagon(7001, 40));
+        assertTrue(loader.addTrain(otherTrain));
+
+        assertEquals(1, loader.load(Channels.newChannel(new ByteArrayInputStream(("id,type,capacity,train\n"
+                + "8001,P,40,12345\n"              // id on the passenger train
+                + "9001,P,40,24531\n"              // id on the freight train
+                + "7001,P,40,24531\n"              // id on the train added last
+                + "8002,P,40,12345").getBytes(StandardCharsets.US_ASCII)))));
+
+        assertEquals("[Loc-12345][Wagon-7001][Wagon-8002] with 2 wagons from Amsterdam to London", otherTrain.toString());
+        assertEquals(1, passengerTrain.getNumberOfWagons());
+        assertEquals(3, loader.getNumberOfRejectedLines());
+    }
+}
@@ -0,0 +1,129 @@
+import models.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedTrainStoreTest {
+    Path file;
+    MappedTrainStore store;
+    MappedTrainStore.TrainView passengerTrain, trainWithoutWagons;
+
+    @BeforeEach
+    private void setup() throws IOException {
+        file = Files.createTempFile("trains", ".store");
+        store = MappedTrainStore.create(file, 10, 4);
+        passengerTrain = store.addTrain(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8001, 32);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8002, 32);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8003, 18);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8004, 44);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8005, 44);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8006, 44);
+        passengerTrain.attachToRear(CompactTrain.PASSENGER, 8007, 40);
+        trainWithoutWagons = store.addTrain(new Locomotive(29123, 7), "Amsterdam", "London");
+    }
+
+    @AfterEach
+    private void cleanup() throws IOException {
+        store.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void T01_shouldComposeTrainsInPlace() {
+        assertEquals(7, passengerTrain.getNumberOfWagons());
+        assertEquals(254, passengerTrain.getTotalNumberOfSeats());
+        assertFalse(passengerTrain.attachToRear(CompactTrain.PASSENGER, 8008, 40));
+        assertFalse(trainWithoutWagons.insertAtPosition(2, CompactTrain.PASSENGER, 8008, 40));
+        assertTrue(trainWithoutWagons.insertAtPosition(1, CompactTrain.PASSENGER, 8008, 40));
+        assertFalse(trainWithoutWagons.attachToRear(CompactTrain.FREIGHT, 9001, 40));
+    }
+
+    @Test
+    public void T02_shouldSplitMoveAndReverseAcrossOrientations() {
+        passengerTrain.reverse();
+        assertTrue(passengerTrain.splitAtPosition(5, trainWithoutWagons));
+        assertArrayEquals(new int[]{8003, 8002, 8001}, trainWithoutWagons.getWagonIds());
+        assertArrayEquals(new int[]{8007, 8006, 8005, 8004}, passengerTrain.getWagonIds());
+
+        assertTrue(passengerTrain.moveOneWagon(8006, trainWithoutWagons));
+        assertArrayEquals(new int[]{8003, 8002, 8001, 8006}, trainWithoutWagons.getWagonIds());
+        assertEquals(3, passengerTrain.getNumberOfWagons());
+        assertEquals(126, trainWithoutWagons.getTotalNumberOfSeats());
+
+        trainWithoutWagons.reverse();
+        assertTrue(trainWithoutWagons.insertAtPosition(2, CompactTrain.PASSENGER, 8009, 10));
+        assertArrayEquals(new int[]{8006, 8009, 8001, 8002, 8003}, trainWithoutWagons.getWagonIds());
+        assertEquals(8001, trainWithoutWagons.findWagonIdAtPosition(3));
+        assertEquals(5, trainWithoutWagons.findPositionOfWagon(8003));
+    }
+
+    @Test
+    public void T03_shouldReopenWithTheSameTrains() throws IOException {
+        passengerTrain.reverse();
+        assertTrue(passengerTrain.splitAtPosition(6, trainWithoutWagons));
+        String expected = passengerTrain.toString();
+        store.close();
+
+        store = MappedTrainStore.open(file);
+        assertEquals(2, store.getNumberOfTrains());
+        passengerTrain = store.getTrain(0);
+        assertEquals(expected, passengerTrain.toString());
+        assertEquals(expected, passengerTrain.toTrain().toString());
+        assertEquals("London", store.getTrain(1).getDestination());
+        assertArrayEquals(new int[]{8002, 8001}, store.getTrain(1).getWagonIds());
+        assertEquals(190, passengerTrain.getTotalNumberOfSeats());
+    }
+
+    @Test
+    public void T04_shouldRejectNamesThatDoNotFit() {
+        // 15 two-byte characters fit exactly, one more does not
+        String longest = "\u00e9".repeat(15);
+        assertEquals(longest, store.addTrain(new Locomotive(1, 7), longest, "Paris").getOrigin());
+        assertThrows(IllegalArgumentException.class,
+                () -> store.addTrain(new Locomotive(2, 7), "Amsterdam", longest + "\u00e9"));
+        assertThrows(IllegalArgumentException.class,
+                () -> store.addTrain(new Locomotive(3, 7), "Amsterdam-Centraal-Sloterdijk-Lelylaan", "Paris"));
+        assertEquals(3, store.getNumberOfTrains());
+    }
+
+    @Test
+    public void T05_theConsistShouldBePersisted() throws IOException {
+        MappedTrainStore.TrainView freightTrain = store.addTrain(
+                List.of(new Locomotive(63427, 1, 60000), new Locomotive(63428, 1, 50000)), "Amsterdam", "Duisburg");
+        assertTrue(freightTrain.attachToRear(CompactTrain.FREIGHT, 9001, 60000));
+        assertFalse(freightTrain.attachToRear(CompactTrain.FREIGHT, 9002, 60000));
+        assertTrue(freightTrain.attachToRear(CompactTrain.FREIGHT, 9002, 50000));
+        assertFalse(freightTrain.attachToRear(CompactTrain.FREIGHT, 9003, 1));
+        store.close();
+
+        store = MappedTrainStore.open(file);
+        freightTrain = store.getTrain(2);
+        assertEquals(2, freightTrain.getLocomotives().size());
+        assertEquals(63428, freightTrain.getLocomotives().get(1).getLocNumber());
+        assertEquals(110000, freightTrain.getMaxWeight());
+        Train train = freightTrain.toTrain();
+        assertEquals(2, train.getNumberOfLocomotives());
+        assertEquals(2, train.getMaxWagons());
+        assertEquals(110000, train.getTotalMaxWeight());
+
+        assertThrows(IllegalArgumentException.class, () -> store.addTrain(List.of(), "Amsterdam", "Duisburg"));
+    }
+
+    @Test
+    public void T06_shouldRejectUnknownTypes() {
+        assertFalse(trainWithoutWagons.attachToRear(7, 7001, 40));
+        assertFalse(trainWithoutWagons.insertAtPosition(1, 0, 7002, 40));
+        assertFalse(passengerTrain.insertAtPosition(2, -1, 7003, 40));
+        assertFalse(trainWithoutWagons.canAttach(42, 1));
+        assertFalse(trainWithoutWagons.hasWagons());
+        assertEquals(7, passengerTrain.getNumberOfWagons());
+    }
+}
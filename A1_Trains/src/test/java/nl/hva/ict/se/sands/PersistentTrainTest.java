@@ -0,0 +1,147 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistentTrainTest {
+    Train passengerTrain;
+    PersistentTrain persistentTrain;
+
+    @BeforeEach
+    private void setup() {
+        passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8005; id++) {
+            passengerTrain.attachToRear(new PassengerWagon(id, 10 * (id - 8000)));
+        }
+        persistentTrain = PersistentTrain.from(passengerTrain);
+    }
+
+    @Test
+    public void T01_shouldHaveTheCompositionOfTheTrain() {
+        assertEquals(passengerTrain.toString(), persistentTrain.toString());
+        assertEquals(150, persistentTrain.getTotalNumberOfSeats());
+        assertEquals(8003, persistentTrain.findWagonIdAtPosition(3));
+        assertEquals(-1, persistentTrain.findWagonIdAtPosition(6));
+        assertTrue(persistentTrain.isPassengerTrain());
+        assertEquals(passengerTrain.toString(), persistentTrain.toTrain().toString());
+    }
+
+    @Test
+    public void T02_operationsShouldLeaveEarlierVersionsUnchanged() {
+        PersistentTrain front = persistentTrain.take(2);
+        PersistentTrain back = persistentTrain.drop(2).reverse();
+        PersistentTrain inserted = persistentTrain.insertAtPosition(2, CompactTrain.PASSENGER, 8006, 60);
+        PersistentTrain recombined = back.concat(front).attachToRear(CompactTrain.PASSENGER, 8007, 70);
+
+        assertEquals(passengerTrain.toString(), persistentTrain.toString());
+        assertArrayEquals(new int[]{8001, 8002}, front.getWagonIds());
+        assertArrayEquals(new int[]{8005, 8004, 8003}, back.getWagonIds());
+        assertArrayEquals(new int[]{8001, 8006, 8002, 8003, 8004, 8005}, inserted.getWagonIds());
+        assertArrayEquals(new int[]{8005, 8004, 8003, 8001, 8002, 8007}, recombined.getWagonIds());
+        assertEquals(220, recombined.getTotalNumberOfSeats());
+        assertArrayEquals(new int[]{8001, 8003, 8004, 8005}, persistentTrain.removeWagonAtPosition(2).getWagonIds());
+    }
+
+    @Test
+    public void T03_shouldRespectTheTypeAndCapacity() {
+        assertNull(persistentTrain.attachToRear(CompactTrain.FREIGHT, 9001, 1000));
+        assertNull(persistentTrain.insertAtPosition(7, CompactTrain.PASSENGER, 8006, 60));
+        PersistentTrain full = persistentTrain.attachToRear(CompactTrain.PASSENGER, 8006, 60)
+                .insertAtFront(CompactTrain.PASSENGER, 8007, 70);
+        assertEquals(7, full.getNumberOfWagons());
+        assertNull(full.attachToRear(CompactTrain.PASSENGER, 8008, 80));
+        assertNull(full.concat(persistentTrain));
+        assertSame(full, full.concat(new PersistentTrain(new Locomotive(1, 1), "Amsterdam", "London")));
+
+        PersistentTrain empty = persistentTrain.drop(5);
+        assertEquals(0, empty.getNumberOfWagons());
+        assertNotNull(empty.attachToRear(CompactTrain.FREIGHT, 9001, 1000));
+    }
+
+    @Test
+    public void T04_randomVersionsShouldMatchAListModel() {
+        Random random = new Random(2020);
+        PersistentTrain train = new PersistentTrain(new Locomotive(1, 10000), "Amsterdam", "Paris");
+        List<PersistentTrain> versions = new ArrayList<>();
+        List<List<Integer>> models = new ArrayList<>();
+        List<Integer> model = new ArrayList<>();
+        int nextId = 1;
+
+        for (int step = 0; step < 3000; step++) {
+            int operation = random.nextInt(6);
+            int position = 1 + random.nextInt(model.size() + 1);
+            if (operation <= 2 || model.isEmpty()) {
+                train = train.insertAtPosition(position, CompactTrain.PASSENGER, nextId, nextId % 50);
+                model.add(position - 1, nextId++);
+            } else if (operation == 3 && position <= model.size()) {
+                train = train.removeWagonAtPosition(position);
+                model.remove(position - 1);
+            } else if (operation == 4) {
+                // rotating the train: the back part in front of the front part
+                train = train.drop(position - 1).concat(train.take(position - 1));
+                List<Integer> rotated = new ArrayList<>(model.subList(position - 1, model.size()));
+                rotated.addAll(model.subList(0, position - 1));
+                model = rotated;
+            } else {
+                train = train.reverse();
+                model = new ArrayList<>(model);
+                java.util.Collections.reverse(model);
+            }
+            versions.add(train);
+            models.add(new ArrayList<>(model));
+        }
+
+        for (int v = 0; v < versions.size(); v += 97) {
+            int[] wagonIds = versions.get(v).getWagonIds();
+            List<Integer> expected = models.get(v);
+            assertEquals(expected.size(), wagonIds.length);
+            int seats = 0;
+            for (int i = 0; i < wagonIds.length; i++) {
+                assertEquals((int) expected.get(i), wagonIds[i]);
+                seats += wagonIds[i] % 50;
+            }
+            assertEquals(seats, versions.get(v).getTotalNumberOfSeats());
+            if (!expected.isEmpty()) {
+                assertEquals((int) expected.get(expected.size() / 2),
+                        versions.get(v).findWagonIdAtPosition(expected.size() / 2 + 1));
+            }
+        }
+    }
+
+    @Test
+    public void T05_theConsistShouldMakeTheRoundTrip() {
+        Train doubleHeaded = new Train(new Locomotive(1, 2, 60000), "Amsterdam", "Duisburg");
+        doubleHeaded.addLocomotive(new Locomotive(2, 2, 50000));
+        for (int id = 9101; id <= 9104; id++) {
+            assertTrue(doubleHeaded.attachToRear(new FreightWagon(id, 25000)));
+        }
+
+        PersistentTrain persistent = PersistentTrain.from(doubleHeaded);
+        assertEquals(2, persistent.getLocomotives().size());
+        assertEquals(4, persistent.getMaxWagons());
+        assertEquals(110000, persistent.getMaxWeight());
+        assertNull(persistent.attachToRear(CompactTrain.FREIGHT, 9105, 1000));
+        Train restored = persistent.toTrain();
+        assertEquals(doubleHeaded.toString(), restored.toString());
+        assertEquals(2, restored.getNumberOfLocomotives());
+        assertEquals(4, restored.getMaxWagons());
+
+        // the weight of the consist is enforced, and kept by every version
+        PersistentTrain light = persistent.drop(2);
+        assertNull(light.attachToRear(CompactTrain.FREIGHT, 9105, 70000));
+        assertNotNull(light.attachToRear(CompactTrain.FREIGHT, 9105, 60000));
+        PersistentTrain heavy = new PersistentTrain(List.of(new Locomotive(3, 4, 60000)), "Amsterdam", "Duisburg");
+        assertNull(heavy.concat(persistent.take(3)));
+        assertNotNull(heavy.concat(persistent.take(2)));
+
+        // a train that is overloaded outside the checks cannot be converted back
+        Train overloaded = new Train(new Locomotive(3, 2), "Amsterdam", "Duisburg");
+        overloaded.setFirstWagon(restored.getFirstWagon());
+        assertThrows(IllegalStateException.class, () -> PersistentTrain.from(overloaded).toTrain());
+    }
+}
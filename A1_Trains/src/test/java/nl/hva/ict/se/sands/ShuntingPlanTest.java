@@ -0,0 +1,97 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShuntingPlanTest {
+    Train passengerTrain, trainWithoutWagons, freightTrain;
+    String passengerTrainBefore, freightTrainBefore;
+
+    @BeforeEach
+    private void setup() {
+        passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8005; id++) {
+            passengerTrain.attachToRear(new PassengerWagon(id, 40));
+        }
+        trainWithoutWagons = new Train(new Locomotive(29123, 3), "Amsterdam", "London");
+        freightTrain = new Train(new Locomotive(63427, 50), "Amsterdam", "Berlin");
+        freightTrain.attachToRear(new FreightWagon(9001, 50000));
+        freightTrain.attachToRear(new FreightWagon(9002, 40000));
+
+        passengerTrainBefore = passengerTrain.toString();
+        freightTrainBefore = freightTrain.toString();
+    }
+
+    @Test
+    public void T01_aValidPlanShouldBeAppliedCompletely() {
+        ShuntingPlan plan = new ShuntingPlan()
+                .splitAtPosition(passengerTrain, 4, trainWithoutWagons)
+                .insertAtPosition(passengerTrain, 2, new PassengerWagon(8006, 20))
+                .reverse(trainWithoutWagons)
+                .moveOneWagon(passengerTrain, 8001, trainWithoutWagons)
+                .attachToRear(freightTrain, new FreightWagon(9003, 30000));
+
+        assertTrue(plan.execute());
+        assertEquals("[Loc-24531][Wagon-8006][Wagon-8002][Wagon-8003] with 3 wagons from Amsterdam to Paris",
+                passengerTrain.toString());
+        assertEquals("[Loc-29123][Wagon-8005][Wagon-8004][Wagon-8001] with 3 wagons from Amsterdam to London",
+                trainWithoutWagons.toString());
+        assertEquals(120000, freightTrain.getTotalMaxWeight());
+    }
+
+    @Test
+    public void T02_anInvalidPlanShouldNotChangeAnyTrain() {
+        // the fourth wagon exceeds the capacity of the engine only after the split
+        ShuntingPlan plan = new ShuntingPlan()
+                .splitAtPosition(passengerTrain, 3, trainWithoutWagons)
+                .moveOneWagon(passengerTrain, 8001, trainWithoutWagons);
+        assertFalse(plan.validate());
+        assertFalse(plan.execute());
+
+        assertFalse(new ShuntingPlan().moveOneWagon(freightTrain, 9001, passengerTrain).execute());
+        assertFalse(new ShuntingPlan().insertAtPosition(freightTrain, 4, new FreightWagon(9003, 1)).execute());
+        assertEquals(passengerTrainBefore, passengerTrain.toString());
+        assertEquals(freightTrainBefore, freightTrain.toString());
+        assertEquals(0, trainWithoutWagons.getNumberOfWagons());
+    }
+
+    @Test
+    public void T03_aFailingStepShouldRollBackAllEarlierSteps() {
+        ShuntingPlan plan = new ShuntingPlan()
+                .reverse(passengerTrain)
+                .splitAtPosition(passengerTrain, 4, trainWithoutWagons)
+                .insertAtFront(passengerTrain, new PassengerWagon(8006, 20))
+                .moveOneWagon(passengerTrain, 8007, trainWithoutWagons);
+
+        // the plan is valid, but wagon 8007 is not on the train
+        assertTrue(plan.validate());
+        assertFalse(plan.execute());
+        assertEquals(passengerTrainBefore, passengerTrain.toString());
+        assertEquals(200, passengerTrain.getTotalNumberOfSeats());
+        assertEquals(0, trainWithoutWagons.getNumberOfWagons());
+        assertEquals(8005, passengerTrain.getLastWagonAttached().getId());
+        assertEquals(8004, passengerTrain.getLastWagonAttached().getPreviousWagon().getId());
+    }
+
+    @Test
+    public void T04_freightTooHeavyForTheLocomotivesShouldRollBack() {
+        Train heavyTrain = new Train(new Locomotive(63427, 10, 100000), "Amsterdam", "Berlin");
+        Train otherFreightTrain = new Train(new Locomotive(63428, 10), "Amsterdam", "Berlin");
+        otherFreightTrain.attachToRear(new FreightWagon(9001, 50000));
+        otherFreightTrain.attachToRear(new FreightWagon(9002, 40000));
+        otherFreightTrain.attachToRear(new FreightWagon(9003, 30000));
+
+        ShuntingPlan plan = new ShuntingPlan()
+                .moveOneWagon(otherFreightTrain, 9001, heavyTrain)
+                .splitAtPosition(otherFreightTrain, 1, heavyTrain);
+        assertTrue(plan.validate());
+        assertFalse(plan.execute());
+        assertEquals(0, heavyTrain.getNumberOfWagons());
+        assertEquals(120000, otherFreightTrain.getTotalMaxWeight());
+
+        heavyTrain.addLocomotive(new Locomotive(63429, 10, 20000));
+        assertTrue(plan.execute());
+        assertEquals(120000, heavyTrain.getTotalMaxWeight());
+    }
+}
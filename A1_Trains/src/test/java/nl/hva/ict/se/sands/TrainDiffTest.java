@@ -0,0 +1,118 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainDiffTest {
+    Train passengerTrain;
+    Train siding;
+
+    @BeforeEach
+    private void setup() {
+        passengerTrain = new Train(new Locomotive(24531, 10), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8007; id++) {
+            passengerTrain.attachToRear(new PassengerWagon(id, 40));
+        }
+        siding = new Train(new Locomotive(1, 10), "Amsterdam", "Amsterdam");
+    }
+
+    private List<Wagon> wagons(int... ids) {
+        List<Wagon> wagons = new ArrayList<>();
+        for (int id : ids) {
+            Wagon wagon = passengerTrain.findWagonById(id);
+            wagons.add(wagon != null ? wagon : new PassengerWagon(id, 20));
+        }
+        return wagons;
+    }
+
+    @Test
+    public void T01_onlyWagonsOutOfOrderShouldMove() {
+        TrainDiff diff = TrainDiff.between(passengerTrain, wagons(8001, 8003, 8002, 8004, 8009, 8005, 8007));
+        assertEquals(5, diff.getNumberOfKeptWagons());
+        assertEquals("[move 8006, move 8002, insert 8002 at 3, insert 8009 at 5]", diff.getOperations().toString());
+
+        assertTrue(diff.apply(siding));
+        assertEquals("[Loc-24531][Wagon-8001][Wagon-8003][Wagon-8002][Wagon-8004][Wagon-8009][Wagon-8005][Wagon-8007]"
+                + " with 7 wagons from Amsterdam to Paris", passengerTrain.toString());
+        assertEquals("[Loc-1][Wagon-8006] with 1 wagons from Amsterdam to Amsterdam", siding.toString());
+    }
+
+    @Test
+    public void T02_aTailThatIsNotInTheTargetShouldBeSplitOff() {
+        TrainDiff diff = TrainDiff.between(passengerTrain, wagons(8002, 8001, 8003));
+        assertEquals("[split at 4, move 8001, insert 8001 at 2]", diff.getOperations().toString());
+        assertTrue(diff.apply(siding));
+        assertEquals(3, passengerTrain.getNumberOfWagons());
+        assertEquals(8002, passengerTrain.getFirstWagon().getId());
+        assertEquals(4, siding.getNumberOfWagons());
+
+        assertEquals(0, TrainDiff.between(passengerTrain, wagons(8002, 8001, 8003)).getNumberOfOperations());
+        assertNull(TrainDiff.between(passengerTrain, wagons(8002, 8001, 8002)));
+    }
+
+    @Test
+    public void T03_aChangedTrainShouldStopTheReconfiguration() {
+        TrainDiff diff = TrainDiff.between(passengerTrain, wagons(8007, 8006, 8005, 8004, 8003, 8002, 8001));
+        assertEquals(6, diff.getNumberOfOperations() / 2);
+        passengerTrain.moveOneWagon(8001, new Train(new Locomotive(2, 1), "Amsterdam", "Paris"));
+        assertFalse(diff.apply(siding));
+    }
+
+    @Test
+    public void T04_largeTrainsShouldReachTheirTarget() {
+        Random random = new Random(2021);
+        Train longTrain = new Train(new Locomotive(1, 200000), "Amsterdam", "Paris");
+        List<Wagon> target = new ArrayList<>();
+        for (int id = 1; id <= 100000; id++) {
+            Wagon wagon = new PassengerWagon(id, random.nextInt(100));
+            longTrain.attachToRear(wagon);
+            if (random.nextInt(100) != 0) {
+                target.add(wagon);
+            }
+        }
+
+        // shuffling a few stretches of the train and adding new wagons
+        for (int k = 0; k < 200; k++) {
+            int from = random.nextInt(target.size() - 20);
+            Collections.shuffle(target.subList(from, from + 20), random);
+            target.add(random.nextInt(target.size()), new PassengerWagon(100000 + k + 1, 10));
+        }
+
+        long start = System.nanoTime();
+        TrainDiff diff = TrainDiff.between(longTrain, target);
+        Train yard = new Train(new Locomotive(2, 100000), "Amsterdam", "Amsterdam");
+        assertTrue(diff.apply(yard));
+        System.out.printf("reconfigured %d wagons with %d operations in %d ms%n",
+                target.size(), diff.getNumberOfOperations(), (System.nanoTime() - start) / 1000000);
+
+        int[] expected = new int[target.size()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = target.get(i).getId();
+        }
+        assertArrayEquals(expected, longTrain.stream().mapToInt(Wagon::getId).toArray());
+        assertEquals(100000 + 200 - target.size(), yard.getNumberOfWagons());
+        assertFalse(longTrain.isPositionIndexed());
+        assertTrue(diff.getNumberOfKeptWagons() > target.size() - 5000);
+    }
+
+    @Test
+    public void T05_targetWagonsShouldBeMatchedById() {
+        Wagon wagon8001 = passengerTrain.findWagonById(8001);
+        List<Wagon> target = wagons(8002, 8003, 8004, 8005, 8006, 8007);
+        target.add(new PassengerWagon(8001, 40));
+
+        TrainDiff diff = TrainDiff.between(passengerTrain, target);
+        assertEquals("[move 8001, insert 8001 at 7]", diff.getOperations().toString());
+        assertTrue(diff.apply(siding));
+        assertEquals(8001, passengerTrain.getLastWagonAttached().getId());
+        assertSame(wagon8001, passengerTrain.getLastWagonAttached());
+        assertEquals(7, passengerTrain.getNumberOfWagons());
+        assertFalse(siding.hasWagons());
+    }
+}
@@ -0,0 +1,251 @@
+import models.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainJournalTest {
+    Path snapshot, journalFile;
+    List<Train> yard;
+    TrainJournal journal;
+
+    @BeforeEach
+    private void setup() throws IOException {
+        snapshot = Files.createTempFile("yard", ".snapshot");
+        journalFile = Files.createTempFile("yard", ".journal");
+        yard = new ArrayList<>();
+        int id = 1;
+        for (int t = 0; t < 6; t++) {
+            Train train = new Train(new Locomotive(1000 + t, 40), "Amsterdam", "Destination-" + t);
+            for (int w = 0; w < 10; w++) {
+                train.attachToRear(t < 3 ? new PassengerWagon(id++, 20 + w) : new FreightWagon(id++, 1000 * w));
+            }
+            yard.add(train);
+        }
+        journal = TrainJournal.start(snapshot, journalFile, yard);
+    }
+
+    @AfterEach
+    private void cleanup() throws IOException {
+        journal.close();
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(journalFile);
+    }
+
+    private void assertYardEquals(List<Train> expected, List<Train> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int t = 0; t < expected.size(); t++) {
+            assertEquals(expected.get(t).toString(), actual.get(t).toString());
+            assertEquals(expected.get(t).getTotalNumberOfSeats(), actual.get(t).getTotalNumberOfSeats());
+            assertEquals(expected.get(t).getTotalMaxWeight(), actual.get(t).getTotalMaxWeight());
+        }
+    }
+
+    @Test
+    public void T01_replayShouldRebuildTheYard() throws IOException {
+        Train outside = new Train(new Locomotive(1, 100), "Amsterdam", "Utrecht");
+        assertTrue(yard.get(0).splitAtPosition(6, yard.get(1)));
+        assertTrue(yard.get(1).moveOneWagon(13, yard.get(2)));
+        yard.get(2).reverse();
+        assertTrue(yard.get(0).insertAtPosition(2, new PassengerWagon(100, 50)));
+        assertTrue(yard.get(0).insertAtFront(yard.get(2).findWagonById(25)));
+        assertTrue(yard.get(3).moveOneWagon(31, outside));
+        assertTrue(outside.attachToRear(new FreightWagon(101, 7000)));
+        assertTrue(yard.get(4).attachToRear(outside.getFirstWagon()));
+        assertFalse(yard.get(4).attachToRear(new PassengerWagon(102, 10)));
+        assertEquals(7, journal.getNumberOfRecords());
+
+        journal.flush();
+        assertYardEquals(yard, TrainJournal.replay(snapshot, journalFile));
+    }
+
+    @Test
+    public void T02_uncommittedRecordsShouldBeIgnored() throws IOException {
+        List<String> before = new ArrayList<>();
+        for (Train train : yard) {
+            before.add(train.toString());
+        }
+        yard.get(0).reverse();
+        yard.get(3).splitAtPosition(2, yard.get(4));
+
+        List<Train> replayed = TrainJournal.replay(snapshot, journalFile);
+        for (int t = 0; t < yard.size(); t++) {
+            assertEquals(before.get(t), replayed.get(t).toString());
+        }
+        journal.flush();
+        assertYardEquals(yard, TrainJournal.replay(snapshot, journalFile));
+    }
+
+    @Test
+    public void T03_randomOperationsShouldBeReplayedExactly() throws IOException {
+        Random random = new Random(2020);
+        int nextId = 1000;
+        for (int i = 0; i < 20000; i++) {
+            Train train = yard.get(random.nextInt(yard.size()));
+            Train other = yard.get(random.nextInt(yard.size()));
+            int position = 1 + random.nextInt(train.getNumberOfWagons() + 1);
+            switch (random.nextInt(5)) {
+                case 0:
+                    Wagon wagon = random.nextBoolean() ? new PassengerWagon(nextId++, 30) : new FreightWagon(nextId++, 500);
+                    train.insertAtPosition(position, wagon);
+                    break;
+                case 1:
+                    Wagon wagonOfOther = other.findWagonAtPosition(1 + random.nextInt(other.getNumberOfWagons() + 1));
+                    if (wagonOfOther != null) {
+                        train.insertAtPosition(position, wagonOfOther);
+                    }
+                    break;
+                case 2:
+                    Wagon moved = train.findWagonAtPosition(position);
+                    if (moved != null) {
+                        train.moveOneWagon(moved.getId(), other);
+                    }
+                    break;
+                case 3:
+                    train.splitAtPosition(position, other);
+                    break;
+                default:
+                    train.reverse();
+            }
+        }
+        journal.flush();
+        assertYardEquals(yard, TrainJournal.replay(snapshot, journalFile));
+    }
+
+    @Test
+    public void T04_uncheckedChangesShouldBeReplayed() throws IOException {
+        // a shunting plan inserts and detaches wagons without the checks of the public operations
+        assertTrue(new ShuntingPlan().attachToRear(yard.get(0), new PassengerWagon(100, 5))
+                .moveOneWagon(yard.get(1), 15, yard.get(2))
+                .splitAtPosition(yard.get(4), 8, yard.get(5))
+                .insertAtPosition(yard.get(2), 3, new PassengerWagon(101, 7))
+                .execute());
+        assertFalse(new ShuntingPlan().moveOneWagon(yard.get(0), 2, yard.get(1))
+                .attachToRear(yard.get(1), new PassengerWagon(11, 5))
+                .execute());
+        assertTrue(yard.get(0).attachToRear(new PassengerWagon(102, 9)));
+
+        ManifestLoader loader = new ManifestLoader();
+        assertTrue(loader.addTrain(yard.get(3)));
+        byte[] manifest = "200,F,500,1003\n201,F,600,1003\n".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(2, loader.load(Channels.newChannel(new ByteArrayInputStream(manifest))));
+
+        assertEquals(13, new WagonPool().releaseAll(yard.get(5)));
+        yard.get(2).setFirstWagon(new PassengerWagon(300, 10));
+        yard.get(1).setFirstWagon(yard.get(0).findWagonById(3));
+        assertTrue(yard.get(5).attachToRear(new FreightWagon(301, 100)));
+
+        journal.flush();
+        assertYardEquals(yard, TrainJournal.replay(snapshot, journalFile));
+    }
+
+    @Test
+    public void T05_trainsSharingAJournalShouldBeChangedConcurrently() throws Exception {
+        Thread[] threads = new Thread[yard.size()];
+        for (int t = 0; t < threads.length; t++) {
+            Train train = yard.get(t);
+            int firstId = 100000 * (t + 1);
+            threads[t] = new Thread(() -> {
+                Random random = new Random(firstId);
+                Train outside = new Train(new Locomotive(firstId, 1000000), "Amsterdam", "Utrecht");
+                for (int i = 0; i < 5000; i++) {
+                    int position = 1 + random.nextInt(train.getNumberOfWagons() + 1);
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            train.insertAtPosition(position, train.isFreightTrain()
+                                    ? new FreightWagon(firstId + i, 500) : new PassengerWagon(firstId + i, 30));
+                            break;
+                        case 1:
+                            train.splitAtPosition(position, outside);
+                            break;
+                        default:
+                            train.reverse();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        journal.flush();
+        assertYardEquals(yard, TrainJournal.replay(snapshot, journalFile));
+    }
+
+    @Test
+    public void T06_sortedAndMergedTrainsShouldBeReplayed() throws IOException {
+        yard.get(0).sort(wagon -> -wagon.getId());
+        assertTrue(yard.get(0).splitAtPosition(2, yard.get(1)));
+        yard.get(1).sort(Train.SEATS);
+        yard.get(2).sort(Train.SEATS);
+
+        Train outside = new Train(new Locomotive(1, 100), "Amsterdam", "Utrecht");
+        outside.attachToRear(new PassengerWagon(200, 21));
+        outside.attachToRear(new PassengerWagon(201, 27));
+        assertTrue(yard.get(1).merge(Train.SEATS, yard.get(2), outside));
+        assertEquals(31, yard.get(1).getNumberOfWagons());
+        assertFalse(yard.get(2).hasWagons());
+        assertEquals(7, journal.getNumberOfRecords());
+
+        journal.flush();
+        assertYardEquals(yard, TrainJournal.replay(snapshot, journalFile));
+    }
+
+    @Test
+    public void T07_wagonsChangingJournalsShouldBeReplayed() throws IOException {
+        // a train without a journal takes wagons from trains of the yard
+        Train outside = new Train(new Locomotive(1, 100), "Amsterdam", "Utrecht");
+        assertTrue(outside.attachToRear(yard.get(0).findWagonById(3)));
+        assertTrue(outside.insertAtFront(yard.get(1).findWagonById(18)));
+        outside.setFirstWagon(yard.get(2).findWagonById(29));
+        assertEquals(2, yard.get(0).getNumberOfWagons());
+
+        // the trains of two yards exchange wagons
+        Path otherSnapshot = Files.createTempFile("yard", ".snapshot");
+        Path otherJournalFile = Files.createTempFile("yard", ".journal");
+        Train otherTrain = new Train(new Locomotive(2000, 40), "Rotterdam", "Duisburg");
+        otherTrain.attachToRear(new FreightWagon(500, 2500));
+        List<Train> otherYard = List.of(otherTrain);
+        try (TrainJournal otherJournal = TrainJournal.start(otherSnapshot, otherJournalFile, otherYard)) {
+            assertTrue(yard.get(4).splitAtPosition(9, otherTrain));
+            assertTrue(otherTrain.moveOneWagon(500, yard.get(5)));
+            assertTrue(yard.get(3).attachToRear(otherTrain.findWagonById(49)));
+        }
+
+        journal.flush();
+        assertYardEquals(yard, TrainJournal.replay(snapshot, journalFile));
+        assertYardEquals(otherYard, TrainJournal.replay(otherSnapshot, otherJournalFile));
+        Files.deleteIfExists(otherSnapshot);
+        Files.deleteIfExists(otherJournalFile);
+    }
+
+    @Test
+    public void T08_uncheckedChangesShouldBeRecordedByWagonId() throws IOException {
+        yard.get(0).reverse();
+        assertTrue(new ShuntingPlan().insertAtFront(yard.get(0), new PassengerWagon(100, 5))
+                .insertAtPosition(yard.get(0), 4, new PassengerWagon(101, 7))
+                .splitAtPosition(yard.get(0), 9, yard.get(1))
+                .execute());
+        assertFalse(new ShuntingPlan().insertAtFront(yard.get(2), new PassengerWagon(102, 9))
+                .insertAtPosition(yard.get(2), 6, new PassengerWagon(103, 9))
+                .attachToRear(yard.get(2), new PassengerWagon(21, 5))
+                .execute());
+        assertEquals(100, yard.get(0).getFirstWagon().getId());
+        assertEquals(10, yard.get(2).getNumberOfWagons());
+
+        journal.flush();
+        assertYardEquals(yard, TrainJournal.replay(snapshot, journalFile));
+    }
+}
@@ -0,0 +1,78 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainMetricsTest {
+    TrainMetrics metrics;
+    Train passengerTrain, otherTrain;
+
+    @BeforeEach
+    private void setup() {
+        metrics = new TrainMetrics();
+        passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        otherTrain = new Train(new Locomotive(24532, 7), "Amsterdam", "Paris");
+        passengerTrain.setListener(metrics);
+        otherTrain.setListener(metrics);
+    }
+
+    @Test
+    public void T01_everyOperationShouldBeCounted() {
+        for (int id = 8001; id <= 8005; id++) {
+            assertTrue(passengerTrain.attachToRear(new PassengerWagon(id, 40)));
+        }
+        assertFalse(passengerTrain.attachToRear(new FreightWagon(9001, 1000)));
+        assertTrue(passengerTrain.insertAtFront(new PassengerWagon(8006, 40)));
+        assertTrue(passengerTrain.insertAtPosition(2, new PassengerWagon(8007, 40)));
+        assertTrue(passengerTrain.moveOneWagon(8003, otherTrain));
+        assertFalse(passengerTrain.moveOneWagon(8003, otherTrain));
+        assertTrue(passengerTrain.splitAtPosition(5, otherTrain));
+        passengerTrain.reverse();
+        passengerTrain.sort(Train.SEATS);
+        assertTrue(passengerTrain.merge(Train.SEATS, otherTrain));
+        assertFalse(passengerTrain.merge(Train.SEATS, passengerTrain));
+        assertNotNull(passengerTrain.findWagonById(8001));
+        assertNull(passengerTrain.findWagonAtPosition(10));
+
+        assertEquals(6, metrics.getNumberOfOperations(TrainListener.Operation.ATTACH));
+        assertEquals(1, metrics.getNumberOfFailures(TrainListener.Operation.ATTACH));
+        assertEquals(2, metrics.getNumberOfOperations(TrainListener.Operation.INSERT));
+        assertEquals(2, metrics.getNumberOfOperations(TrainListener.Operation.MOVE));
+        assertEquals(1, metrics.getNumberOfFailures(TrainListener.Operation.MOVE));
+        assertEquals(1, metrics.getNumberOfOperations(TrainListener.Operation.SPLIT));
+        assertEquals(1, metrics.getNumberOfOperations(TrainListener.Operation.REVERSE));
+        assertEquals(1, metrics.getNumberOfOperations(TrainListener.Operation.SORT));
+        assertEquals(2, metrics.getNumberOfOperations(TrainListener.Operation.MERGE));
+        assertEquals(1, metrics.getNumberOfFailures(TrainListener.Operation.MERGE));
+        // lookups inside the other operations are not counted
+        assertEquals(2, metrics.getNumberOfOperations(TrainListener.Operation.LOOKUP));
+        assertEquals(1, metrics.getNumberOfFailures(TrainListener.Operation.LOOKUP));
+    }
+
+    @Test
+    public void T02_latenciesShouldBeKeptInHistograms() {
+        for (int id = 1; id <= 7; id++) {
+            passengerTrain.attachToRear(new PassengerWagon(id, 10));
+        }
+        long[] histogram = metrics.getLatencyHistogram(TrainListener.Operation.ATTACH);
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        assertEquals(7, total);
+        assertTrue(metrics.getTotalNanos(TrainListener.Operation.ATTACH) > 0);
+        assertTrue(metrics.getMeanNanos(TrainListener.Operation.ATTACH) > 0);
+        long median = metrics.getPercentileNanos(TrainListener.Operation.ATTACH, 50);
+        assertTrue(median > 0);
+        assertTrue(metrics.getPercentileNanos(TrainListener.Operation.ATTACH, 100) >= median);
+        assertEquals(0, metrics.getPercentileNanos(TrainListener.Operation.SPLIT, 99));
+        assertTrue(metrics.toString().startsWith("ATTACH: 7 operations, 0 failed"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getNumberOfOperations(TrainListener.Operation.ATTACH));
+        passengerTrain.setListener(null);
+        passengerTrain.reverse();
+        assertEquals(0, metrics.getNumberOfOperations(TrainListener.Operation.REVERSE));
+    }
+}
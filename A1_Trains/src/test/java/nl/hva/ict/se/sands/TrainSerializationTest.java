@@ -0,0 +1,137 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainSerializationTest {
+    Train passengerTrain, trainWithoutWagons, freightTrain;
+
+    @BeforeEach
+    private void setup() {
+        passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        passengerTrain.attachToRear(new PassengerWagon(8001, 36));
+        passengerTrain.attachToRear(new PassengerWagon(8002, 18));
+        passengerTrain.attachToRear(new PassengerWagon(8003, 48));
+        passengerTrain.attachToRear(new PassengerWagon(7999, 44));
+        trainWithoutWagons = new Train(new Locomotive(29123, 3), "Amsterdam", "M\u00fcnchen");
+        freightTrain = new Train(new Locomotive(63427, 50), "Amsterdam", null);
+        freightTrain.attachToRear(new FreightWagon(9001, 50000));
+        freightTrain.attachToRear(new FreightWagon(9002, 60000));
+        freightTrain.reverse();
+    }
+
+    private static byte[] write(List<Train> trains) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TrainWriter writer = new TrainWriter(bytes)) {
+            for (Train train : trains) {
+                writer.writeTrain(train);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void T01_trainsShouldBeRestoredExactly() throws IOException {
+        List<Train> trains = List.of(passengerTrain, trainWithoutWagons, freightTrain);
+        List<Train> restored = TrainReader.readAll(new ByteArrayInputStream(write(trains)));
+
+        assertEquals(trains.size(), restored.size());
+        for (int i = 0; i < trains.size(); i++) {
+            assertEquals(trains.get(i).toString(), restored.get(i).toString());
+            assertEquals(trains.get(i).getEngine().getMaxWagons(), restored.get(i).getEngine().getMaxWagons());
+            assertEquals(trains.get(i).getTotalNumberOfSeats(), restored.get(i).getTotalNumberOfSeats());
+            assertEquals(trains.get(i).getTotalMaxWeight(), restored.get(i).getTotalMaxWeight());
+        }
+        assertNull(restored.get(2).getDestination());
+        assertEquals(9002, restored.get(2).getFirstWagon().getId());
+    }
+
+    @Test
+    public void T02_consecutiveIdsShouldTakeFewBytes() throws IOException {
+        Train longTrain = new Train(new Locomotive(1, 1000), "Amsterdam", "Paris");
+        for (int id = 1000000; id < 1001000; id++) {
+            longTrain.attachToRear(new PassengerWagon(id, 50));
+        }
+
+        // type, id difference and seats take one byte each for every wagon
+        byte[] bytes = write(List.of(longTrain));
+        assertTrue(bytes.length < 3 * 1000 + 64);
+        assertEquals(longTrain.toString(), TrainReader.readAll(new ByteArrayInputStream(bytes)).get(0).toString());
+    }
+
+    @Test
+    public void T03_invalidDataShouldBeRejected() throws IOException {
+        assertThrows(IOException.class, () -> new TrainReader(new ByteArrayInputStream(new byte[]{1, 2, 3, 4})));
+
+        byte[] bytes = write(List.of(passengerTrain));
+        byte[] truncated = java.util.Arrays.copyOf(bytes, bytes.length - 4);
+        TrainReader reader = new TrainReader(new ByteArrayInputStream(truncated));
+        assertThrows(IOException.class, reader::readTrain);
+    }
+
+    @Test
+    public void T04_aLargeYardShouldMakeTheRoundTrip() throws IOException {
+        List<Train> yard = new ArrayList<>();
+        int id = 1;
+        for (int t = 0; t < 100; t++) {
+            Train train = new Train(new Locomotive(t, 10000), "Amsterdam", "Destination-" + t);
+            for (int w = 0; w < 10000; w++) {
+                train.attachToRear(t % 2 == 0 ? new PassengerWagon(id++, w % 80) : new FreightWagon(id++, w * 7));
+            }
+            yard.add(train);
+        }
+
+        List<Train> restored = TrainReader.readAll(new ByteArrayInputStream(write(yard)));
+        assertEquals(yard.size(), restored.size());
+        for (int t = 0; t < yard.size(); t++) {
+            assertEquals(yard.get(t).toString(), restored.get(t).toString());
+        }
+    }
+
+    @Test
+    public void T05_theConsistShouldBeRestoredAndRespected() throws IOException {
+        Train doubleHeaded = new Train(new Locomotive(63427, 2, 60000), "Amsterdam", "Duisburg");
+        doubleHeaded.addLocomotive(new Locomotive(63428, 1, 50000));
+        doubleHeaded.attachToRear(new FreightWagon(9001, 50000));
+        doubleHeaded.attachToRear(new FreightWagon(9002, 60000));
+
+        Train restored = TrainReader.readAll(new ByteArrayInputStream(write(List.of(doubleHeaded)))).get(0);
+        assertEquals(doubleHeaded.toString(), restored.toString());
+        assertEquals(2, restored.getNumberOfLocomotives());
+        assertEquals(63428, restored.getLocomotives().get(1).getLocNumber());
+        assertEquals(3, restored.getMaxWagons());
+        assertEquals(110000, restored.getMaxWeight());
+
+        // a train that is too heavy for its locomotives cannot be read back
+        Train overloaded = new Train(new Locomotive(63429, 2, 100000), "Amsterdam", "Duisburg");
+        overloaded.setFirstWagon(doubleHeaded.getFirstWagon());
+        TrainReader reader = new TrainReader(new ByteArrayInputStream(write(List.of(overloaded))));
+        assertThrows(IOException.class, reader::readTrain);
+    }
+
+    @Test
+    public void T06_mixedTypesAndRepeatedIdsShouldBeRejected() throws IOException {
+        // both trains are composed without the checks of attachToRear
+        Wagon passengerWagon = new PassengerWagon(8001, 36);
+        new FreightWagon(9001, 50000).attachTo(passengerWagon);
+        Train mixed = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        mixed.setFirstWagon(passengerWagon);
+        TrainReader reader = new TrainReader(new ByteArrayInputStream(write(List.of(mixed))));
+        assertThrows(IOException.class, reader::readTrain);
+
+        Wagon wagon = new PassengerWagon(8001, 36);
+        new PassengerWagon(8002, 18).attachTo(wagon);
+        new PassengerWagon(8001, 48).attachTo(wagon.getNextWagon());
+        Train repeated = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        repeated.setFirstWagon(wagon);
+        reader = new TrainReader(new ByteArrayInputStream(write(List.of(repeated))));
+        assertThrows(IOException.class, reader::readTrain);
+    }
+}
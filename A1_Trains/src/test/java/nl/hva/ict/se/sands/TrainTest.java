@@ -227,4 +227,321 @@ public class TrainTest {
         }
         assertEquals(27006, sumIds);
     }
+
+    @Test
+    public void T20_bookkeepingFollowsEveryMutation() {
+        assertTrue(passengerTrain.splitAtPosition(5, trainWithoutWagons));
+        assertEquals(4, passengerTrain.getNumberOfWagons());
+        assertEquals(8004, passengerTrain.getLastWagonAttached().getId());
+        assertEquals(126, passengerTrain.getTotalNumberOfSeats());
+        assertEquals(128, trainWithoutWagons.getTotalNumberOfSeats());
+
+        assertTrue(passengerTrain.insertAtPosition(2, passengerWagon1));
+        assertEquals(7, passengerTrain.getNumberOfWagons());
+        assertEquals(8011, passengerTrain.findWagonAtPosition(2).getId());
+        assertEquals(8002, passengerTrain.findWagonAtPosition(5).getId());
+        assertEquals(8001, passengerTrain.findWagonAtPosition(4).getPreviousWagon().getPreviousWagon().getPreviousWagon().getId());
+        assertEquals(276, passengerTrain.getTotalNumberOfSeats());
+
+        passengerTrain.reverse();
+        assertEquals(8004, passengerTrain.getFirstWagon().getId());
+        assertEquals(8001, passengerTrain.getLastWagonAttached().getId());
+        assertEquals(276, passengerTrain.getTotalNumberOfSeats());
+    }
+
+    @Test
+    public void T20_attachingAWagonOfAnotherTrainTakesItFromThatTrain() {
+        assertTrue(trainWithoutWagons.attachToRear(passengerTrain.findWagonAtPosition(6)));
+        assertEquals(2, trainWithoutWagons.getNumberOfWagons());
+        assertEquals(84, trainWithoutWagons.getTotalNumberOfSeats());
+        assertEquals(5, passengerTrain.getNumberOfWagons());
+        assertEquals(8005, passengerTrain.getLastWagonAttached().getId());
+        assertFalse(passengerTrain.getLastWagonAttached().hasNextWagon());
+        assertEquals(170, passengerTrain.getTotalNumberOfSeats());
+    }
+
+    @Test
+    public void T21_positionIndexedTrainShouldMatchPlainTrain() {
+        Train plain = new Train(new Locomotive(1, 1000), "Amsterdam", "Paris");
+        Train indexed = new Train(new Locomotive(2, 1000), "Amsterdam", "Paris");
+        Train plainYard = new Train(new Locomotive(3, 1000), "Amsterdam", "Paris");
+        Train indexedYard = new Train(new Locomotive(4, 1000), "Amsterdam", "Paris");
+        indexed.setPositionIndexed(true);
+        indexedYard.setPositionIndexed(true);
+        java.util.Random random = new java.util.Random(42);
+
+        for (int id = 1; id <= 2000; id++) {
+            int position = 1 + random.nextInt(plain.getNumberOfWagons() + 1);
+            switch (random.nextInt(5)) {
+                case 0:
+                    assertEquals(plain.insertAtPosition(position, new PassengerWagon(id, id % 50)),
+                            indexed.insertAtPosition(position, new PassengerWagon(id, id % 50)));
+                    break;
+                case 1:
+                    assertEquals(plain.splitAtPosition(position, plainYard),
+                            indexed.splitAtPosition(position, indexedYard));
+                    break;
+                case 2:
+                    int wagonId = 1 + random.nextInt(id);
+                    assertEquals(plainYard.moveOneWagon(wagonId, plain), indexedYard.moveOneWagon(wagonId, indexed));
+                    break;
+                case 3:
+                    plain.reverse();
+                    indexed.reverse();
+                    break;
+                default:
+                    assertEquals(plain.attachToRear(new PassengerWagon(id, 1)), indexed.attachToRear(new PassengerWagon(id, 1)));
+            }
+        }
+
+        assertEquals(plain.getNumberOfWagons(), indexed.getNumberOfWagons());
+        for (int position = 1; position <= plain.getNumberOfWagons(); position++) {
+            assertEquals(plain.findWagonAtPosition(position).getId(), indexed.findWagonAtPosition(position).getId());
+        }
+        for (int position = 1; position <= plainYard.getNumberOfWagons(); position++) {
+            assertEquals(plainYard.findWagonAtPosition(position).getId(), indexedYard.findWagonAtPosition(position).getId());
+        }
+        assertEquals(plain.getTotalNumberOfSeats(), indexed.getTotalNumberOfSeats());
+    }
+
+    @Test
+    public void T22_wagonLinksFollowTheOrientationOfTheTrain() {
+        passengerTrain.reverse();
+        assertEquals(8007, passengerTrain.getFirstWagon().getId());
+        assertEquals(8006, passengerTrain.getFirstWagon().getNextWagon().getId());
+        assertFalse(passengerTrain.getFirstWagon().hasPreviousWagon());
+        assertFalse(passengerTrain.getLastWagonAttached().hasNextWagon());
+
+        // the moved wagons keep their order once they leave the reversed train
+        assertTrue(passengerTrain.splitAtPosition(5, trainWithoutWagons));
+        assertEquals(8003, trainWithoutWagons.getFirstWagon().getId());
+        assertEquals(8002, trainWithoutWagons.getFirstWagon().getNextWagon().getId());
+        assertEquals(8001, trainWithoutWagons.getLastWagonAttached().getId());
+        assertEquals(8002, trainWithoutWagons.getLastWagonAttached().getPreviousWagon().getId());
+
+        passengerTrain.reverse();
+        assertTrue(passengerTrain.attachToRear(trainWithoutWagons.getFirstWagon()));
+        int[] expected = {8004, 8005, 8006, 8007, 8003, 8002, 8001};
+        int position = 0;
+        for (Wagon wagon : passengerTrain) {
+            assertEquals(expected[position++], wagon.getId());
+        }
+        assertEquals(8003, passengerTrain.findWagonAtPosition(6).getPreviousWagon().getId());
+    }
+
+    @Test
+    public void T23_iteratorShouldFailFastOnChanges() {
+        java.util.Iterator<Wagon> wagons = passengerTrain.iterator();
+        wagons.next();
+        passengerTrain.reverse();
+        assertThrows(java.util.ConcurrentModificationException.class, wagons::next);
+
+        java.util.Iterator<Wagon> emptyWagons = trainWithoutWagons.iterator();
+        assertFalse(emptyWagons.hasNext());
+        assertThrows(java.util.NoSuchElementException.class, emptyWagons::next);
+    }
+
+    @Test
+    public void T23_parallelStreamsShouldSeeEveryWagonOnce() {
+        Train longTrain = new Train(new Locomotive(1, 100000), "Amsterdam", "Paris");
+        for (int id = 1; id <= 100000; id++) {
+            longTrain.attachToRear(new PassengerWagon(id, id % 100));
+        }
+
+        assertEquals(longTrain.getTotalNumberOfSeats(), longTrain.seats().parallel().sum());
+        assertEquals(5000050000L, longTrain.stream().parallel().mapToLong(Wagon::getId).sum());
+        longTrain.setPositionIndexed(true);
+        longTrain.reverse();
+        assertEquals(5000050000L, longTrain.stream().parallel().mapToLong(Wagon::getId).sum());
+        assertEquals(100000, longTrain.stream().parallel().map(Wagon::getId).distinct().count());
+        assertEquals(100000, longTrain.spliterator().getExactSizeIfKnown());
+        assertEquals(0, freightTrain.seats().sum());
+        assertEquals(120000, freightTrain.maxWeights().sum());
+    }
+
+    @Test
+    public void T24_aggregatesShouldCoverTheRequestedPositions() {
+        java.util.IntSummaryStatistics seats = passengerTrain.aggregate(Train.SEATS);
+        assertEquals(7, seats.getCount());
+        assertEquals(254, seats.getSum());
+        assertEquals(18, seats.getMin());
+        assertEquals(44, seats.getMax());
+
+        seats = passengerTrain.aggregate(Train.SEATS, 3, 5);
+        assertEquals(106, seats.getSum());
+        assertEquals(18, seats.getMin());
+        assertEquals(0, passengerTrain.aggregate(Train.SEATS, 3, 2).getCount());
+        assertNull(passengerTrain.aggregate(Train.SEATS, 0, 2));
+        assertNull(passengerTrain.aggregate(Train.SEATS, 3, 8));
+        assertEquals(30000, freightTrain.aggregate(Train.MAX_WEIGHT).getMin());
+        assertEquals(0, trainWithoutWagons.aggregate(Wagon::getId).getCount());
+
+        assertArrayEquals(new int[]{0, 1, 0, 2, 4}, passengerTrain.histogram(Train.SEATS, 10));
+        assertArrayEquals(new int[]{0, 0, 0, 0, 3}, passengerTrain.histogram(Train.SEATS, 10, 5, 7));
+        assertNull(passengerTrain.histogram(Train.SEATS, 10, 5, 9));
+        assertThrows(IllegalArgumentException.class, () -> passengerTrain.histogram(Train.SEATS, 0));
+    }
+
+    @Test
+    public void T24_cachedAggregatesShouldFollowChanges() {
+        java.util.IntSummaryStatistics seats = passengerTrain.aggregate(Train.SEATS, 1, 3);
+        seats.accept(1000);
+        assertEquals(82, passengerTrain.aggregate(Train.SEATS, 1, 3).getSum());
+
+        passengerTrain.reverse();
+        assertEquals(128, passengerTrain.aggregate(Train.SEATS, 1, 3).getSum());
+        assertTrue(passengerTrain.moveOneWagon(8007, trainWithoutWagons));
+        assertEquals(132, passengerTrain.aggregate(Train.SEATS, 1, 3).getSum());
+        assertEquals(214, passengerTrain.aggregate(Train.SEATS).getSum());
+    }
+
+    @Test
+    public void T25_rangeQueriesShouldAnswerSumsAndMaxima() {
+        passengerTrain.setPositionIndexed(true);
+        assertEquals(106, passengerTrain.rangeSum(Train.SEATS, 3, 5));
+        assertEquals(44, passengerTrain.rangeMax(Train.SEATS, 3, 5));
+        assertEquals(0, passengerTrain.rangeSum(Train.MAX_WEIGHT, 1, 7));
+        assertEquals(0, passengerTrain.rangeSum(Train.SEATS, 4, 3));
+        assertEquals(Integer.MIN_VALUE, passengerTrain.rangeMax(Train.SEATS, 4, 3));
+        assertEquals(40000, freightTrain.rangeMax(Train.MAX_WEIGHT, 2, 3));
+        assertEquals(8007, passengerTrain.rangeMax(Wagon::getId, 1, 7));
+        assertThrows(IndexOutOfBoundsException.class, () -> passengerTrain.rangeSum(Train.SEATS, 0, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> passengerTrain.rangeMax(Train.SEATS, 2, 8));
+    }
+
+    @Test
+    public void T25_indexedRangeQueriesShouldFollowChanges() {
+        java.util.Random random = new java.util.Random(2020);
+        Train indexed = new Train(new Locomotive(1, 5000), "Amsterdam", "Paris");
+        Train plain = new Train(new Locomotive(2, 5000), "Amsterdam", "Paris");
+        Train indexedSide = new Train(new Locomotive(3, 5000), "Amsterdam", "London");
+        Train plainSide = new Train(new Locomotive(4, 5000), "Amsterdam", "London");
+        indexed.setPositionIndexed(true);
+        indexedSide.setPositionIndexed(true);
+
+        for (int id = 1; id <= 3000; id++) {
+            int position = 1 + random.nextInt(indexed.getNumberOfWagons() + 1);
+            int seats = random.nextInt(100);
+            assertTrue(indexed.insertAtPosition(position, new PassengerWagon(id, seats)));
+            assertTrue(plain.insertAtPosition(position, new PassengerWagon(id, seats)));
+
+            if (id % 100 == 0) {
+                int split = 1 + random.nextInt(indexed.getNumberOfWagons());
+                assertTrue(indexed.splitAtPosition(split, indexedSide));
+                assertTrue(plain.splitAtPosition(split, plainSide));
+                indexed.reverse();
+                plain.reverse();
+                assertTrue(indexedSide.splitAtPosition(1, indexed));
+                assertTrue(plainSide.splitAtPosition(1, plain));
+            }
+            if (id % 10 == 0) {
+                int from = 1 + random.nextInt(indexed.getNumberOfWagons());
+                int to = from - 1 + random.nextInt(indexed.getNumberOfWagons() - from + 2);
+                assertEquals(plain.rangeSum(Train.SEATS, from, to), indexed.rangeSum(Train.SEATS, from, to));
+                assertEquals(plain.rangeMax(Train.SEATS, from, to), indexed.rangeMax(Train.SEATS, from, to));
+            }
+        }
+        assertEquals(indexed.getTotalNumberOfSeats(), indexed.rangeSum(Train.SEATS, 1, 3000));
+    }
+
+    @Test
+    public void T26_aConsistShouldAddUpTheCapacityOfItsLocomotives() {
+        Locomotive pusher = new Locomotive(24532, 3);
+        assertTrue(passengerTrain.addLocomotive(pusher));
+        assertFalse(passengerTrain.addLocomotive(pusher));
+        assertEquals(2, passengerTrain.getNumberOfLocomotives());
+        assertEquals(10, passengerTrain.getMaxWagons());
+        assertTrue(passengerTrain.attachToRear(passengerWagon1));
+        assertEquals(10, passengerTrain.getNumberOfWagons());
+
+        // the remaining engine cannot pull all wagons alone
+        Locomotive rembrandt = passengerTrain.getEngine();
+        assertFalse(passengerTrain.removeLocomotive(rembrandt));
+        assertFalse(passengerTrain.removeLocomotive(pusher));
+        assertTrue(passengerTrain.splitAtPosition(4, trainWithoutWagons));
+        assertTrue(passengerTrain.removeLocomotive(rembrandt));
+        assertSame(pusher, passengerTrain.getEngine());
+        assertFalse(passengerTrain.removeLocomotive(pusher));
+        assertEquals(3, passengerTrain.getMaxWagons());
+        assertFalse(passengerTrain.attachToRear(new PassengerWagon(8021, 10)));
+        assertTrue(passengerTrain.toString().startsWith("[Loc-24532][Wagon-8001]"));
+    }
+
+    @Test
+    public void T26_aConsistShouldRespectItsWeightLimit() {
+        Train heavyTrain = new Train(new Locomotive(63428, 50, 100000), "Amsterdam", "Berlin");
+        assertEquals(100000, heavyTrain.getMaxWeight());
+        assertEquals(Long.MAX_VALUE, freightTrain.getMaxWeight());
+        assertFalse(heavyTrain.attachToRear(freightWagon1));
+        assertTrue(heavyTrain.attachToRear(new FreightWagon(9021, 60000)));
+        assertFalse(freightTrain.moveOneWagon(9001, heavyTrain));
+        assertTrue(freightTrain.moveOneWagon(9003, heavyTrain));
+
+        assertTrue(heavyTrain.addLocomotive(new Locomotive(63429, 50, 60000)));
+        assertEquals(160000, heavyTrain.getMaxWeight());
+        assertTrue(freightTrain.moveOneWagon(9001, heavyTrain));
+        assertEquals(140000, heavyTrain.getTotalMaxWeight());
+        assertFalse(heavyTrain.removeLocomotive(heavyTrain.getEngine()));
+
+        // a locomotive without weight limit lifts the limit of the consist
+        assertTrue(heavyTrain.addLocomotive(new Locomotive(63430, 1)));
+        assertEquals(Long.MAX_VALUE, heavyTrain.getMaxWeight());
+        assertTrue(freightTrain.moveOneWagon(9002, heavyTrain));
+        assertEquals(4, heavyTrain.getNumberOfWagons());
+    }
+
+    @Test
+    public void T27_sortingShouldOrderTheWagonsStably() {
+        passengerTrain.reverse();
+        passengerTrain.sort(Train.SEATS);
+        assertEquals("[Loc-24531][Wagon-8003][Wagon-8002][Wagon-8001][Wagon-8007][Wagon-8006][Wagon-8005][Wagon-8004]"
+                + " with 7 wagons from Amsterdam to Paris", passengerTrain.toString());
+        assertEquals(8004, passengerTrain.getLastWagonAttached().getId());
+        assertEquals(8005, passengerTrain.getLastWagonAttached().getPreviousWagon().getId());
+        assertNull(TrainVerifier.check(passengerTrain));
+
+        freightTrain.setPositionIndexed(true);
+        freightTrain.sort(Train.MAX_WEIGHT);
+        assertEquals(9003, freightTrain.findWagonAtPosition(1).getId());
+        assertEquals(9001, freightTrain.findWagonAtPosition(3).getId());
+        assertNull(TrainVerifier.check(freightTrain));
+
+        java.util.Random random = new java.util.Random(2024);
+        Train longTrain = new Train(new Locomotive(1, 100000), "Amsterdam", "Paris");
+        for (int id = 1; id <= 100000; id++) {
+            longTrain.attachToRear(new PassengerWagon(id, random.nextInt(1000)));
+        }
+        longTrain.sort(Train.SEATS);
+        int[] seats = longTrain.seats().toArray();
+        for (int i = 1; i < seats.length; i++) {
+            assertTrue(seats[i - 1] <= seats[i]);
+        }
+        assertNull(TrainVerifier.check(longTrain));
+    }
+
+    @Test
+    public void T27_mergingShouldKeepTheWagonsSorted() {
+        Train otherFreightTrain = new Train(new Locomotive(63428, 50), "Amsterdam", "Berlin");
+        otherFreightTrain.attachToRear(freightWagon1);
+        Train thirdFreightTrain = new Train(new Locomotive(63429, 50), "Amsterdam", "Berlin");
+        thirdFreightTrain.attachToRear(new FreightWagon(9021, 35000));
+        thirdFreightTrain.attachToRear(new FreightWagon(9022, 45000));
+        freightTrain.sort(Train.MAX_WEIGHT);
+
+        assertFalse(freightTrain.merge(Train.MAX_WEIGHT, passengerTrain));
+        assertFalse(freightTrain.merge(Train.MAX_WEIGHT, otherFreightTrain, otherFreightTrain));
+        assertFalse(freightTrain.merge(Train.MAX_WEIGHT, freightTrain));
+        assertTrue(freightTrain.merge(Train.MAX_WEIGHT, otherFreightTrain, trainWithoutWagons, thirdFreightTrain));
+
+        assertEquals("[Loc-63427][Wagon-9003][Wagon-9021][Wagon-9002][Wagon-9022][Wagon-9001][Wagon-9011][Wagon-9012]"
+                + " with 7 wagons from Amsterdam to Berlin", freightTrain.toString());
+        assertFalse(otherFreightTrain.hasWagons());
+        assertFalse(thirdFreightTrain.hasWagons());
+        assertEquals(320000, freightTrain.getTotalMaxWeight());
+        assertNull(TrainVerifier.check(freightTrain));
+
+        Train tooSmall = new Train(new Locomotive(1, 2), "Amsterdam", "Berlin");
+        assertFalse(tooSmall.merge(Train.MAX_WEIGHT, freightTrain));
+        assertEquals(7, freightTrain.getNumberOfWagons());
+    }
 }
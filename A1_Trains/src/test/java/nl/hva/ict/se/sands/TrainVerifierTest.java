@@ -0,0 +1,99 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainVerifierTest {
+    TrainVerifier verifier;
+    Train passengerTrain;
+    Train otherTrain;
+
+    @BeforeEach
+    private void setup() {
+        verifier = new TrainVerifier(1, false);
+        passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        otherTrain = new Train(new Locomotive(24532, 7), "Amsterdam", "Paris");
+        passengerTrain.setVerifier(verifier);
+        otherTrain.setVerifier(verifier);
+        for (int id = 8001; id <= 8005; id++) {
+            passengerTrain.attachToRear(new PassengerWagon(id, 40));
+        }
+    }
+
+    @Test
+    public void T01_validChangesShouldPassVerification() {
+        passengerTrain.reverse();
+        assertTrue(passengerTrain.insertAtPosition(3, new PassengerWagon(8006, 20)));
+        assertTrue(passengerTrain.moveOneWagon(8002, otherTrain));
+        assertTrue(passengerTrain.splitAtPosition(4, otherTrain));
+        passengerTrain.setPositionIndexed(true);
+        assertTrue(passengerTrain.insertAtFront(new PassengerWagon(8007, 30)));
+
+        assertTrue(verifier.getNumberOfVerifications() >= 10);
+        assertEquals(0, verifier.getNumberOfViolations());
+        assertNull(verifier.getLastViolation());
+        assertNull(TrainVerifier.check(passengerTrain));
+        assertNull(TrainVerifier.check(otherTrain));
+    }
+
+    @Test
+    public void T02_aCycleShouldBeDetected() {
+        Wagon last = passengerTrain.getLastWagonAttached();
+        last.setNextWagon(passengerTrain.findWagonById(8003));
+        assertTrue(TrainVerifier.hasCycle(passengerTrain.getFirstWagon()));
+
+        assertFalse(verifier.verify(passengerTrain));
+        assertEquals(1, verifier.getNumberOfCycles());
+        assertEquals(1, verifier.getNumberOfViolations());
+        assertNotNull(verifier.getLastViolation());
+        assertThrows(IllegalStateException.class, () -> new TrainVerifier(0, true).verify(passengerTrain));
+    }
+
+    @Test
+    public void T03_aCyclicSequenceShouldBeRefused() {
+        Wagon first = new PassengerWagon(8011, 40);
+        Wagon second = new PassengerWagon(8012, 40);
+        second.attachTo(first);
+        first.setPreviousWagon(second);
+        second.setNextWagon(first);
+
+        assertFalse(otherTrain.attachToRear(first));
+        assertFalse(otherTrain.insertAtPosition(1, second));
+        otherTrain.setFirstWagon(first);
+        assertFalse(otherTrain.hasWagons());
+        assertEquals(3, verifier.getNumberOfCycles());
+    }
+
+    @Test
+    public void T04_brokenLinksAndBookkeepingShouldBeDetected() {
+        Wagon wagon = passengerTrain.findWagonById(8003);
+        wagon.setPreviousWagon(null);
+        assertFalse(verifier.verify(passengerTrain));
+        assertEquals(0, verifier.getNumberOfCycles());
+        assertTrue(verifier.getLastViolation().contains("[Wagon-8002]"));
+
+        wagon.setPreviousWagon(passengerTrain.findWagonById(8002));
+        assertTrue(verifier.verify(passengerTrain));
+        passengerTrain.getLastWagonAttached().setNextWagon(new PassengerWagon(8009, 40));
+        assertNotNull(TrainVerifier.check(passengerTrain));
+    }
+
+    @Test
+    public void T05_samplingShouldVerifyOnlyPartOfTheChanges() {
+        TrainVerifier sampling = new TrainVerifier(100, false);
+        Train longTrain = new Train(new Locomotive(1, 100000), "Amsterdam", "Paris");
+        longTrain.setVerifier(sampling);
+        for (int id = 1; id <= 10000; id++) {
+            longTrain.attachToRear(new PassengerWagon(id, 1));
+        }
+        assertTrue(sampling.getNumberOfVerifications() > 0);
+        assertTrue(sampling.getNumberOfVerifications() < 1000);
+        assertEquals(0, sampling.getNumberOfViolations());
+
+        TrainVerifier disabled = new TrainVerifier(0, false);
+        passengerTrain.setVerifier(disabled);
+        passengerTrain.reverse();
+        assertEquals(0, disabled.getNumberOfVerifications());
+    }
+}
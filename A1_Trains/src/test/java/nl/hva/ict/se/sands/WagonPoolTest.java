@@ -0,0 +1,69 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WagonPoolTest {
+    WagonPool pool;
+    Train passengerTrain;
+
+    @BeforeEach
+    private void setup() {
+        pool = new WagonPool(10);
+        passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8005; id++) {
+            passengerTrain.attachToRear(pool.newPassengerWagon(id, 40));
+        }
+    }
+
+    @Test
+    public void T01_releasedWagonsShouldBeReused() {
+        Wagon wagon = passengerTrain.findWagonById(8003);
+        assertFalse(pool.release(wagon));
+        assertTrue(passengerTrain.moveOneWagon(8003, new Train(new Locomotive(1, 1), "Amsterdam", "Paris")));
+        assertFalse(pool.release(wagon));
+
+        Wagon free = pool.newFreightWagon(9001, 5000);
+        assertTrue(pool.release(free));
+        assertFalse(pool.release(free));
+        assertEquals(1, pool.getNumberOfPooledWagons());
+
+        FreightWagon reused = pool.newFreightWagon(9002, 6000);
+        assertSame(free, reused);
+        assertEquals(9002, reused.getId());
+        assertEquals(6000, reused.getMaxWeight());
+        assertEquals(6, pool.getNumberOfCreatedWagons());
+        assertEquals(1, pool.getNumberOfReusedWagons());
+    }
+
+    @Test
+    public void T02_releasingATrainShouldUncoupleAllWagons() {
+        passengerTrain.reverse();
+        Wagon last = passengerTrain.getLastWagonAttached();
+        assertEquals(5, pool.releaseAll(passengerTrain));
+        assertFalse(passengerTrain.hasWagons());
+        assertFalse(last.hasPreviousWagon());
+        assertFalse(last.hasNextWagon());
+
+        Train reused = new Train(new Locomotive(29123, 7), "Amsterdam", "London");
+        for (int id = 8011; id <= 8017; id++) {
+            assertTrue(reused.attachToRear(pool.newPassengerWagon(id, 20)));
+        }
+        assertEquals(140, reused.getTotalNumberOfSeats());
+        assertEquals("[Loc-29123][Wagon-8011][Wagon-8012][Wagon-8013][Wagon-8014][Wagon-8015][Wagon-8016][Wagon-8017]"
+                + " with 7 wagons from Amsterdam to London", reused.toString());
+        assertEquals(5, pool.getNumberOfReusedWagons());
+        assertEquals(0, pool.getNumberOfPooledWagons());
+    }
+
+    @Test
+    public void T03_aFullPoolShouldRefuseWagons() {
+        for (int id = 1; id <= 10; id++) {
+            assertTrue(pool.release(new FreightWagon(id, 1000)));
+        }
+        assertFalse(pool.release(new FreightWagon(11, 1000)));
+        assertTrue(pool.release(new PassengerWagon(12, 10)));
+        assertEquals(11, pool.getNumberOfPooledWagons());
+    }
+}
@@ -0,0 +1,150 @@
+import models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class YardComposerTest {
+    Train pool, toParis, toLondon, toBerlin;
+    YardComposer composer;
+
+    @BeforeEach
+    private void setup() {
+        pool = new Train(new Locomotive(1, 20), "Amsterdam", "Amsterdam");
+        pool.attachToRear(new PassengerWagon(8001, 20));
+        pool.attachToRear(new PassengerWagon(8002, 40));
+        pool.attachToRear(new PassengerWagon(8003, 60));
+        pool.attachToRear(new PassengerWagon(8004, 80));
+        toParis = new Train(new Locomotive(24531, 3), "Amsterdam", "Paris");
+        toParis.attachToRear(new PassengerWagon(8005, 30));
+        toLondon = new Train(new Locomotive(29123, 5), "Amsterdam", "London");
+        toLondon.attachToRear(new PassengerWagon(8006, 100));
+        toLondon.attachToRear(new PassengerWagon(8007, 10));
+        toBerlin = new Train(new Locomotive(63427, 2), "Amsterdam", "Berlin");
+        composer = new YardComposer().addPoolTrain(pool);
+    }
+
+    @Test
+    public void T01_shortagesShouldBeFilledWithTheFewestWagons() {
+        assertTrue(composer.setSeatTarget(toParis, 85));
+        assertTrue(composer.setSeatTarget(toLondon, 100));
+
+        // toParis needs 55 more seats, the 60 seat wagon covers that with one move
+        assertEquals(1, composer.plan().size());
+        assertTrue(composer.compose());
+        assertEquals(90, toParis.getTotalNumberOfSeats());
+        assertNotNull(toParis.findWagonById(8003));
+        assertEquals(110, toLondon.getTotalNumberOfSeats());
+        assertTrue(composer.getUnsatisfiedTrains().isEmpty());
+    }
+
+    @Test
+    public void T02_surplusWagonsShouldBeUsedForOtherTrains() {
+        composer = new YardComposer();
+        assertTrue(composer.setSeatTarget(toParis, 120));
+        assertTrue(composer.setSeatTarget(toLondon, 10));
+
+        assertTrue(composer.compose());
+        assertEquals("[Loc-24531][Wagon-8005][Wagon-8006] with 2 wagons from Amsterdam to Paris", toParis.toString());
+        assertEquals("[Loc-29123][Wagon-8007] with 1 wagons from Amsterdam to London", toLondon.toString());
+    }
+
+    @Test
+    public void T03_unreachableTargetsShouldNotTakeWagons() {
+        assertTrue(composer.setSeatTarget(toParis, 1000));
+        assertFalse(composer.setWeightTarget(toLondon, 1000));
+        toBerlin.attachToRear(new FreightWagon(9001, 1000));
+        assertTrue(composer.addLooseWagon(new FreightWagon(9002, 4000)));
+        assertFalse(composer.addLooseWagon(pool.getFirstWagon()));
+        assertTrue(composer.setWeightTarget(toBerlin, 5000));
+
+        assertTrue(composer.compose());
+        assertEquals(1, composer.getUnsatisfiedTrains().size());
+        assertSame(toParis, composer.getUnsatisfiedTrains().get(0));
+        assertEquals(1, toParis.getNumberOfWagons());
+        assertEquals(4, pool.getNumberOfWagons());
+        assertEquals(5000, toBerlin.getTotalMaxWeight());
+    }
+
+    @Test
+    public void T04_aLargeYardShouldBeComposed() {
+        Random random = new Random(2020);
+        Train[] trains = new Train[500];
+        Train passengerPool = new Train(new Locomotive(1, 10000), "Amsterdam", "Amsterdam");
+        Train freightPool = new Train(new Locomotive(2, 10000), "Amsterdam", "Amsterdam");
+        composer = new YardComposer().addPoolTrain(passengerPool).addPoolTrain(freightPool);
+
+        int id = 1;
+        for (int t = 0; t < trains.length; t++) {
+            trains[t] = new Train(new Locomotive(100 + t, 30), "Amsterdam", "Destination-" + t);
+            for (int w = 0; w < 10; w++) {
+                if (t % 2 == 0) {
+                    trains[t].attachToRear(new PassengerWagon(id++, 10 + random.nextInt(90)));
+                } else {
+                    trains[t].attachToRear(new FreightWagon(id++, 1000 + random.nextInt(9000)));
+                }
+            }
+        }
+        while (id <= 10000) {
+            passengerPool.attachToRear(new PassengerWagon(id++, 10 + random.nextInt(90)));
+            freightPool.attachToRear(new FreightWagon(id++, 1000 + random.nextInt(9000)));
+        }
+        for (int t = 0; t < trains.length; t++) {
+            if (t % 2 == 0) {
+                composer.setSeatTarget(trains[t], 200 + random.nextInt(1000));
+            } else {
+                composer.setWeightTarget(trains[t], 20000 + random.nextInt(100000));
+            }
+        }
+
+        assertTrue(composer.compose());
+        assertTrue(composer.getUnsatisfiedTrains().isEmpty());
+        int numberOfWagons = passengerPool.getNumberOfWagons() + freightPool.getNumberOfWagons();
+        for (Train train : trains) {
+            numberOfWagons += train.getNumberOfWagons();
+            assertTrue(train.getNumberOfWagons() <= 30);
+        }
+        assertEquals(10000, numberOfWagons);
+    }
+
+    @Test
+    public void T05_composingTwiceShouldNotReuseAttachedWagons() {
+        Train toMunich = new Train(new Locomotive(63428, 5), "Amsterdam", "Munich");
+        toMunich.attachToRear(new FreightWagon(9001, 1000));
+        assertTrue(composer.addLooseWagon(new FreightWagon(9002, 4000)));
+        assertTrue(composer.addLooseWagon(new FreightWagon(9003, 5000)));
+        assertTrue(composer.setWeightTarget(toMunich, 5000));
+        assertTrue(composer.compose());
+        assertEquals(5000, toMunich.getTotalMaxWeight());
+
+        // the wagon attached by the first composition is no longer loose
+        assertTrue(composer.setWeightTarget(toMunich, 9000));
+        assertEquals(1, composer.plan().size());
+        assertTrue(composer.compose());
+        assertEquals(10000, toMunich.getTotalMaxWeight());
+        assertEquals(3, toMunich.getNumberOfWagons());
+        assertTrue(composer.getUnsatisfiedTrains().isEmpty());
+    }
+
+    @Test
+    public void T06_wagonsTooHeavyForTheLocomotivesShouldBeSkipped() {
+        Train toDuisburg = new Train(new Locomotive(63429, 5, 70000), "Amsterdam", "Duisburg");
+        assertTrue(composer.addLooseWagon(new FreightWagon(9001, 80000)));
+        assertTrue(composer.addLooseWagon(new FreightWagon(9002, 30000)));
+        assertTrue(composer.addLooseWagon(new FreightWagon(9003, 30000)));
+        assertTrue(composer.setWeightTarget(toDuisburg, 60000));
+
+        // the 80000 would cover the target with one wagon, but cannot be pulled
+        assertTrue(composer.compose());
+        assertEquals(60000, toDuisburg.getTotalMaxWeight());
+        assertNull(toDuisburg.findWagonById(9001));
+        assertTrue(composer.getUnsatisfiedTrains().isEmpty());
+
+        assertTrue(composer.setWeightTarget(toDuisburg, 80000));
+        assertEquals(0, composer.plan().size());
+        assertEquals(List.of(toDuisburg), composer.getUnsatisfiedTrains());
+    }
+}
@@ -0,0 +1,71 @@
+package models;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the fleet statistics scale with the number of fork/join worker threads
+ * Compare the score of parallelism 1 with the higher ones to see the speedup on the machine at hand.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class FleetBenchmark {
+    @Param({"1", "2", "4", "8", "16"})
+    public int parallelism;
+
+    @Param({"100000"})
+    public int numberOfTrains;
+
+    private Fleet fleet;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(2020);
+        fleet = new Fleet();
+        int id = 1;
+        for (int t = 0; t < numberOfTrains; t++) {
+            Train train = new Train(new Locomotive(t, 50), "Origin-" + random.nextInt(200), "Destination-" + random.nextInt(200));
+            int wagons = random.nextInt(51);
+            for (int w = 0; w < wagons; w++) {
+                train.attachToRear(t % 4 == 0 ? new FreightWagon(id++, random.nextInt(100000)) : new PassengerWagon(id++, random.nextInt(100)));
+            }
+            fleet.register(train);
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Fleet.Statistics statistics() {
+        return fleet.getStatistics(pool);
+    }
+
+    @Benchmark
+    public long seats() {
+        return fleet.aggregate(Train.SEATS, pool).getSum();
+    }
+}
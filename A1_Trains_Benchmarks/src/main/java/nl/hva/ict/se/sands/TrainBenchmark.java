@@ -0,0 +1,138 @@
+package models;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the train operations at train lengths from 10 to 1M wagons
+ * Every mutating benchmark restores the train before it returns, so the train keeps
+ * its length during the whole measurement without a per-invocation setup:
+ * - attachToRear and insertAtPosition detach the attached wagon again
+ * - moveOneWagon and splitAtPosition move the wagons back to the train
+ * The reported time therefore covers the operation and its inverse.
+ * <p>
+ * With observed, both trains report to TrainMetrics, which shows the cost of the listener.
+ * Run with -prof gc to see the allocation rate of every operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class TrainBenchmark {
+    private static final int NUMBER_OF_LOOKUPS = 1024;  // power of two, see nextWagonId()
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int numberOfWagons;
+
+    @Param({"false", "true"})
+    public boolean positionIndexed;
+
+    @Param({"false", "true"})
+    public boolean observed;
+
+    private Train train;
+    private Train otherTrain;
+    private Wagon spareWagon;           // wagon that is attached and detached again
+    private int[] wagonIds;             // random ids of wagons in the train, for the lookups
+    private int nextLookup;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        train = new Train(new Locomotive(1, numberOfWagons + 1), "Amsterdam", "Paris");
+        otherTrain = new Train(new Locomotive(2, numberOfWagons + 1), "Amsterdam", "London");
+        for (int id = 1; id <= numberOfWagons; id++) {
+            train.attachToRear(new PassengerWagon(id, id % 100));
+        }
+        train.setPositionIndexed(positionIndexed);
+        otherTrain.setPositionIndexed(positionIndexed);
+        if (observed) {
+            TrainMetrics metrics = new TrainMetrics();
+            train.setListener(metrics);
+            otherTrain.setListener(metrics);
+        }
+        spareWagon = new PassengerWagon(numberOfWagons + 1, 42);
+
+        Random random = new Random(2020);
+        wagonIds = new int[NUMBER_OF_LOOKUPS];
+        for (int i = 0; i < wagonIds.length; i++) {
+            wagonIds[i] = 1 + random.nextInt(numberOfWagons);
+        }
+    }
+
+    @Benchmark
+    public boolean attachToRear() {
+        boolean attached = train.attachToRear(spareWagon);
+        train.detach(spareWagon, spareWagon);
+        return attached;
+    }
+
+    @Benchmark
+    public boolean insertAtPosition() {
+        boolean inserted = train.insertAtPosition(numberOfWagons / 2 + 1, spareWagon);
+        train.detach(spareWagon, spareWagon);
+        return inserted;
+    }
+
+    @Benchmark
+    public Wagon findWagonById() {
+        return train.findWagonById(nextWagonId());
+    }
+
+    @Benchmark
+    public Wagon findWagonAtPosition() {
+        return train.findWagonAtPosition(nextWagonId());
+    }
+
+    @Benchmark
+    public boolean splitAtPosition() {
+        boolean split = train.splitAtPosition(numberOfWagons / 2 + 1, otherTrain);
+        otherTrain.splitAtPosition(1, train);
+        return split;
+    }
+
+    @Benchmark
+    public boolean moveOneWagon() {
+        int wagonId = nextWagonId();
+        boolean moved = train.moveOneWagon(wagonId, otherTrain);
+        otherTrain.moveOneWagon(wagonId, train);
+        return moved;
+    }
+
+    @Benchmark
+    public Train reverse() {
+        train.reverse();
+        return train;
+    }
+
+    @Benchmark
+    public int getTotalNumberOfSeats() {
+        return train.getTotalNumberOfSeats();
+    }
+
+    /**
+     * Reference for getTotalNumberOfSeats: counting the seats by walking all wagons
+     */
+    @Benchmark
+    public int sumSeatsByWalking() {
+        return train.seats().sum();
+    }
+
+    private int nextWagonId() {
+        return wagonIds[nextLookup++ & (NUMBER_OF_LOOKUPS - 1)];
+    }
+}
@@ -0,0 +1,61 @@
+package models;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the garbage collection pressure of creating new wagons with reusing them from a WagonPool
+ * Every invocation composes a train of new wagons, as a simulation step would, and discards it again.
+ * Run with -prof gc: gc.alloc.rate.norm shows the bytes allocated per composed train.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class WagonPoolBenchmark {
+    @Param({"100", "10000"})
+    public int numberOfWagons;
+
+    private Train train;
+    private WagonPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        train = new Train(new Locomotive(1, numberOfWagons), "Amsterdam", "Paris");
+        pool = new WagonPool();
+    }
+
+    @Benchmark
+    public int composeWithNewWagons() {
+        for (int id = 1; id <= numberOfWagons; id++) {
+            train.attachToRear(id % 2 == 0 ? new PassengerWagon(id, 40) : new PassengerWagon(id, 60));
+        }
+        int seats = train.getTotalNumberOfSeats();
+        train.setFirstWagon(null);
+        return seats;
+    }
+
+    @Benchmark
+    public int composeWithPooledWagons() {
+        for (int id = 1; id <= numberOfWagons; id++) {
+            train.attachToRear(pool.newPassengerWagon(id, id % 2 == 0 ? 40 : 60));
+        }
+        int seats = train.getTotalNumberOfSeats();
+        pool.releaseAll(train);
+        return seats;
+    }
+}
@@ -45,5 +45,9 @@ public class ArcheryMain {
         // Printing archers sorted by collection sort.
         ChampionSelector.collectionSort(archers, comp);
         System.out.println("Archers sorted by Collections sort: " + archers + "\n");
+
+        // Printing archers sorted by champion sort.
+        ChampionSelector.championSort(archers);
+        System.out.println("Archers sorted by champion sort: " + archers + "\n");
     }
 }
@@ -7,6 +7,22 @@ import java.util.*;
  * Note that you are NOT allowed to change the signature of these methods! Adding method is perfectly fine.
  */
 public class ChampionSelector {
+    // The order of the champions: highest total score, then most tens, most nines and the highest id.
+    public static final Comparator<Archer> CHAMPION_SCHEME = Comparator.comparingInt(Archer::getTotalScore)
+            .thenComparingInt(Archer::getTens)
+            .thenComparingInt(Archer::getNines)
+            .thenComparingInt(Archer::getId)
+            .reversed();
+
+    // Widths of the fields of a packed sort key, the rank of the id takes the lowest 31 bits.
+    private static final int RANK_BITS = 31;
+    private static final int NINES_BITS = 9;
+    private static final int TENS_BITS = 9;
+    private static final int SCORE_BITS = 14;
+    private static final int NINES_SHIFT = RANK_BITS;
+    private static final int TENS_SHIFT = NINES_SHIFT + NINES_BITS;
+    private static final int SCORE_SHIFT = TENS_SHIFT + TENS_BITS;
+
     /**
      * This method uses either selection sort or insertion sort for sorting the archers.
      */
@@ -87,4 +103,61 @@ public class ChampionSelector {
         Collections.sort(archers, scoringScheme);
         return archers;
     }
+
+    /**
+     * This method sorts the archers by the champion scheme using primitive sort keys.
+     * The score, tens, nines and id of every archer are read once and packed into a long, so the sort itself
+     * compares primitives only. Both sorts are parallel sorts of long arrays, and the archers are permuted once.
+     * Archers with a score, number of tens or number of nines that does not fit a key are sorted by
+     * collectionSort with the CHAMPION_SCHEME instead.
+     */
+    public static List<Archer> championSort(List<Archer> archers) {
+        Archer[] unsorted = archers.toArray(new Archer[0]);
+        int n = unsorted.length;
+
+        // Sorting the ids together with the index of their archer, this gives every archer the rank of its id.
+        long[] keys = new long[n];
+        Arrays.parallelSetAll(keys, i -> (long) unsorted[i].getId() << 32 | i);
+        Arrays.parallelSort(keys);
+
+        // Replacing every id by the packed key of its archer, a smaller key belongs to a better archer.
+        int[] indexByRank = new int[n];
+        Arrays.parallelSetAll(keys, rank -> {
+            int index = (int) keys[rank];
+            indexByRank[rank] = index;
+            Archer archer = unsorted[index];
+            return packKey(archer.getTotalScore(), archer.getTens(), archer.getNines(), n - 1 - rank);
+        });
+        for (long key : keys) {
+            if (key < 0) {
+                return collectionSort(archers, CHAMPION_SCHEME);
+            }
+        }
+        Arrays.parallelSort(keys);
+
+        // Putting every archer in its place in one pass over the list.
+        ListIterator<Archer> iterator = archers.listIterator();
+        for (long key : keys) {
+            int rank = n - 1 - (int) (key & ((1L << RANK_BITS) - 1));
+            iterator.next();
+            iterator.set(unsorted[indexByRank[rank]]);
+        }
+        return archers;
+    }
+
+    /**
+     * Packs the fields of an archer into a sort key, higher fields give a lower key.
+     *
+     * @return the key (return -1 if a field does not fit the key).
+     */
+    private static long packKey(int score, int tens, int nines, int reversedRank) {
+        if (score < 0 || score >= 1 << SCORE_BITS || tens < 0 || tens >= 1 << TENS_BITS
+                || nines < 0 || nines >= 1 << NINES_BITS) {
+            return -1;
+        }
+        return (long) ((1 << SCORE_BITS) - 1 - score) << SCORE_SHIFT
+                | (long) ((1 << TENS_BITS) - 1 - tens) << TENS_SHIFT
+                | (long) ((1 << NINES_BITS) - 1 - nines) << NINES_SHIFT
+                | reversedRank;
+    }
 }
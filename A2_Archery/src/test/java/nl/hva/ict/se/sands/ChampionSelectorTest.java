@@ -61,4 +61,25 @@ class ChampionSelectorTest {
         assertEquals(sortedArchersCollection, sortedArchersQuickSort);
     }
 
+    @Test
+    public void championSortAndCollectionSortResultInSameOrder() {
+        List<Archer> unsortedArchersForChampionSort = Archer.generateArchers(5000);
+        List<Archer> unsortedArchersForCollection = new ArrayList<>(unsortedArchersForChampionSort);
+
+        List<Archer> sortedArchersChampionSort = ChampionSelector.championSort(unsortedArchersForChampionSort);
+        List<Archer> sortedArchersCollection = ChampionSelector.collectionSort(unsortedArchersForCollection, comparator);
+
+        assertEquals(sortedArchersCollection, sortedArchersChampionSort);
+    }
+
+    @Test
+    public void championSchemeAndComparatorResultInSameOrder() {
+        List<Archer> unsortedArchersForScheme = Archer.generateArchers(1000);
+        List<Archer> unsortedArchersForCollection = new ArrayList<>(unsortedArchersForScheme);
+
+        List<Archer> sortedArchersScheme = ChampionSelector.collectionSort(unsortedArchersForScheme, ChampionSelector.CHAMPION_SCHEME);
+        List<Archer> sortedArchersCollection = ChampionSelector.collectionSort(unsortedArchersForCollection, comparator);
+
+        assertEquals(sortedArchersCollection, sortedArchersScheme);
+    }
 }
@@ -136,4 +136,35 @@ public class ComparatorTest {
             }
         }
     }
+
+    @Test
+    public void testingArchersChampionSort() {
+        // Running the experiment 10 times.
+        for (int i = 0; i < TESTS; i++) {
+            double duration = 0;
+
+            // Amount of archers starts at 100.
+            // Amount of archers stops at 5.0000.000.
+            // Amount of archers keeps multiplying with 2.
+            for (int amountOfArchers = MIN_ARCHERS;
+                 amountOfArchers < MAX_ARCHERS;
+                 amountOfArchers *= 2) {
+
+                archers = Archer.generateArchers(amountOfArchers);
+
+                // Defining the time of starting and ending.
+                // Champion sort on primitive keys.
+                double start = System.currentTimeMillis();
+                ChampionSelector.championSort(archers);
+                double end = System.currentTimeMillis();
+                duration = (end - start) / 1000;
+
+                // Break the loop if duration hits 20 seconds.
+                if (duration >= MAX_SECONDS) {
+                    break;
+                }
+                System.out.printf("CHAMPION: Sorted %d archers in %.2f seconds%n", amountOfArchers, duration);
+            }
+        }
+    }
 }